@@ -0,0 +1,95 @@
+package collision;
+
+import java.util.Random;
+
+/**
+ * <b>BenchWorlds class</b>
+ * <p>
+ * Builds the seeded worlds used by the benchmarks.
+ * <p>
+ * A dense world is sized so that the balls cover about a third of its area, which
+ * gives many contacts per tick. A sparse world is sized so that they cover about 
+ * two percent of it, which gives few. A medium world (ten percent) sits between 
+ * the two. Balls have whole speeds between -2 and 2 in
+ * each direction, like the balls created by clicks, and one in ten of them is a
+ * heavier CollisionMonster ball. The same arguments always build the same world.
+ * <p>
+ * Worlds can also mix ball sizes: with a size ratio above 1, one ball in a 
+ * hundred is that many times larger than the others (and heavier by its area).
+ * The world is then sized by the area of every ball together, so most of it is
+ * taken up by the large balls.
+ */
+public class BenchWorlds {
+	
+	/**
+	 * Seed used by every benchmark so results can be compared between runs
+	 */
+	public static final long SEED = 20140101L;
+	
+	private static final double RADIUS = 22;
+	
+	/**
+	 * <b>create</b>
+	 * <p>
+	 * Builds a world and an engine to simulate it.
+	 * @param balls - the number of balls
+	 * @param layout - "dense", "medium" or "sparse"
+	 * @param seed - the seed for the positions and speeds of the balls
+	 * @return the engine holding the world
+	 */
+	public static SimulationEngine create(int balls, String layout, long seed) {
+		return create(balls, layout, seed, 1);
+	}
+	
+	/**
+	 * <b>create</b>
+	 * <p>
+	 * Builds a world with balls of two sizes and an engine to simulate it.
+	 * @param balls - the number of balls
+	 * @param layout - "dense", "medium" or "sparse"
+	 * @param seed - the seed for the positions and speeds of the balls
+	 * @param sizeRatio - how many times larger than the rest every hundredth ball is
+	 * @return the engine holding the world
+	 */
+	public static SimulationEngine create(int balls, String layout, long seed, double sizeRatio) {
+		double large = RADIUS*sizeRatio;
+		int largeBalls = sizeRatio > 1 ? (balls + 99)/100 : 0;
+		double coverage = coverage(layout);
+		double area = ((balls - largeBalls)*RADIUS*RADIUS + largeBalls*large*large)*Math.PI/coverage;
+		double width = Math.max(Math.sqrt(area*4/3), 4*large);
+		double height = Math.max(width*3/4, 4*large);
+		SimulationEngine engine = new SimulationEngine(width, height);
+		ParticleStore store = engine.getStore();
+		Random random = new Random(seed);
+		store.ensureCapacity(balls);
+		for(int i = 0; i < balls; i++) {
+			boolean monster = random.nextInt(10) == 0;
+			double radius = sizeRatio > 1 && i % 100 == 0 ? large : RADIUS;
+			double mass = (monster ? 2 : 1)*(radius/RADIUS)*(radius/RADIUS);
+			store.add(radius + random.nextDouble()*(width - 2*radius),
+					  radius + random.nextDouble()*(height - 2*radius),
+					  random.nextInt(5) - 2, random.nextInt(5) - 2, radius,
+					  mass, monster ? ParticleStore.MONSTER : ParticleStore.NORMAL);
+		}
+		return engine;
+	}
+	
+	/**
+	 * <b>coverage</b>
+	 * <p>
+	 * @param layout - "dense", "medium" or "sparse"
+	 * @return the fraction of the world's area covered by balls
+	 */
+	private static double coverage(String layout) {
+		switch(layout) {
+			case "dense":
+				return 0.35;
+			case "medium":
+				return 0.10;
+			case "sparse":
+				return 0.02;
+			default:
+				throw new IllegalArgumentException("Unknown layout: " + layout);
+		}
+	}
+}//End of BenchWorlds class
\ No newline at end of file
@@ -0,0 +1,83 @@
+package collision;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <b>BroadPhaseBenchmark class</b>
+ * <p>
+ * Compares the broad phases against each other, and in particular sweep and prune
+ * against the original brute force loop, at different densities.
+ * <p>
+ * Each invocation moves the balls one tick (SimulationEngine.integrate) and then
+ * finds the candidate pairs, so broad phases that keep state between ticks (like
+ * SweepAndPruneBroadPhase) are measured with the small changes they would see in
+ * a real run. The move costs the same for every broad phase.
+ * <p>
+ * With a size ratio of 100, one ball in a hundred is a hundred times larger than
+ * the rest, which shows how each broad phase copes with mixed sizes (see
+ * HierarchicalGridBroadPhase).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadPhaseBenchmark {
+	
+	@Param({"brute", "sap", "grid", "hgrid"})
+	String broadPhase;
+	
+	@Param({"1000", "4000"})
+	int balls;
+	
+	@Param({"dense", "medium", "sparse"})
+	String layout;
+	
+	@Param({"1", "100"})
+	int sizeRatio;
+	
+	private SimulationEngine engine;
+	private BroadPhase phase;
+	private PairList pairs = new PairList();
+	
+	@Setup(Level.Iteration)
+	public void setUp() {
+		engine = BenchWorlds.create(balls, layout, BenchWorlds.SEED, sizeRatio);
+		switch(broadPhase) {
+			case "brute":
+				phase = new BruteForceBroadPhase();
+				break;
+			case "sap":
+				phase = new SweepAndPruneBroadPhase();
+				break;
+			case "hgrid":
+				phase = new HierarchicalGridBroadPhase();
+				break;
+			default:
+				phase = new SpatialHashBroadPhase();
+				break;
+		}
+		phase.findPairs(engine.getStore(), pairs);
+	}
+	
+	@Benchmark
+	public PairList findPairs() {
+		engine.integrate(1);
+		phase.findPairs(engine.getStore(), pairs);
+		return pairs;
+	}
+}//End of BroadPhaseBenchmark class
\ No newline at end of file
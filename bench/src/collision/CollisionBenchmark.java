@@ -0,0 +1,51 @@
+package collision;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <b>CollisionBenchmark class</b>
+ * <p>
+ * Measures one collision pass (broad phase, narrow phase and resolution) of
+ * SimulationEngine.checkCollision. The world is rebuilt from the same seed before
+ * every iteration so that each iteration starts from the same layout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+	
+	@Param({"100", "1000", "10000", "100000"})
+	int balls;
+	
+	@Param({"dense", "sparse"})
+	String layout;
+	
+	private SimulationEngine engine;
+	
+	@Setup(Level.Iteration)
+	public void setUp() {
+		engine = BenchWorlds.create(balls, layout, BenchWorlds.SEED);
+	}
+	
+	@Benchmark
+	public ParticleStore checkCollision() {
+		engine.checkCollision(1);
+		return engine.getStore();
+	}
+}//End of CollisionBenchmark class
\ No newline at end of file
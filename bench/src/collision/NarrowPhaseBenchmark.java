@@ -0,0 +1,60 @@
+package collision;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <b>NarrowPhaseBenchmark class</b>
+ * <p>
+ * Compares the SIMD VectorNarrowPhase with the ScalarNarrowPhase on the same
+ * candidate pairs; the ratio of the two scores is the speedup.
+ * <p>
+ * The pairs are found once by the spatial hash. Each invocation checks all of 
+ * them with a step length of 0, so balls that collide change speed but never 
+ * move and every invocation makes the same decisions. The benchmark runs with 
+ * --add-modules jdk.incubator.vector so that the vector narrow phase can load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class NarrowPhaseBenchmark {
+	
+	@Param({"scalar", "vector"})
+	String narrowPhase;
+	
+	@Param({"4000"})
+	int balls;
+	
+	@Param({"dense", "medium", "sparse"})
+	String layout;
+	
+	private SimulationEngine engine;
+	private NarrowPhase phase;
+	private PairList pairs = new PairList();
+	
+	@Setup
+	public void setUp() {
+		engine = BenchWorlds.create(balls, layout, BenchWorlds.SEED);
+		phase = narrowPhase.equals("vector") ? new VectorNarrowPhase() : new ScalarNarrowPhase();
+		new SpatialHashBroadPhase().findPairs(engine.getStore(), pairs);
+	}
+	
+	@Benchmark
+	public int collide() {
+		return phase.collide(engine, pairs, 0, null);
+	}
+}//End of NarrowPhaseBenchmark class
\ No newline at end of file
@@ -0,0 +1,123 @@
+package collision;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <b>ResolveBenchmark class</b>
+ * <p>
+ * Measures the elastic collision resolution math (SimulationEngine.resolve) on its
+ * own, per colliding pair, for both the original AngleSolver and the ImpulseSolver.
+ * The contacts are logged as they are during a tick, but not published.
+ * <p>
+ * The store holds PAIRS pairs of touching balls at random angles with random 
+ * speeds, always moving towards each other so that every pair is resolved rather
+ * than left alone by the ImpulseSolver. Before each invocation, outside of the
+ * measured time, the original speeds and positions are copied back so that every
+ * invocation resolves the same collisions. In the dense layout the
+ * two balls of a pair are next to each other in the store; in the sparse layout
+ * they are at random places in it, so the cost of reaching scattered memory is 
+ * included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveBenchmark {
+	private static final int PAIRS = 4096;
+	
+	@Param({"dense", "sparse"})
+	String layout;
+	
+	@Param({"angle", "impulse"})
+	String solver;
+	
+	private SimulationEngine engine;
+	private int[] first = new int[PAIRS];
+	private int[] second = new int[PAIRS];
+	private final ContactLog log = new ContactLog();
+	private double[] x;
+	private double[] y;
+	private double[] vx;
+	private double[] vy;
+	
+	@Setup
+	public void setUp() {
+		engine = new SimulationEngine(1e6, 1e6);
+		engine.setSolver(solver.equals("impulse") ? new ImpulseSolver() : new AngleSolver());
+		ParticleStore store = engine.getStore();
+		Random random = new Random(BenchWorlds.SEED);
+		int[] slots = new int[2*PAIRS];
+		for(int i = 0; i < slots.length; i++) {
+			slots[i] = i;
+		}
+		if(layout.equals("sparse")) {
+			for(int i = slots.length - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int swap = slots[i];
+				slots[i] = slots[j];
+				slots[j] = swap;
+			}
+		}
+		for(int i = 0; i < slots.length; i++) {
+			store.add(0, 0, 0, 0, 22, random.nextInt(10) == 0 ? 2 : 1, ParticleStore.NORMAL);
+		}
+		for(int p = 0; p < PAIRS; p++) {
+			int m = slots[2*p];
+			int n = slots[2*p + 1];
+			double angle = (random.nextDouble() - 0.5)*Math.PI*0.9;
+			store.x[n] = 100 + (p % 1000)*100;
+			store.y[n] = 100 + (p / 1000)*100;
+			store.x[m] = store.x[n] + 44*Math.cos(angle);
+			store.y[m] = store.y[n] + 44*Math.sin(angle);
+			do {
+				store.vx[m] = random.nextInt(5) - 2;
+				store.vy[m] = random.nextInt(5) - 2;
+				store.vx[n] = random.nextInt(5) - 2;
+				store.vy[n] = random.nextInt(5) - 2;
+			} while((store.vx[m] - store.vx[n])*Math.cos(angle) + (store.vy[m] - store.vy[n])*Math.sin(angle) >= 0);
+			first[p] = m;
+			second[p] = n;
+		}
+		x = store.x.clone();
+		y = store.y.clone();
+		vx = store.vx.clone();
+		vy = store.vy.clone();
+	}
+	
+	@Setup(Level.Invocation)
+	public void restore() {
+		ParticleStore store = engine.getStore();
+		System.arraycopy(x, 0, store.x, 0, x.length);
+		System.arraycopy(y, 0, store.y, 0, y.length);
+		System.arraycopy(vx, 0, store.vx, 0, vx.length);
+		System.arraycopy(vy, 0, store.vy, 0, vy.length);
+		log.clear();
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(PAIRS)
+	public ParticleStore resolve() {
+		ParticleStore store = engine.getStore();
+		for(int p = 0; p < PAIRS; p++) {
+			engine.resolve(first[p], second[p], 1, log);
+		}
+		return store;
+	}
+}//End of ResolveBenchmark class
\ No newline at end of file
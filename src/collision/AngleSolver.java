@@ -0,0 +1,56 @@
+package collision;
+
+/**
+ * <b>AngleSolver class</b>
+ * <p>
+ * The original collision solver, and the default.
+ * <p>
+ * Collision resolution is performed through a series of mathematical formulas for
+ * 2D Elastic Collisions. Both speeds are rotated into the frame of the collision
+ * (the line between the two centers), momentum is exchanged along that line and
+ * the speeds are rotated back. Equations referred to are from: 
+ * http://www.hoomanr.com/Demos/Elastic2/
+ * <p>
+ * The new speeds are rounded up to whole numbers, as CollisionObject.changeXSpeed
+ * does, which slowly adds momentum over time. Both balls are then moved once more
+ * with their new speeds, which lessens the frequency of balls sticking together.
+ */
+public class AngleSolver implements CollisionSolver {
+
+	public boolean resolve(ParticleStore store, int m, int n, double dt) {
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] vx = store.vx;
+		double[] vy = store.vy;
+		double[] mass = store.mass;
+		double collisionAngle = Math.atan2(y[m] - y[n], x[m] - x[n]);
+		double magnitudeM = Math.sqrt(vx[m]*vx[m] + vy[m]*vy[m]);
+		double magnitudeN = Math.sqrt(vx[n]*vx[n] + vy[n]*vy[n]);
+		double directionM = Math.atan2(vy[m], vx[m]);
+		double directionN = Math.atan2(vy[n], vx[n]);
+		double calcXSpeedM = magnitudeM*Math.cos(directionM-collisionAngle);
+		double calcYSpeedM = magnitudeM*Math.sin(directionM-collisionAngle);
+		double calcXSpeedN = magnitudeN*Math.cos(directionN-collisionAngle);
+		double calcYSpeedN = magnitudeN*Math.sin(directionN-collisionAngle);
+		double finalXSpeedM = ((mass[m]-mass[n])*calcXSpeedM+(mass[n]+mass[n])
+							   *calcXSpeedN)/(mass[m]+mass[n]);
+		double finalXSpeedN = ((mass[m]+mass[m])*calcXSpeedM+(mass[n]-mass[m])
+							   *calcXSpeedN)/(mass[m]+mass[n]);
+		double finalYSpeedM = calcYSpeedM;
+		double finalYSpeedN = calcYSpeedN;
+		vx[m] = Math.ceil(Math.cos(collisionAngle)*finalXSpeedM+
+						  Math.cos(collisionAngle+Math.PI/2)*finalYSpeedM);
+		vy[m] = Math.ceil(Math.sin(collisionAngle)*finalXSpeedM+
+						  Math.sin(collisionAngle+Math.PI/2)*finalYSpeedM);
+		vx[n] = Math.ceil(Math.cos(collisionAngle)*finalXSpeedN+
+						  Math.cos(collisionAngle+Math.PI/2)*finalYSpeedN);
+		vy[n] = Math.ceil(Math.sin(collisionAngle)*finalXSpeedN+
+						  Math.sin(collisionAngle+Math.PI/2)*finalYSpeedN);
+		//Lessens frequency of sticking
+		x[m] += vx[m]*dt;
+		y[m] += vy[m]*dt;
+		x[n] += vx[n]*dt;
+		y[n] += vy[n]*dt;
+		return true;
+	}
+}//End of AngleSolver class
\ No newline at end of file
@@ -0,0 +1,302 @@
+package collision;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <b>BatchRunner class</b>
+ * <p>
+ * Runs a sweep of headless simulations over combinations of parameters, several
+ * at a time, and writes a summary of every run to a CSV or JSON file.
+ * <p>
+ * Usage: java -Djava.awt.headless=true collision.BatchRunner sweep.properties summary.csv|summary.json
+ * <p>
+ * The sweep is a properties file such as:
+ * <pre>
+ * balls=1000,10000
+ * massRatio=1,2,5
+ * speed=1,2
+ * density=0.05,0.1
+ * seeds=1,2,3
+ * ticks=2000
+ * threads=8
+ * </pre>
+ * Every combination of the comma separated values of balls, massRatio (how many
+ * times heavier a CollisionMonster ball is than a normal one), speed (the largest
+ * speed in each direction), density (the fraction of the world covered by balls)
+ * and seeds is run for the given number of ticks, in a world generated as by
+ * HeadlessRunner. The defaults are 1000 balls, a mass ratio of 2, a speed of 2, a
+ * density of 0.1, seed 42 and 1000 ticks, which is the HeadlessRunner's world.
+ * The engines are configured from the system properties described in
+ * SimulationSettings.
+ * <p>
+ * Runs are independent tasks on a fixed thread pool of threads threads (the
+ * number of processors by default). Each run builds its own engine, broad phase,
+ * narrow phase and solver, and nothing in the engine is shared between engines,
+ * so runs cannot affect one another's results. To keep each run to a single
+ * thread, the tiled parallel pass is always turned off, whatever
+ * collision.threads says. TickMetrics are global and their histograms take one
+ * writer at a time, so when collision.metrics is on the sweep is run on a single
+ * thread, whatever threads says, and a warning is printed.
+ * <p>
+ * Each run reports the time it took, its ticks per second, the number of
+ * collisions and the momentum and energy gained or lost in them (see
+ * ConservationCounter), along with the total kinetic energy at the start so that
+ * the energy drift can be compared between runs. The summary lists the runs in
+ * sweep order whatever order they finished in. A run that fails is reported with
+ * its error and the others carry on.
+ */
+public class BatchRunner {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length < 2) {
+			System.err.println("Usage: java collision.BatchRunner sweep.properties summary.csv|summary.json");
+			System.exit(1);
+		}
+		Properties sweep = new Properties();
+		try(Reader reader = Files.newBufferedReader(Paths.get(args[0]))) {
+			sweep.load(reader);
+		}
+		Path summary = Paths.get(args[1]);
+		boolean json = summary.toString().endsWith(".json");
+		List<Run> runs = runs(sweep);
+		int threads = Integer.parseInt(sweep.getProperty("threads",
+										Integer.toString(Runtime.getRuntime().availableProcessors())));
+		if(TickMetrics.ENABLED && threads > 1) {
+			System.err.println("collision.metrics is on: running the sweep on 1 thread instead of " + threads
+							   + ", as the metrics are shared by every run");
+			threads = 1;
+		}
+		System.out.printf("%d runs on %d threads%n", runs.size(), threads);
+
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Run>> results = new ArrayList<Future<Run>>();
+		for(Run run : runs) {
+			results.add(executor.submit(() -> {
+				run.execute();
+				System.out.println(run.describe());
+				return run;
+			}));
+		}
+		executor.shutdown();
+		for(Future<Run> result : results) {
+			try {
+				result.get();
+			}
+			catch(ExecutionException e) {
+				//execute keeps its own exceptions, so only an Error can get here
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		System.out.printf("Sweep finished in %.3f s%n", (System.nanoTime() - start)/1e9);
+
+		try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(summary))) {
+			if(json) {
+				writeJson(runs, out);
+			}
+			else {
+				writeCsv(runs, out);
+			}
+		}
+	}
+
+	/**
+	 * <b>runs</b>
+	 * <p>
+	 * Lists every combination of parameters in a sweep.
+	 * @param sweep - the sweep definition
+	 * @return the runs, with the last parameter (the seed) changing fastest
+	 */
+	static List<Run> runs(Properties sweep) {
+		long ticks = Long.parseLong(sweep.getProperty("ticks", "1000").trim());
+		List<Run> runs = new ArrayList<Run>();
+		for(String balls : values(sweep, "balls", "1000")) {
+			for(String massRatio : values(sweep, "massRatio", "2")) {
+				for(String speed : values(sweep, "speed", "2")) {
+					for(String density : values(sweep, "density", "0.1")) {
+						for(String seed : values(sweep, "seeds", "42")) {
+							runs.add(new Run(runs.size(), Integer.parseInt(balls), Double.parseDouble(massRatio),
+											 Integer.parseInt(speed), Double.parseDouble(density),
+											 Long.parseLong(seed), ticks));
+						}
+					}
+				}
+			}
+		}
+		return runs;
+	}
+
+	/**
+	 * <b>values</b>
+	 * <p>
+	 * @param sweep - the sweep definition
+	 * @param key - the parameter
+	 * @param defaultValue - the value used if the parameter is not given
+	 * @return the parameter's comma separated values
+	 */
+	private static String[] values(Properties sweep, String key, String defaultValue) {
+		String[] values = sweep.getProperty(key, defaultValue).split(",");
+		for(int i = 0; i < values.length; i++) {
+			values[i] = values[i].trim();
+		}
+		return values;
+	}
+
+	/**
+	 * <b>writeCsv</b>
+	 * <p>
+	 * Writes one line per run, after a header line naming the columns.
+	 * @param runs - the finished runs
+	 * @param out - where to write
+	 */
+	static void writeCsv(List<Run> runs, PrintWriter out) {
+		out.println("run,balls,massRatio,speed,density,seed,ticks,seconds,ticksPerSecond,"
+					+ "collisions,momentumDrift,energyDrift,absoluteEnergyDrift,initialEnergy,error");
+		for(Run run : runs) {
+			out.println(String.format(Locale.ROOT, "%d,%d,%s,%d,%s,%d,%d,%.6f,%.3f,%d,%.9g,%.9g,%.9g,%.9g,%s",
+									  run.id, run.balls, run.massRatio, run.speed, run.density, run.seed,
+									  run.ticks, run.seconds, run.seconds > 0 ? run.ticks/run.seconds : 0, run.collisions,
+									  run.momentumDrift, run.energyDrift, run.absoluteEnergyDrift,
+									  run.initialEnergy, run.error == null ? "" : '"' + run.error.replace("\"", "\"\"") + '"'));
+		}
+	}
+
+	/**
+	 * <b>writeJson</b>
+	 * <p>
+	 * Writes the runs as a JSON array of objects with the same fields as the CSV
+	 * columns, and a null error for runs that succeeded.
+	 * @param runs - the finished runs
+	 * @param out - where to write
+	 */
+	static void writeJson(List<Run> runs, PrintWriter out) {
+		out.println("[");
+		for(int i = 0; i < runs.size(); i++) {
+			Run run = runs.get(i);
+			String error = run.error == null ? "null"
+					: '"' + run.error.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+			out.print(String.format(Locale.ROOT, "  {\"run\": %d, \"balls\": %d, \"massRatio\": %s, \"speed\": %d, "
+									+ "\"density\": %s, \"seed\": %d, \"ticks\": %d, \"seconds\": %.6f, "
+									+ "\"ticksPerSecond\": %.3f, \"collisions\": %d, \"momentumDrift\": %s, "
+									+ "\"energyDrift\": %s, \"absoluteEnergyDrift\": %s, \"initialEnergy\": %s, "
+									+ "\"error\": %s}",
+									run.id, run.balls, run.massRatio, run.speed, run.density, run.seed, run.ticks,
+									run.seconds, run.seconds > 0 ? run.ticks/run.seconds : 0, run.collisions,
+									jsonNumber(run.momentumDrift), jsonNumber(run.energyDrift),
+									jsonNumber(run.absoluteEnergyDrift), jsonNumber(run.initialEnergy), error));
+			out.println(i < runs.size() - 1 ? "," : "");
+		}
+		out.println("]");
+	}
+
+	/**
+	 * <b>jsonNumber</b>
+	 * <p>
+	 * @param value - the number to write
+	 * @return the number as JSON, which has no infinities or NaN, so those are null
+	 */
+	private static String jsonNumber(double value) {
+		return Double.isFinite(value) ? String.format(Locale.ROOT, "%.9g", value) : "null";
+	}
+
+	/**
+	 * <b>Run Class</b>
+	 * <p>
+	 * One simulation of the sweep: its parameters, and its results once executed.
+	 */
+	static class Run {
+		final int id;
+		final int balls;
+		final double massRatio;
+		final int speed;
+		final double density;
+		final long seed;
+		final long ticks;
+		double seconds;
+		long collisions;
+		double momentumDrift;
+		double energyDrift;
+		double absoluteEnergyDrift;
+		double initialEnergy;
+		String error;
+
+		Run(int id, int balls, double massRatio, int speed, double density, long seed, long ticks) {
+			this.id = id;
+			this.balls = balls;
+			this.massRatio = massRatio;
+			this.speed = speed;
+			this.density = density;
+			this.seed = seed;
+			this.ticks = ticks;
+		}
+
+		/**
+		 * <b>execute</b>
+		 * <p>
+		 * Generates the run's world, runs it and keeps the results. Any failure is
+		 * kept as the run's error instead of being thrown.
+		 */
+		void execute() {
+			try {
+				SimulationEngine engine = HeadlessRunner.generate(balls, seed, density, speed, massRatio);
+				SimulationSettings.configure(engine);
+				engine.setParallelism(0);
+				engine.setConservationTracking(true);
+				initialEnergy = kineticEnergy(engine.getStore());
+				long start = System.nanoTime();
+				engine.run(ticks);
+				seconds = (System.nanoTime() - start)/1e9;
+				ConservationCounter conservation = engine.getConservation();
+				collisions = conservation.getCollisions();
+				momentumDrift = conservation.getMomentumDrift();
+				energyDrift = conservation.getEnergyDrift();
+				absoluteEnergyDrift = conservation.getAbsoluteEnergyDrift();
+			}
+			catch(RuntimeException e) {
+				error = e.toString();
+			}
+		}
+
+		/**
+		 * <b>describe</b>
+		 * <p>
+		 * @return a line describing the run's parameters and results
+		 */
+		String describe() {
+			String parameters = String.format(Locale.ROOT, "run %d: %d balls, mass ratio %s, speed %d, density %s, seed %d",
+											  id, balls, massRatio, speed, density, seed);
+			if(error != null) {
+				return parameters + " failed: " + error;
+			}
+			return String.format(Locale.ROOT, "%s: %d ticks in %.3f s (%.0f ticks/s), %d collisions",
+								 parameters, ticks, seconds, ticks/seconds, collisions);
+		}
+
+		/**
+		 * <b>kineticEnergy</b>
+		 * <p>
+		 * @param store - the balls
+		 * @return the total kinetic energy of the balls
+		 */
+		private static double kineticEnergy(ParticleStore store) {
+			double energy = 0;
+			for(int i = 0; i < store.size(); i++) {
+				energy += 0.5*store.mass[i]*(store.vx[i]*store.vx[i] + store.vy[i]*store.vy[i]);
+			}
+			return energy;
+		}
+	}
+}//End of BatchRunner class
\ No newline at end of file
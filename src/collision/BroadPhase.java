@@ -0,0 +1,25 @@
+package collision;
+
+/**
+ * <b>BroadPhase interface</b>
+ * <p>
+ * A broad phase cheaply narrows down which pairs of balls could possibly be
+ * colliding so that the exact (narrow phase) test in CollisionPanel only has to
+ * be run on those candidates.
+ * <p>
+ * Implementations must report every unordered pair of balls that could be 
+ * touching exactly once. They may report pairs that turn out not to be touching.
+ */
+public interface BroadPhase {
+
+	/**
+	 * <b>findPairs</b>
+	 * <p>
+	 * Clears the pair list and fills it with the candidate pairs among the balls
+	 * in the store.
+	 * @param store - the balls to check
+	 * @param pairs - the list that receives the candidate pairs (store indices)
+	 */
+	void findPairs(ParticleStore store, PairList pairs);
+
+}//End of BroadPhase interface
\ No newline at end of file
@@ -0,0 +1,23 @@
+package collision;
+
+/**
+ * <b>BruteForceBroadPhase class</b>
+ * <p>
+ * Reports every unordered pair of balls as a candidate. 
+ * <p>
+ * This is the original nested loop collision check and costs O(n^2) per tick. 
+ * It is kept as a reference implementation that other broad phases can be 
+ * compared against.
+ */
+public class BruteForceBroadPhase implements BroadPhase {
+
+	public void findPairs(ParticleStore store, PairList pairs) {
+		pairs.clear();
+		int count = store.size();
+		for(int m = 0; m < count; m++) {
+			for(int n = m + 1; n < count; n++) {
+				pairs.add(m, n);
+			}
+		}
+	}
+}//End of BruteForceBroadPhase class
\ No newline at end of file
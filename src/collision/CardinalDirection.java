@@ -1,3 +1,5 @@
+package collision;
+
 	/**
 	 * <b>CardinalDirection enum</b>
 	 * <p>
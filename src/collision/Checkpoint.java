@@ -0,0 +1,154 @@
+package collision;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <b>Checkpoint class</b>
+ * <p>
+ * Saves the state of a world to a compact binary file and restores it again.
+ * <p>
+ * The file starts with a header: the magic number, the format version, the number
+ * of balls, the world's width and height and the engine's tick count. After the 
+ * header each property of the balls is stored as one block, in the same order as
+ * the ParticleStore arrays: x, y, x speed, y speed, radius and mass as doubles, then
+ * the ball types and the image flags as one byte each. All values are little 
+ * endian.
+ * <p>
+ * Because the file has the same column layout as the store, each block is copied
+ * in one bulk operation between the store's array and a memory-mapped region of
+ * the file, with no per-ball objects or serialization. Each block is mapped 
+ * separately, so a single mapping never has to cover more than one column. For 10
+ * million balls the file is about 500 MB.
+ */
+public class Checkpoint {
+	
+	/**
+	 * Identifies checkpoint files ("BALL" in ASCII)
+	 */
+	public static final int MAGIC = 0x42414C4C;
+	
+	/**
+	 * The version of the format written by this class
+	 */
+	public static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 8;
+	
+	/**
+	 * <b>save</b>
+	 * <p>
+	 * Writes the engine's world to a file, replacing it if it exists. Must be 
+	 * called from the thread that runs the engine.
+	 * @param engine - the engine whose world is saved
+	 * @param file - the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void save(SimulationEngine engine, Path file) throws IOException {
+		ParticleStore store = engine.getStore();
+		int count = store.size();
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, 
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(count)
+				  .putDouble(engine.getWidth()).putDouble(engine.getHeight()).putLong(engine.getTick());
+			long offset = HEADER_SIZE;
+			double[][] columns = {store.x, store.y, store.vx, store.vy, store.radius, store.mass};
+			for(double[] column : columns) {
+				map(channel, FileChannel.MapMode.READ_WRITE, offset, 8L*count)
+					.asDoubleBuffer().put(column, 0, count);
+				offset += 8L*count;
+			}
+			map(channel, FileChannel.MapMode.READ_WRITE, offset, count).put(store.kind, 0, count);
+			offset += count;
+			MappedByteBuffer flags = map(channel, FileChannel.MapMode.READ_WRITE, offset, count);
+			byte[] chunk = new byte[Math.min(count, 1 << 16)];
+			for(int from = 0; from < count; from += chunk.length) {
+				int length = Math.min(chunk.length, count - from);
+				for(int i = 0; i < length; i++) {
+					chunk[i] = (byte) (store.alternate[from + i] ? 1 : 0);
+				}
+				flags.put(chunk, 0, length);
+			}
+		}
+	}
+	
+	/**
+	 * <b>restore</b>
+	 * <p>
+	 * Reads a world from a file into a new engine. The engine has the default
+	 * settings; its broad phase, solver and so on can be set afterwards.
+	 * @param file - the file to read
+	 * @return an engine holding the saved world
+	 * @throws IOException if the file cannot be read or is not a checkpoint
+	 */
+	public static SimulationEngine restore(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() < HEADER_SIZE) {
+				throw new IOException("Not a checkpoint file: " + file);
+			}
+			MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if(header.getInt() != MAGIC) {
+				throw new IOException("Not a checkpoint file: " + file);
+			}
+			int version = header.getInt();
+			if(version != VERSION) {
+				throw new IOException("Unsupported checkpoint version " + version + ": " + file);
+			}
+			int count = header.getInt();
+			double width = header.getDouble();
+			double height = header.getDouble();
+			long tick = header.getLong();
+			if(count < 0 || channel.size() != HEADER_SIZE + 50L*count) {
+				throw new IOException("Checkpoint file is truncated or corrupt: " + file);
+			}
+			
+			ParticleStore store = new ParticleStore();
+			store.ensureCapacity(count);
+			long offset = HEADER_SIZE;
+			double[][] columns = {store.x, store.y, store.vx, store.vy, store.radius, store.mass};
+			for(double[] column : columns) {
+				map(channel, FileChannel.MapMode.READ_ONLY, offset, 8L*count)
+					.asDoubleBuffer().get(column, 0, count);
+				offset += 8L*count;
+			}
+			map(channel, FileChannel.MapMode.READ_ONLY, offset, count).get(store.kind, 0, count);
+			offset += count;
+			MappedByteBuffer flags = map(channel, FileChannel.MapMode.READ_ONLY, offset, count);
+			byte[] chunk = new byte[Math.min(count, 1 << 16)];
+			for(int from = 0; from < count; from += chunk.length) {
+				int length = Math.min(chunk.length, count - from);
+				flags.get(chunk, 0, length);
+				for(int i = 0; i < length; i++) {
+					store.alternate[from + i] = chunk[i] != 0;
+				}
+			}
+			store.size = count;
+			SimulationEngine engine = new SimulationEngine(width, height, store);
+			engine.setTick(tick);
+			return engine;
+		}
+	}
+	
+	/**
+	 * <b>map</b>
+	 * <p>
+	 * Maps a region of the file in little endian order.
+	 * @param channel - the open file
+	 * @param mode - whether to map for reading or writing
+	 * @param offset - where the region starts
+	 * @param length - how long the region is
+	 * @return the mapped region
+	 * @throws IOException if the region cannot be mapped
+	 */
+	private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, 
+										long offset, long length) throws IOException {
+		MappedByteBuffer buffer = channel.map(mode, offset, length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+}//End of Checkpoint class
\ No newline at end of file
@@ -0,0 +1,86 @@
+package collision;
+
+import java.awt.*; 
+import java.awt.event.*; 
+import java.io.IOException;
+import java.nio.file.Paths;
+import javax.swing.*;
+
+/**
+ * <b>Collision class</b>
+ * <p>
+ * Creates an elastic collision simulator for two types of balls.
+ * <p>
+ * The simulation can be configured with system properties, for example
+ * -Dcollision.broadphase=brute selects the original brute force collision check
+ * and -Dcollision.solver=impulse the impulse solver. See SimulationSettings.
+ * <p>
+ * -Dcollision.record=file records every tick of the simulation to a file (see 
+ * TrajectoryRecorder), and -Dcollision.replay=file plays such a recording back
+ * instead of running the simulation.
+ * <p>
+ * -Dcollision.scenario=name or file fills the window with balls to start with
+ * (see Scenario), -Dcollision.balls and -Dcollision.seed setting the number of 
+ * balls (40 by default) and the seed of a built in scenario.
+ * -Dcollision.geometry=file adds obstacles such as a maze (see StaticGeometry).
+ * <p>
+ * Above -Dcollision.lod balls (10000 by default) they are drawn as a raster 
+ * instead of as sprites, in the mode given by -Dcollision.lod.mode: auto 
+ * (default), dots or heatmap (see RasterRenderer).
+ * @author James Wen - jrw2175
+ */
+
+public class Collision {
+	public static void main(String[] args) throws IOException {
+	      JFrame frame = new JFrame ("Collisions");      
+	      frame.setDefaultCloseOperation (JFrame.EXIT_ON_CLOSE);
+	      String replay = System.getProperty("collision.replay");
+	      String record = System.getProperty("collision.record");
+	      final CollisionPanel panel = new CollisionPanel(replay != null ? new TrajectoryReader(Paths.get(replay)) : null);
+	      SimulationSettings.configure(panel.getEngine());
+	      SimulationSettings.geometry(panel.getEngine());
+	      panel.setLevelOfDetail(Integer.getInteger("collision.lod", 10000), 
+	    		  				 rasterMode(System.getProperty("collision.lod.mode", "auto")));
+	      Scenario scenario = SimulationSettings.scenario(Integer.getInteger("collision.balls", 40), 
+	    		  										   Long.getLong("collision.seed", 42));
+	      if(replay == null && scenario != null) {
+	    	  scenario.populate(panel.getEngine());
+	      }
+	      if(replay == null && record != null) {
+	    	  final TrajectoryRecorder recorder = new TrajectoryRecorder(Paths.get(record));
+	    	  panel.setRecorder(recorder);
+	    	  //closing the window exits without taking the panel down, so finish the file here
+	    	  Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+	    		  panel.stopSimulation();
+	    		  try {
+	    			  recorder.close();
+	    		  }
+	    		  catch(IOException e) {
+	    			  System.err.println("Recording incomplete: " + e);
+	    		  }
+	    	  }));
+	      }
+	      frame.getContentPane().add(panel);      
+	      frame.pack();      
+	      frame.setVisible(true);
+	}
+	
+	/**
+	 * <b>rasterMode</b>
+	 * <p>
+	 * @param name - auto, dots or heatmap
+	 * @return the RasterRenderer mode of that name
+	 */
+	private static int rasterMode(String name) {
+		switch(name) {
+			case "auto":
+				return RasterRenderer.AUTO;
+			case "dots":
+				return RasterRenderer.DOTS;
+			case "heatmap":
+				return RasterRenderer.HEATMAP;
+			default:
+				throw new IllegalArgumentException("Unknown raster mode: " + name);
+		}
+	}
+}//End of Collision class
\ No newline at end of file
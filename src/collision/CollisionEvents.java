@@ -0,0 +1,338 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * <b>CollisionEvents class</b>
+ * <p>
+ * Passes the collisions of every tick from a SimulationEngine to the
+ * CollisionSubscribers that react to them, so that nothing but physics happens
+ * while collisions are being resolved.
+ * <p>
+ * During a tick the engine only records each collision in a ContactLog. Once the
+ * tick is over the log is published here: each contact becomes an event, a record
+ * of the two balls' indices, the impulse, the point of contact and the tick,
+ * written into a ring buffer of primitive arrays allocated once with the bus.
+ * Events are numbered from 0 in the order they are published, and event e is kept
+ * in slot e modulo the capacity until it is overwritten by event e + capacity.
+ * Contacts from a TiledCollisionPass are logged per tile and published in the
+ * pass's fixed tile order, so the events are the same for any number of threads.
+ * <p>
+ * Every subscription has its own cursor, the number of the next event it will be
+ * given, and is delivered to every period ticks: the subscriber is called once
+ * with all of the events from its cursor to the newest, and reads them with the
+ * getters, so there is no object per event. A subscription that falls a whole
+ * ring behind (a long period, or a tick with more collisions than the capacity)
+ * is handled by its policy:
+ * <ul>
+ * <li>BLOCK - publishing waits for the subscriber: it is delivered to right away,
+ * before any of its events are overwritten. It never misses an event, at the
+ * cost of being called more often than its period.</li>
+ * <li>DROP_OLDEST - publishing carries on and overwrites the oldest events; the
+ * subscriber is given only the newest capacity events at its next delivery and
+ * the ones it missed are counted (see Subscription.getDropped).</li>
+ * </ul>
+ * The bus is used on the thread running the engine, and subscribers are called
+ * on it between ticks. Subscribers must not publish events themselves.
+ */
+public class CollisionEvents {
+	/**
+	 * Deliver early rather than lose events
+	 */
+	public static final int BLOCK = 0;
+
+	/**
+	 * Lose the oldest events rather than deliver early
+	 */
+	public static final int DROP_OLDEST = 1;
+
+	private final int capacity;
+	private final int mask;
+	private final int[] first;
+	private final int[] second;
+	private final double[] impulse;
+	private final double[] x;
+	private final double[] y;
+	private final long[] tick;
+	private long published;
+	private Subscription[] subscriptions = new Subscription[0];
+	//The number of the event that would overwrite one a BLOCK subscriber has not had yet
+	private long blockedAt = Long.MAX_VALUE;
+
+	/**
+	 * Constructs a bus with room for a number of events.
+	 * @param capacity - the number of events kept, rounded up to a power of two
+	 */
+	public CollisionEvents(int capacity) {
+		if(capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Capacity out of range: " + capacity);
+		}
+		int size = 1;
+		while(size < capacity) {
+			size <<= 1;
+		}
+		this.capacity = size;
+		mask = size - 1;
+		first = new int[size];
+		second = new int[size];
+		impulse = new double[size];
+		x = new double[size];
+		y = new double[size];
+		tick = new long[size];
+	}
+
+	/**
+	 * <b>subscribe</b>
+	 * <p>
+	 * Adds a subscriber, which will be given every event published from now on.
+	 * @param subscriber - the subscriber to call
+	 * @param policy - BLOCK or DROP_OLDEST
+	 * @param period - the number of ticks between deliveries, 1 for every tick
+	 * @return the subscription, for unsubscribe and to see how many events it missed
+	 */
+	public Subscription subscribe(CollisionSubscriber subscriber, int policy, int period) {
+		if(policy != BLOCK && policy != DROP_OLDEST) {
+			throw new IllegalArgumentException("Unknown policy: " + policy);
+		}
+		if(period < 1) {
+			throw new IllegalArgumentException("Period must be at least 1: " + period);
+		}
+		Subscription subscription = new Subscription(subscriber, policy, period, published);
+		subscriptions = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+		subscriptions[subscriptions.length - 1] = subscription;
+		updateBlocked();
+		return subscription;
+	}
+
+	/**
+	 * <b>unsubscribe</b>
+	 * <p>
+	 * Removes a subscription. It is not given the events it has not had yet.
+	 * @param subscription - the subscription to remove
+	 */
+	public void unsubscribe(Subscription subscription) {
+		for(int s = 0; s < subscriptions.length; s++) {
+			if(subscriptions[s] == subscription) {
+				Subscription[] remaining = new Subscription[subscriptions.length - 1];
+				System.arraycopy(subscriptions, 0, remaining, 0, s);
+				System.arraycopy(subscriptions, s + 1, remaining, s, remaining.length - s);
+				subscriptions = remaining;
+				updateBlocked();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * <b>publish</b>
+	 * <p>
+	 * Publishes the contacts of a log as events of a tick, in the log's order.
+	 * @param log - the contacts to publish
+	 * @param currentTick - the tick the contacts happened in
+	 */
+	public void publish(ContactLog log, long currentTick) {
+		for(int i = 0; i < log.size(); i++) {
+			if(published >= blockedAt) {
+				deliverBlocked();
+			}
+			int slot = (int) published & mask;
+			first[slot] = log.first[i];
+			second[slot] = log.second[i];
+			impulse[slot] = log.impulse[i];
+			x[slot] = log.x[i];
+			y[slot] = log.y[i];
+			tick[slot] = currentTick;
+			published++;
+		}
+	}
+
+	/**
+	 * <b>deliver</b>
+	 * <p>
+	 * Gives every subscription that is due in a tick the events it has not had.
+	 * @param currentTick - the tick that has just ended
+	 */
+	public void deliver(long currentTick) {
+		for(Subscription subscription : subscriptions) {
+			if(currentTick % subscription.period == 0) {
+				subscription.drain(this);
+			}
+		}
+		updateBlocked();
+	}
+
+	/**
+	 * <b>deliverBlocked</b>
+	 * <p>
+	 * Delivers to the BLOCK subscriptions whose oldest event is about to be
+	 * overwritten.
+	 */
+	private void deliverBlocked() {
+		for(Subscription subscription : subscriptions) {
+			if(subscription.policy == BLOCK && published - subscription.cursor >= capacity) {
+				subscription.drain(this);
+			}
+		}
+		updateBlocked();
+	}
+
+	/**
+	 * <b>updateBlocked</b>
+	 * <p>
+	 * Works out which event will next have to wait for a BLOCK subscription.
+	 */
+	private void updateBlocked() {
+		blockedAt = Long.MAX_VALUE;
+		for(Subscription subscription : subscriptions) {
+			if(subscription.policy == BLOCK) {
+				blockedAt = Math.min(blockedAt, subscription.cursor + capacity);
+			}
+		}
+	}
+
+	/**
+	 * <b>getCapacity</b>
+	 * <p>
+	 * @return capacity - the number of events kept
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * <b>getPublished</b>
+	 * <p>
+	 * @return published - the number of events published so far, which is also
+	 * the number the next one will have
+	 */
+	public long getPublished() {
+		return published;
+	}
+
+	/**
+	 * <b>getFirst</b>
+	 * <p>
+	 * @param e - the number of an event still in the ring
+	 * @return the index of the first ball
+	 */
+	public int getFirst(long e) {
+		return first[(int) e & mask];
+	}
+
+	/**
+	 * <b>getSecond</b>
+	 * <p>
+	 * @param e - the number of an event still in the ring
+	 * @return the index of the second ball
+	 */
+	public int getSecond(long e) {
+		return second[(int) e & mask];
+	}
+
+	/**
+	 * <b>getImpulse</b>
+	 * <p>
+	 * @param e - the number of an event still in the ring
+	 * @return the size of the change in the first ball's momentum
+	 */
+	public double getImpulse(long e) {
+		return impulse[(int) e & mask];
+	}
+
+	/**
+	 * <b>getX</b>
+	 * <p>
+	 * @param e - the number of an event still in the ring
+	 * @return the x of the point where the balls touched
+	 */
+	public double getX(long e) {
+		return x[(int) e & mask];
+	}
+
+	/**
+	 * <b>getY</b>
+	 * <p>
+	 * @param e - the number of an event still in the ring
+	 * @return the y of the point where the balls touched
+	 */
+	public double getY(long e) {
+		return y[(int) e & mask];
+	}
+
+	/**
+	 * <b>getTick</b>
+	 * <p>
+	 * @param e - the number of an event still in the ring
+	 * @return the tick the collision happened in
+	 */
+	public long getTick(long e) {
+		return tick[(int) e & mask];
+	}
+
+	/**
+	 * <b>Subscription class</b>
+	 * <p>
+	 * One subscriber's place in the events: its cursor, policy and period, and
+	 * how many events it has missed.
+	 */
+	public static class Subscription {
+		private final CollisionSubscriber subscriber;
+		private final int policy;
+		private final int period;
+		private long cursor;
+		private long dropped;
+
+		/**
+		 * Constructs a subscription starting at an event.
+		 * @param subscriber - the subscriber to call
+		 * @param policy - BLOCK or DROP_OLDEST
+		 * @param period - the number of ticks between deliveries
+		 * @param cursor - the number of the first event to give it
+		 */
+		private Subscription(CollisionSubscriber subscriber, int policy, int period, long cursor) {
+			this.subscriber = subscriber;
+			this.policy = policy;
+			this.period = period;
+			this.cursor = cursor;
+		}
+
+		/**
+		 * <b>drain</b>
+		 * <p>
+		 * Gives the subscriber every event from its cursor that is still in the
+		 * ring, and counts the ones that are not.
+		 * @param events - the bus
+		 */
+		private void drain(CollisionEvents events) {
+			long oldest = events.published - events.capacity;
+			if(cursor < oldest) {
+				dropped += oldest - cursor;
+				cursor = oldest;
+			}
+			if(cursor < events.published) {
+				long to = events.published;
+				subscriber.onContacts(events, cursor, to);
+				cursor = to;
+			}
+		}
+
+		/**
+		 * <b>getCursor</b>
+		 * <p>
+		 * @return cursor - the number of the next event the subscriber will be given
+		 */
+		public long getCursor() {
+			return cursor;
+		}
+
+		/**
+		 * <b>getDropped</b>
+		 * <p>
+		 * @return dropped - the number of events overwritten before the subscriber
+		 * was given them
+		 */
+		public long getDropped() {
+			return dropped;
+		}
+	}//End of Subscription class
+}//End of CollisionEvents class
\ No newline at end of file
@@ -0,0 +1,63 @@
+package collision;
+
+/**
+ * <b>CollisionMonster class</b>
+ * <p>
+ * Models a heavier, multi-image ball that collides elastically with other balls.
+ * <p>
+ * These ball objects inherit all properties of the CollisionObject balls in that 
+ * they also have radii, masses, centers. However, this subclass adds on the features 
+ * of having two associated images that it switches between on collision with 
+ * other balls. Additionally, ball objects of CollisionMonster type are twice as
+ * heavy as CollisionObject ball objects of the same size by default, and may be
+ * made larger than them.
+ * <p>
+ * The superman.png and batman.png images must be in the project directory for the 
+ * image to appear.
+ * <p>
+ * Which image is showing is part of the ball's state in the ParticleStore (the
+ * alternate flag), which determines whether the current image on the ball is of
+ * the Superman logo (default) or Batman logo.
+ * @author James Wen - jrw2175
+ */
+public class CollisionMonster extends CollisionObject{
+	
+	/**
+	 * Constructs a ball object with the superman logo as the initial image icon 
+	 * and the specified position and speed, and adds it to the given store. The 
+	 * ball is twice as heavy as the regular balls.
+	 * @param store - the store that holds the ball's state
+	 * @param initialX - the initial x position of the ball
+	 * @param initialY - the initial y position of the ball
+	 * @param xSpeed - the initial horizontal speed of the ball
+	 * @param xSpeed - the initial vertical speed of the ball
+	 */
+	CollisionMonster(ParticleStore store, int initialX, int initialY, int xSpeed, int ySpeed){
+		this(store, initialX, initialY, xSpeed, ySpeed, DEFAULT_RADIUS);
+	}
+	
+	/**
+	 * Constructs a ball object of the given size with the superman logo as the 
+	 * initial image icon, and adds it to the given store. The ball is twice as 
+	 * heavy as a regular ball of the same size, so its mass grows with its area.
+	 * @param store - the store that holds the ball's state
+	 * @param initialX - the initial x position of the ball (its left edge)
+	 * @param initialY - the initial y position of the ball (its top edge)
+	 * @param xSpeed - the initial horizontal speed of the ball
+	 * @param xSpeed - the initial vertical speed of the ball
+	 * @param radius - the radius of the ball
+	 */
+	CollisionMonster(ParticleStore store, int initialX, int initialY, int xSpeed, int ySpeed, double radius){
+		super(store, initialX, initialY, xSpeed, ySpeed, radius,
+			  2*(radius/DEFAULT_RADIUS)*(radius/DEFAULT_RADIUS), ParticleStore.MONSTER);
+	}
+	
+	/**
+	 * <b>collideReact</b>
+	 * <p>
+	 * Changes the current image of the ball.
+	 */
+	public void collideReact() {
+		getStore().toggleImage(getIndex());
+	}
+}//End of CollisionMonster class
\ No newline at end of file
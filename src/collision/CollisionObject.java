@@ -0,0 +1,270 @@
+package collision;
+
+/**
+ * <b>CollisionObject class</b>
+ * <p>
+ * Models a ball that collides elastically with other balls.
+ * <p>
+ * The ball has a radius, mass, center, and associated image. Balls are
+ * DEFAULT_RADIUS pixels in radius and of mass 1 unless they are created with a
+ * size and mass of their own, and the image is scaled to fit the ball.
+ * <p>
+ * The ball's state does not live in this object. It is a thin view over one entry
+ * of a ParticleStore, which keeps the state of every ball in parallel primitive
+ * arrays, and each getter and setter reads or writes that entry. The view only
+ * holds its current index in the store (which the store updates if another ball
+ * is removed). Images are decoded once and shared by every ball (see SpriteCache).
+ * <p>
+ * The superman.png image must be in the project directory for the image to appear.
+ * @author James Wen - jrw2175
+ */
+
+import java.awt.image.BufferedImage;
+
+public class CollisionObject {
+	
+	/**
+	 * The radius of a ball created without a size of its own, which fits the
+	 * 45 pixel images
+	 */
+	public static final int DEFAULT_RADIUS = 22;
+	
+	private ParticleStore store;
+	private int index;
+	
+	/**
+	 * Constructs a ball object with the superman logo as the image icon and the
+	 * specified position and speed, and adds it to the given store.
+	 * @param store - the store that holds the ball's state
+	 * @param initialX - the initial x position of the ball
+	 * @param initialY - the initial y position of the ball
+	 * @param xSpeed - the initial horizontal speed of the ball
+	 * @param xSpeed - the initial vertical speed of the ball
+	 */
+	public CollisionObject(ParticleStore store, int initialX, int initialY, int xSpeed, int ySpeed) {
+		this(store, initialX, initialY, xSpeed, ySpeed, DEFAULT_RADIUS, 1, ParticleStore.NORMAL);
+	}
+	
+	/**
+	 * Constructs a ball object of the given size and mass with the superman logo
+	 * as the image icon, and adds it to the given store.
+	 * @param store - the store that holds the ball's state
+	 * @param initialX - the initial x position of the ball (its left edge)
+	 * @param initialY - the initial y position of the ball (its top edge)
+	 * @param xSpeed - the initial horizontal speed of the ball
+	 * @param xSpeed - the initial vertical speed of the ball
+	 * @param radius - the radius of the ball
+	 * @param mass - the mass of the ball
+	 */
+	public CollisionObject(ParticleStore store, int initialX, int initialY, int xSpeed, int ySpeed,
+						   double radius, double mass) {
+		this(store, initialX, initialY, xSpeed, ySpeed, radius, mass, ParticleStore.NORMAL);
+	}
+	
+	/**
+	 * Constructs a ball object of the given type, size and mass and adds it to the
+	 * given store.
+	 * @param store - the store that holds the ball's state
+	 * @param initialX - the initial x position of the ball (its left edge)
+	 * @param initialY - the initial y position of the ball (its top edge)
+	 * @param xSpeed - the initial horizontal speed of the ball
+	 * @param xSpeed - the initial vertical speed of the ball
+	 * @param radius - the radius of the ball
+	 * @param mass - the mass of the ball
+	 * @param type - the type of ball, ParticleStore.NORMAL or ParticleStore.MONSTER
+	 */
+	protected CollisionObject(ParticleStore store, int initialX, int initialY, 
+							  int xSpeed, int ySpeed, double radius, double mass, byte type) {
+		if(radius <= 0 || mass <= 0) {
+			throw new IllegalArgumentException("A ball needs a positive radius and mass");
+		}
+	    this.store = store;
+	    index = store.add(initialX + radius, initialY + radius, xSpeed, ySpeed, radius, mass, type);
+	    store.attach(index, this);
+	}
+	
+	/**
+	 * <b>changeMass</b>
+	 * <p>
+	 * Changes the mass of the ball.
+	 * <p>
+	 * @param newMass - the new mass of the ball
+	 */
+	public void changeMass(int newMass) {
+		store.mass[index] = newMass;
+	}
+	
+	/**
+	 * <b>moveX</b>
+	 * <p>
+	 * Moves the ball horizontally.
+	 */		
+	public void moveX(){
+		store.x[index] += store.vx[index];
+	}
+
+	/**
+	 * <b>moveY</b>
+	 * <p>
+	 * Moves the ball vertically.
+	 */
+	public void moveY(){
+		store.y[index] += store.vy[index];
+	}
+	
+	/**
+	 * <b>changeXDirection</b>
+	 * <p>
+	 * Changes the ball's horizontal direction.
+	 */
+	public void changeXDirection(){
+		store.vx[index] *= -1;
+	}
+	
+	/**
+	 * <b>changeYDirection</b>
+	 * <p>
+	 * Changes the ball's vertical direction.
+	 */
+	public void changeYDirection(){
+		store.vy[index] *= -1;
+	}
+	
+	/**
+	 * <b>changeXSpeed</b>
+	 * <p>
+	 * Changes the ball's horizontal speed.
+	 * @param xSpeed - the new horizontal speed of the ball
+	 */
+	public void changeXSpeed(double xSpeed) {
+		store.vx[index] = Math.ceil(xSpeed);
+	}
+	
+	/**
+	 * <b>changeYSpeed</b>
+	 * <p>
+	 * Changes the ball's vertical speed.
+	 * @param ySpeed - the new vertical speed of the ball
+	 */
+	public void changeYSpeed(double ySpeed) {
+		store.vy[index] = Math.ceil(ySpeed);
+	}
+	
+	/**
+	 * <b>setIndex</b>
+	 * <p>
+	 * Points the view at a different entry of the store. Called by the store when
+	 * balls are moved around or removed (index -1).
+	 * @param newIndex - the ball's new index in the store
+	 */
+	void setIndex(int newIndex) {
+		index = newIndex;
+	}
+	
+	/**
+	 * <b>getIndex</b>
+	 * <p>
+	 * @return index - the ball's index in its store, or -1 if it has been removed
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * <b>getStore</b>
+	 * <p>
+	 * @return store - the store holding the ball's state
+	 */
+	protected ParticleStore getStore() {
+		return store;
+	}
+	
+	/**
+	 * <b>getImage</b>
+	 * <p>
+	 * @return the ball's current image
+	 */
+	public BufferedImage getImage(){
+		return SpriteCache.get(SpriteCache.spriteOf(store, index), getImageSize());
+	}
+	
+	/**
+	 * <b>getImageSize</b>
+	 * <p>
+	 * @return the width and height of the ball's image
+	 */
+	public int getImageSize() {
+		return SpriteCache.imageSize(store.radius[index]);
+	}
+	
+	/**
+	 * <b>getRadius</b>
+	 * <p>
+	 * @return radius - the ball's radius
+	 */
+	public int getRadius(){
+		return (int) store.radius[index];
+	}
+	/**
+	 * <b>getMass</b>
+	 * <p>
+	 * @return mass - the ball's mass
+	 */
+	public int getMass(){
+		return (int) store.mass[index];
+	}
+	
+	/**
+	 * <b>getX</b>
+	 * <p>
+	 * @return x - the ball's current x position
+	 */
+	public int getX() {
+		return (int) (store.x[index] - store.radius[index]);
+	}
+	
+	/**
+	 * <b>getY</b>
+	 * <p>
+	 * @return y - the ball's current y position
+	 */
+	public int getY() {
+		return (int) (store.y[index] - store.radius[index]);
+	}
+	
+	/**
+	 * <b>getCenterX</b>
+	 * <p>
+	 * @return centerX - the center of the ball's x position
+	 */
+	public int getCenterX() {
+		return (int) store.x[index];
+	}
+
+	/**
+	 * <b>getCenterY</b>
+	 * <p>
+	 * @return centerY - the center of the ball's Y position
+	 */	
+	public int getCenterY() {
+		return (int) store.y[index];
+	}
+	
+	/**
+	 * <b>getXMove</b>
+	 * <p>
+	 * @return moveX - the horizontal speed of the ball
+	 */
+	public int getXMove() {
+		return (int) store.vx[index];
+	}
+
+	/**
+	 * <b>getYMove</b>
+	 * <p>
+	 * @return moveY - the vertical speed of the ball
+	 */
+	public int getYMove() {
+		return (int) store.vy[index];
+	}
+}//End of CollisionObject class
\ No newline at end of file
@@ -0,0 +1,457 @@
+package collision;
+
+import java.awt.*;
+import java.awt.event.*;
+import javax.swing.*;
+
+/**
+ * <b>CollisionPanel class</b>
+ * <p>
+ * Creates and maintains a visual representation of ball objects and simulates
+ * elastic collisions between them.
+ * <p>
+ * The simulation runs at a fixed rate, one tick every DELAY milliseconds unless
+ * -Dcollision.rate says otherwise, kept by a SimulationClock whatever the frame
+ * rate. How far a ball travels in a tick decides how often it sticks to other
+ * balls or walls and how much the collisions break conservation, so the clock
+ * splits a tick into sub-steps whenever a ball moves more than half its radius in
+ * one. Running with -Dcollision.mode=event avoids the trade-off altogether
+ * by resolving each collision at the exact moment it happens (see 
+ * EventDrivenSimulation).
+ * <p>
+ * The physics (movement, wall bounces and collisions) is run by a SimulationEngine,
+ * which does not depend on Swing. The state of every ball is kept in the engine's 
+ * ParticleStore, which keeps positions, speeds, radii and masses in parallel arrays
+ * and grows as more balls are created.
+ * <p>
+ * The engine runs on its own SimulationThread, while the Swing timer only repaints
+ * the panel every FRAME_DELAY milliseconds. After each step the simulation thread
+ * publishes a snapshot of the balls through a SnapshotExchange and paintComponent
+ * draws the newest complete one, so a slow paint never holds up the simulation or
+ * the other way round. Each frame places the balls between their last two 
+ * positions according to how long ago the newest one was reached, so the motion
+ * stays smooth when frames and ticks do not line up. Balls created by
+ * clicks are added on the simulation thread.
+ * <p>
+ * Obstacles given to the engine (see StaticGeometry) are drawn as dark lines over
+ * the balls. Balls are drawn as sprites by a SpriteRenderer until there are more than 
+ * DETAIL_THRESHOLD of them (see setLevelOfDetail). Beyond that the sprites would
+ * only overlap into noise, so a RasterRenderer draws each ball as a dot or the
+ * balls' density as a heatmap instead.
+ * <p>
+ * Every step can be recorded to a file with setRecorder. A panel created with a 
+ * TrajectoryReader plays that recording back instead of running the simulation; 
+ * the left and right arrow keys then jump back and forward SEEK_TICKS ticks and 
+ * the Home key jumps to the start.
+ * <p>
+ * The currentDirection and objectNormal variables dictate the currently set velocity
+ * and ball type that any balls created by clicks would have. Clicking on a ball 
+ * that is already there selects it instead, and it is drawn with a ring around it.
+ * The click is looked up in the SpatialIndex that comes with each snapshot, so it
+ * finds the ball among those on screen without going to the simulation thread.
+ * <p>
+ * Collision detection is performed in two phases. A broad phase (a uniform grid
+ * spatial hash by default, see the BroadPhase interface) finds the pairs of balls
+ * that are near each other. Each of those pairs is then checked to see whether their
+ * centers are close enough to be considered colliding (less than the sum of 
+ * their radii). The original check of every ball against every other ball is kept as
+ * BruteForceBroadPhase and can be selected with setBroadPhase.
+ * <p>
+ * Collision resolution is performed through a series of mathematical formulas for
+ * 2D Elastic Collisions. Equations referred to are from: 
+ * http://www.hoomanr.com/Demos/Elastic2/
+ * <p>
+ * Also, due to the way that the formulas are implemented and necessary rounding due
+ * to double to int conversions, there is an overall increase in momentum as time and
+ * collisions increases. However, with a reasonable amount of balls and activity, this
+ * is negligible.
+ * @author James Wen - jrw2175
+ */
+
+public class CollisionPanel extends JPanel {
+	private final int WIDTH = 800; 
+	private final int HEIGHT = 600;
+	private final int DELAY = 3;
+	private final int FRAME_DELAY = 16;
+	private final int SEEK_TICKS = 1000;
+	private final int DETAIL_THRESHOLD = 10000;
+	private Timer timer;   
+	private Point click;
+	
+	private SimulationEngine engine = new SimulationEngine(WIDTH, HEIGHT);
+	private ParticleStore store = engine.getStore();
+	private SnapshotExchange snapshots = new SnapshotExchange();
+	private SimulationThread simulation = new SimulationThread(engine, snapshots, 
+																		SimulationSettings.clock(DELAY*1000000L));
+	private SpriteRenderer renderer = new SpriteRenderer();
+	private RasterRenderer rasterRenderer = new RasterRenderer(RasterRenderer.AUTO);
+	private int detailThreshold = DETAIL_THRESHOLD;
+	private ReplayThread replay;
+	private int selected = -1;
+	
+	private CardinalDirection currentDirection;
+	private boolean objectNormal;
+	
+	int moveSpeedX;
+	int moveSpeedY;
+	
+	/**
+	 * Sets up the panel and configures the mouse and key listeners.
+	 */  
+	   public CollisionPanel(){
+		  this(null);
+	   }
+	   
+	/**
+	 * Sets up a panel that plays back a recording instead of simulating, if one is
+	 * given.
+	 * @param recording - the recording to play, or null to run the simulation
+	 */  
+	   public CollisionPanel(TrajectoryReader recording){      
+		  if(recording != null) {
+			  replay = new ReplayThread(recording, snapshots, DELAY*1000000L);
+		  }
+		  engine.setSpatialIndexing(true);
+		  timer = new Timer(FRAME_DELAY, new CollisionListener());
+
+	      addMouseListener(new CreationListener());
+	      addKeyListener(new DirectionalListener());
+	      
+	      currentDirection = CardinalDirection.SE;
+	      objectNormal = true;
+	      setPreferredSize (new Dimension(WIDTH, HEIGHT));      
+	      setBackground (Color.white);
+	      timer.start();
+	      setFocusable(true);
+	   }
+		
+	    /**
+	     *<b>paintComponent</b> 
+		 * Draws all currently created balls through the renderer's back buffer, or
+		 * as a raster if there are too many of them for sprites.
+		 */
+	   public void paintComponent(Graphics page){
+		   long start = TickMetrics.ENABLED ? System.nanoTime() : 0;
+		   FrameSnapshot snapshot = snapshots.getLatest();
+		   if(snapshot.getCount() > detailThreshold) {
+			   rasterRenderer.paint(this, page, snapshot);
+		   }
+		   else {
+			   renderer.paint(this, page, snapshot);
+		   }
+		   paintGeometry(page);
+		   if(selected >= 0 && selected < snapshot.getCount()) {
+			   paintSelection(page, snapshot);
+		   }
+		   if(TickMetrics.ENABLED) {
+			   TickMetrics.PAINT.record(System.nanoTime() - start);
+		   }
+	   }
+	   
+	   /**
+	    *<b>paintGeometry</b>
+	    * Draws the obstacles balls bounce off. The world's own walls fall on the
+	    * edges of the panel.
+	    * @param page - the graphics to draw on
+	    */
+	   private void paintGeometry(Graphics page) {
+		   StaticGeometry geometry = engine.getGeometry();
+		   page.setColor(Color.darkGray);
+		   for(int s = 0; s < geometry.size(); s++) {
+			   page.drawLine((int) geometry.getStartX(s), (int) geometry.getStartY(s), 
+					   		 (int) geometry.getEndX(s), (int) geometry.getEndY(s));
+		   }
+	   }
+	   
+	   /**
+	    *<b>paintSelection</b>
+	    * Draws a ring around the selected ball, where the renderer placed it.
+	    * @param page - the graphics to draw on
+	    * @param snapshot - the frame being drawn
+	    */
+	   private void paintSelection(Graphics page, FrameSnapshot snapshot) {
+		   float drawX = snapshot.x[selected];
+		   float drawY = snapshot.y[selected];
+		   float alpha = snapshot.getAlpha(System.nanoTime());
+		   if(selected < snapshot.previousCount && alpha < 1) {
+			   drawX = snapshot.previousX[selected] + (drawX - snapshot.previousX[selected])*alpha;
+			   drawY = snapshot.previousY[selected] + (drawY - snapshot.previousY[selected])*alpha;
+		   }
+		   int size = snapshot.size[selected];
+		   page.setColor(Color.red);
+		   page.drawOval((int) drawX - 2, (int) drawY - 2, size + 4, size + 4);
+	   }
+	   
+	   /**
+	    *<b>addNotify</b>
+	    * Starts the simulation thread once the panel is shown, so that the engine can
+	    * be configured before then.
+	    */
+	   public void addNotify() {
+		   super.addNotify();
+		   if(replay != null) {
+			   replay.start();
+		   }
+		   else {
+			   simulation.start();
+		   }
+	   }
+	   
+	   /**
+	    *<b>removeNotify</b>
+	    * Stops the simulation thread when the panel is taken down.
+	    */
+	   public void removeNotify() {
+		   stopSimulation();
+		   super.removeNotify();
+	   }
+	   
+	   /**
+	    *<b>stopSimulation</b>
+	    * Stops the simulation or playback thread, waiting for its current step to 
+	    * finish. Nothing more is recorded afterwards.
+	    */
+	   public void stopSimulation() {
+		   if(replay != null) {
+			   replay.stop();
+		   }
+		   simulation.stop();
+	   }
+	   
+	   /**
+	    *<b>setRecorder</b>
+	    * Records every step of the simulation from when the panel is shown. Must be 
+	    * called before the panel is shown.
+	    * @param recorder - the recorder to write to
+	    */
+	   public void setRecorder(TrajectoryRecorder recorder) {
+		   simulation.setRecorder(recorder);
+	   }
+
+	   /**
+	    *<b>setBroadPhase</b>
+	    * Changes the broad phase used to find the pairs of balls to check.
+	    * @param newBroadPhase - the broad phase to use from the next refresh on
+	    */
+	   public void setBroadPhase(final BroadPhase newBroadPhase) {
+		   simulation.submit(() -> engine.setBroadPhase(newBroadPhase));
+	   }
+	   
+	   /**
+	    *<b>setLevelOfDetail</b>
+	    * Chooses when and how balls are drawn as a raster instead of as sprites.
+	    * @param threshold - the number of balls above which the raster is drawn
+	    * @param mode - the RasterRenderer mode (AUTO, DOTS or HEATMAP)
+	    */
+	   public void setLevelOfDetail(int threshold, int mode) {
+		   detailThreshold = threshold;
+		   rasterRenderer = new RasterRenderer(mode);
+	   }
+	   
+	   /**
+	    *<b>getSelected</b>
+	    * @return selected - the index of the ball last clicked on, or -1 if none is
+	    * selected
+	    */
+	   public int getSelected() {
+		   return selected;
+	   }
+	   
+	   /**
+	    *<b>getEngine</b>
+	    * The engine must only be changed before the panel is shown, as afterwards it
+	    * belongs to the simulation thread.
+	    * @return engine - the engine running the panel's simulation
+	    */
+	   public SimulationEngine getEngine() {
+		   return engine;
+	   }
+	   
+		/**
+		 * <b>CollisionListener Class</b>
+		 * <p>
+		 * An action listener that repaints the ball objects according to the timer 
+		 * to show the simulation's latest snapshot.
+		 */
+	   private class CollisionListener implements ActionListener{      
+		   public void actionPerformed (ActionEvent event){  
+			   repaint();
+		   }
+	   }
+	   
+		/**
+		 * <b>CreationListener Class</b>
+		 * <p>
+		 * A Mouse listener that selects the ball under the mouse, or if there is
+		 * none creates a new ball object according to the current ball parameters
+		 * and point at which the mouse was clicked. The ball is added by the 
+		 * simulation thread before its next step.
+		 */
+	   private class CreationListener implements MouseListener{
+		   public void mouseClicked(MouseEvent event){
+			    if(replay != null) {
+			    	return;
+			    }
+			    click = event.getPoint();
+			    selected = snapshots.getLatest().getIndex().hit(click.getX(), click.getY());
+			    if(selected >= 0) {
+			    	repaint();
+			    	return;
+			    }
+				switch (currentDirection){
+		   			case NW:
+		   				moveSpeedX = -1;
+		   				moveSpeedY = -1;
+		   				break;
+		   			case N:
+		   				moveSpeedX = 0;
+		   				moveSpeedY = -1;
+		   				break;
+		   			case NE:
+		   				moveSpeedX = 1;
+		   				moveSpeedY = -1;
+		   				break;
+		   			case W:
+		   				moveSpeedX = -1;
+		   				moveSpeedY = 0;
+		   				break;
+		   			case C:
+		   				moveSpeedX = 0;
+		   				moveSpeedY = 0;
+		   				break;
+		   			case E:
+		   				moveSpeedX = 1;
+		   				moveSpeedY = 0;
+		   				break;
+		   			case SW:
+		   				moveSpeedX = -1;
+		   				moveSpeedY = 1;
+		   				break;
+		   			case S:
+		   				moveSpeedX = 0;
+		   				moveSpeedY = 1;
+		   				break;
+		   			case SE:
+		   				moveSpeedX = 1;
+		   				moveSpeedY = 1;
+		   				break;
+		   	   }
+			   final int initialX = (int)click.getX();
+			   final int initialY = (int)click.getY();
+			   final int xSpeed = moveSpeedX;
+			   final int ySpeed = moveSpeedY;
+			   if(objectNormal) {
+				   simulation.submit(() -> new CollisionObject(store,initialX,initialY,xSpeed,ySpeed));
+			   }
+			   else {
+				   simulation.submit(() -> new CollisionMonster(store,initialX,initialY,xSpeed,ySpeed));
+			   }
+		   }
+		   public void mouseEntered(MouseEvent event){}
+		   public void mouseExited(MouseEvent event){}
+		   public void mousePressed(MouseEvent event){}
+		   public void mouseReleased(MouseEvent event){}
+	   }
+		
+	   /**
+		 * <b>DirectionalListener Class</b>
+		 * <p>
+		 * A Key Listener that sets the current ball parameters (the velocity vectors
+		 * and ball type) of any current balls to be created based on which keys 
+		 * are pressed.
+		 */
+	   private class DirectionalListener implements KeyListener{
+		   public void keyPressed(KeyEvent event){
+			   if(replay != null) {
+				   switch (event.getKeyCode()){
+				   		case KeyEvent.VK_LEFT:
+				   			replay.seek(replay.getTick() - SEEK_TICKS);
+				   			break;
+				   		case KeyEvent.VK_RIGHT:
+				   			replay.seek(replay.getTick() + SEEK_TICKS);
+				   			break;
+				   		case KeyEvent.VK_HOME:
+				   			replay.seek(0);
+				   			break;
+				   }
+				   return;
+			   }
+			   switch (event.getKeyCode()){
+			   		case KeyEvent.VK_W:
+			   			currentDirection = CardinalDirection.NW;
+			   			objectNormal = true;
+			   			break;
+			   		case KeyEvent.VK_E:
+			   			currentDirection = CardinalDirection.N;
+			   			objectNormal = true;
+			   			break;
+			   		case KeyEvent.VK_R:
+			   			currentDirection = CardinalDirection.NE;
+			   			objectNormal = true;
+			   			break;
+			   		case KeyEvent.VK_S:
+			   			currentDirection = CardinalDirection.W;
+			   			objectNormal = true;
+			   			break;
+			   		case KeyEvent.VK_D:
+			   			currentDirection = CardinalDirection.C;
+			   			objectNormal = true;
+			   			break;
+			   		case KeyEvent.VK_F:
+			   			currentDirection = CardinalDirection.E;
+			   			objectNormal = true;
+			   			break;
+			   		case KeyEvent.VK_X:
+			   			currentDirection = CardinalDirection.SW;
+			   			objectNormal = true;
+			   			break;
+			   		case KeyEvent.VK_C:
+			   			currentDirection = CardinalDirection.S;
+			   			objectNormal = true;
+			   			break;
+			   		case KeyEvent.VK_V:
+			   			currentDirection = CardinalDirection.SE;
+			   			objectNormal = true;
+			   			break;
+			   		case KeyEvent.VK_U:
+			   			currentDirection = CardinalDirection.NW;
+			   			objectNormal = false;
+			   			break;
+			   		case KeyEvent.VK_I:
+			   			currentDirection = CardinalDirection.N;
+			   			objectNormal = false;
+			   			break;
+			   		case KeyEvent.VK_O:
+			   			currentDirection = CardinalDirection.NE;
+			   			objectNormal = false;
+			   			break;
+			   		case KeyEvent.VK_J:
+			   			currentDirection = CardinalDirection.W;
+			   			objectNormal = false;
+			   			break;
+			   		case KeyEvent.VK_K:
+			   			currentDirection = CardinalDirection.C;
+			   			objectNormal = false;
+			   			break;
+			   		case KeyEvent.VK_L:
+			   			currentDirection = CardinalDirection.E;
+			   			objectNormal = false;
+			   			break;
+			   		case KeyEvent.VK_M:
+			   			currentDirection = CardinalDirection.SW;
+			   			objectNormal = false;
+			   			break;
+			   		case KeyEvent.VK_COMMA:
+			   			currentDirection = CardinalDirection.S;
+			   			objectNormal = false;
+			   			break;
+			   		case KeyEvent.VK_PERIOD:
+			   			currentDirection = CardinalDirection.SE;
+			   			objectNormal = false;
+			   			break;
+			   }
+		   }
+		   public void keyTyped(KeyEvent event){}
+		   public void keyReleased(KeyEvent event){}
+	   }
+}//End of CollisionPanel class
\ No newline at end of file
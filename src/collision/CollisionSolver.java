@@ -0,0 +1,28 @@
+package collision;
+
+/**
+ * <b>CollisionSolver interface</b>
+ * <p>
+ * A collision solver works out the speeds of two touching balls after they
+ * collide. SimulationEngine finds the touching pairs and hands each one to its
+ * solver.
+ * <p>
+ * Solvers must only read and change the two balls they are given, so that pairs
+ * with no ball in common can be solved on different threads at the same time.
+ */
+public interface CollisionSolver {
+
+	/**
+	 * <b>resolve</b>
+	 * <p>
+	 * Resolves the collision between two touching balls.
+	 * @param store - the store holding the balls
+	 * @param m - the index of the ball on the right
+	 * @param n - the index of the ball on the left
+	 * @param dt - the length of the step being run
+	 * @return whether the balls' speeds were changed; false if the solver left
+	 * the pair alone, which then does not count as a collision
+	 */
+	boolean resolve(ParticleStore store, int m, int n, double dt);
+
+}//End of CollisionSolver interface
\ No newline at end of file
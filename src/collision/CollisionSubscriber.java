@@ -0,0 +1,27 @@
+package collision;
+
+/**
+ * <b>CollisionSubscriber interface</b>
+ * <p>
+ * Receives the collisions published by a CollisionEvents, a batch at a time.
+ * Subscribers are used for whatever should happen because of a collision but is
+ * not part of the physics, such as switching a ball's image, gathering
+ * statistics, playing a sound or logging.
+ */
+public interface CollisionSubscriber {
+
+	/**
+	 * <b>onContacts</b>
+	 * <p>
+	 * Handles a run of events, read from the bus with its getters. The events
+	 * are numbered in the order they were published and are only readable during
+	 * this call; a subscriber that needs them later must copy what it needs.
+	 * Called on the thread running the engine, which waits for it to return, so
+	 * slow work should be handed to another thread.
+	 * @param events - the bus holding the events
+	 * @param from - the number of the first event of the run
+	 * @param to - the number after the last event of the run
+	 */
+	void onContacts(CollisionEvents events, long from, long to);
+
+}//End of CollisionSubscriber interface
\ No newline at end of file
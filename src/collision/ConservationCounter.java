@@ -0,0 +1,142 @@
+package collision;
+
+/**
+ * <b>ConservationCounter class</b>
+ * <p>
+ * Measures how far a collision solver strays from conserving momentum and kinetic
+ * energy.
+ * <p>
+ * Walls reverse momentum, so the total momentum of the world is not a useful
+ * measure. Instead the momentum and energy of each colliding pair are measured
+ * just before and just after the solver runs, and the differences are added up.
+ * A perfectly elastic solver leaves both totals at zero (apart from rounding).
+ * <p>
+ * A counter is not thread safe. Each thread should use its own counter and the
+ * counters can be combined with add afterwards.
+ */
+public class ConservationCounter {
+	private long collisions;
+	private double momentumDriftX;
+	private double momentumDriftY;
+	private double energyDrift;
+	private double absoluteEnergyDrift;
+	
+	//Momentum and energy of the pair being solved, recorded by begin
+	private double startMomentumX;
+	private double startMomentumY;
+	private double startEnergy;
+	
+	/**
+	 * <b>begin</b>
+	 * <p>
+	 * Records the momentum and energy of a pair before it is solved.
+	 * @param store - the store holding the balls
+	 * @param m - the index of one ball
+	 * @param n - the index of the other ball
+	 */
+	public void begin(ParticleStore store, int m, int n) {
+		startMomentumX = momentumX(store, m, n);
+		startMomentumY = momentumY(store, m, n);
+		startEnergy = energy(store, m, n);
+	}
+	
+	/**
+	 * <b>end</b>
+	 * <p>
+	 * Adds the change in the pair's momentum and energy since begin to the totals.
+	 * @param store - the store holding the balls
+	 * @param m - the index of one ball
+	 * @param n - the index of the other ball
+	 */
+	public void end(ParticleStore store, int m, int n) {
+		double change = energy(store, m, n) - startEnergy;
+		momentumDriftX += momentumX(store, m, n) - startMomentumX;
+		momentumDriftY += momentumY(store, m, n) - startMomentumY;
+		energyDrift += change;
+		absoluteEnergyDrift += Math.abs(change);
+		collisions++;
+	}
+	
+	/**
+	 * <b>add</b>
+	 * <p>
+	 * Adds the totals of another counter to this one.
+	 * @param other - the counter to add
+	 */
+	public void add(ConservationCounter other) {
+		collisions += other.collisions;
+		momentumDriftX += other.momentumDriftX;
+		momentumDriftY += other.momentumDriftY;
+		energyDrift += other.energyDrift;
+		absoluteEnergyDrift += other.absoluteEnergyDrift;
+	}
+	
+	/**
+	 * <b>reset</b>
+	 * <p>
+	 * Sets all totals back to zero.
+	 */
+	public void reset() {
+		collisions = 0;
+		momentumDriftX = 0;
+		momentumDriftY = 0;
+		energyDrift = 0;
+		absoluteEnergyDrift = 0;
+	}
+	
+	private static double momentumX(ParticleStore store, int m, int n) {
+		return store.mass[m]*store.vx[m] + store.mass[n]*store.vx[n];
+	}
+	
+	private static double momentumY(ParticleStore store, int m, int n) {
+		return store.mass[m]*store.vy[m] + store.mass[n]*store.vy[n];
+	}
+	
+	private static double energy(ParticleStore store, int m, int n) {
+		return 0.5*store.mass[m]*(store.vx[m]*store.vx[m] + store.vy[m]*store.vy[m])
+			 + 0.5*store.mass[n]*(store.vx[n]*store.vx[n] + store.vy[n]*store.vy[n]);
+	}
+	
+	/**
+	 * <b>getCollisions</b>
+	 * <p>
+	 * @return collisions - the number of collisions measured
+	 */
+	public long getCollisions() {
+		return collisions;
+	}
+	
+	/**
+	 * <b>getMomentumDrift</b>
+	 * <p>
+	 * @return the length of the total momentum gained or lost in collisions
+	 */
+	public double getMomentumDrift() {
+		return Math.hypot(momentumDriftX, momentumDriftY);
+	}
+	
+	/**
+	 * <b>getEnergyDrift</b>
+	 * <p>
+	 * @return energyDrift - the total kinetic energy gained (or lost, if negative)
+	 * in collisions
+	 */
+	public double getEnergyDrift() {
+		return energyDrift;
+	}
+	
+	/**
+	 * <b>getAbsoluteEnergyDrift</b>
+	 * <p>
+	 * @return absoluteEnergyDrift - the sum of the sizes of every collision's 
+	 * energy error, so that gains and losses do not cancel out
+	 */
+	public double getAbsoluteEnergyDrift() {
+		return absoluteEnergyDrift;
+	}
+	
+	public String toString() {
+		return String.format("%d collisions, momentum drift %.6g, energy drift %.6g (absolute %.6g)",
+							 collisions, getMomentumDrift(), energyDrift, absoluteEnergyDrift);
+	}
+}//End of ConservationCounter class
\ No newline at end of file
@@ -0,0 +1,122 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * <b>ContactLog class</b>
+ * <p>
+ * A growable list of the collisions resolved during a pass, in the order they
+ * were resolved, waiting to be published to the engine's CollisionEvents.
+ * <p>
+ * Each contact is kept as plain values in parallel arrays: the indices of the two
+ * balls, the impulse the first ball received (the size of its change in momentum)
+ * and the point where the balls touched. The list keeps its storage when cleared,
+ * so recording contacts allocates nothing once it has grown to a tick's worth.
+ * <p>
+ * A contact is recorded like a ConservationCounter measures one: begin is called
+ * just before the solver runs and end just after. A log is not thread safe. Each
+ * thread should use its own log and the logs can be combined with addAll
+ * afterwards, in a fixed order if the results are to be reproducible.
+ */
+public class ContactLog {
+	int[] first = new int[64];
+	int[] second = new int[64];
+	double[] impulse = new double[64];
+	double[] x = new double[64];
+	double[] y = new double[64];
+	private int size;
+
+	//Contact point and speed of the first ball, recorded by begin
+	private double startX;
+	private double startY;
+	private double startSpeedX;
+	private double startSpeedY;
+
+	/**
+	 * <b>begin</b>
+	 * <p>
+	 * Records where two touching balls meet and the speed of the first before
+	 * their collision is solved.
+	 * @param store - the store holding the balls
+	 * @param m - the index of one ball
+	 * @param n - the index of the other ball
+	 */
+	public void begin(ParticleStore store, int m, int n) {
+		double share = store.radius[n]/(store.radius[m] + store.radius[n]);
+		startX = store.x[n] + (store.x[m] - store.x[n])*share;
+		startY = store.y[n] + (store.y[m] - store.y[n])*share;
+		startSpeedX = store.vx[m];
+		startSpeedY = store.vy[m];
+	}
+
+	/**
+	 * <b>end</b>
+	 * <p>
+	 * Adds the collision begun with begin to the end of the list, once it has
+	 * been solved.
+	 * @param store - the store holding the balls
+	 * @param m - the index of one ball
+	 * @param n - the index of the other ball
+	 */
+	public void end(ParticleStore store, int m, int n) {
+		double changeX = store.vx[m] - startSpeedX;
+		double changeY = store.vy[m] - startSpeedY;
+		add(m, n, store.mass[m]*Math.sqrt(changeX*changeX + changeY*changeY), startX, startY);
+	}
+
+	/**
+	 * <b>add</b>
+	 * <p>
+	 * Adds a contact to the end of the list.
+	 * @param m - the index of the first ball
+	 * @param n - the index of the second ball
+	 * @param contactImpulse - the impulse the first ball received
+	 * @param contactX - the x of the point where the balls touched
+	 * @param contactY - the y of the point where the balls touched
+	 */
+	public void add(int m, int n, double contactImpulse, double contactX, double contactY) {
+		if(size == first.length) {
+			first = Arrays.copyOf(first, size*2);
+			second = Arrays.copyOf(second, size*2);
+			impulse = Arrays.copyOf(impulse, size*2);
+			x = Arrays.copyOf(x, size*2);
+			y = Arrays.copyOf(y, size*2);
+		}
+		first[size] = m;
+		second[size] = n;
+		impulse[size] = contactImpulse;
+		x[size] = contactX;
+		y[size] = contactY;
+		size++;
+	}
+
+	/**
+	 * <b>addAll</b>
+	 * <p>
+	 * Adds the contacts of another log to the end of this one.
+	 * @param other - the log to add
+	 */
+	public void addAll(ContactLog other) {
+		for(int i = 0; i < other.size; i++) {
+			add(other.first[i], other.second[i], other.impulse[i], other.x[i], other.y[i]);
+		}
+	}
+
+	/**
+	 * <b>clear</b>
+	 * <p>
+	 * Empties the list while keeping its storage.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * <b>size</b>
+	 * <p>
+	 * @return size - the number of contacts in the list
+	 */
+	public int size() {
+		return size;
+	}
+}//End of ContactLog class
\ No newline at end of file
@@ -0,0 +1,262 @@
+package collision;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>DistributedRunner class</b>
+ * <p>
+ * Runs the simulation in several worker processes at once, each owning one
+ * vertical strip of the world, and acts as their coordinator.
+ * <p>
+ * Usage: java collision.DistributedRunner [balls] [ticks] [seed] [workers]
+ * <p>
+ * The world is generated as by HeadlessRunner (or read with
+ * -Dcollision.restore=file) and split into strips by a StripLayout. The runner
+ * opens a server socket on localhost, starts one DistributedWorker JVM per strip
+ * with the same class path, modules, -X options and collision settings as its
+ * own, and sends each worker its strip and balls. A worker that exits, or that
+ * has not connected within CONNECT_SECONDS, stops the run with an error rather
+ * than leaving the runner waiting for it. The workers connect to their
+ * neighbours themselves. The runner then sends one TICK at a time to every
+ * worker and waits for all of them to finish it, so the workers never get more
+ * than a tick apart. At the end it gathers the balls back in their original
+ * order, prints how fast the run went and how many collisions there were, and
+ * saves the world with -Dcollision.checkpoint=file.
+ * <p>
+ * Each worker does the work of a TiledCollisionPass for its own tiles (see
+ * DistributedWorker), so the saved world is identical, bit for bit, to the one
+ * saved by HeadlessRunner for the same world and ticks with one thread:
+ * <p>
+ * java -Dcollision.checkpoint=a.bin collision.HeadlessRunner 5000 200 7 1<br>
+ * java -Dcollision.checkpoint=b.bin collision.DistributedRunner 5000 200 7 3
+ * <p>
+ * Every worker runs on the same machine here, but only the coordinator's address
+ * ties them to it; the messages between processes are the same as they would be
+ * between machines.
+ */
+public class DistributedRunner {
+	//How long to wait for every worker to connect
+	private static final int CONNECT_SECONDS = 60;
+	//How long to wait for the workers to exit once the run is over
+	private static final int EXIT_SECONDS = 10;
+	//Settings only the coordinator uses, not passed on to the workers
+	private static final List<String> COORDINATOR_ONLY = List.of("collision.checkpoint", "collision.restore",
+																   "collision.record", "collision.replay");
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int balls = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long ticks = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+		int workers = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+		String restore = System.getProperty("collision.restore");
+		String checkpoint = System.getProperty("collision.checkpoint");
+		SimulationEngine engine = restore != null ? Checkpoint.restore(Paths.get(restore))
+												  : HeadlessRunner.generate(balls, seed, 0.1, 2, 2);
+		ParticleStore store = engine.getStore();
+		balls = store.size();
+		double maxRadius = 0;
+		for(int i = 0; i < balls; i++) {
+			maxRadius = Math.max(maxRadius, store.radius[i]);
+		}
+		StripLayout layout = new StripLayout(engine.getWidth(), engine.getHeight(), maxRadius, workers);
+
+		List<Process> processes = new ArrayList<Process>();
+		MessageChannel[] channels = new MessageChannel[workers];
+		try(ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(new InetSocketAddress("localhost", 0));
+			for(int w = 0; w < workers; w++) {
+				processes.add(startWorker(server.socket().getLocalPort()));
+			}
+			int[] ports = new int[workers];
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CONNECT_SECONDS);
+			for(int w = 0; w < workers; w++) {
+				channels[w] = new MessageChannel(accept(server, processes, deadline));
+				ports[w] = channels[w].receive(MessageChannel.HELLO).getInt();
+			}
+			for(int w = 0; w < workers; w++) {
+				sendInit(channels[w], w, layout, engine, maxRadius, w > 0 ? ports[w - 1] : -1);
+			}
+
+			long start = System.nanoTime();
+			long contacts = 0;
+			for(long t = 0; t < ticks; t++) {
+				for(MessageChannel channel : channels) {
+					channel.send(MessageChannel.TICK);
+				}
+				for(MessageChannel channel : channels) {
+					contacts += channel.receive(MessageChannel.DONE).getInt();
+				}
+			}
+			double seconds = (System.nanoTime() - start)/1e9;
+
+			long[] ids = new long[balls];
+			ParticleStore gathered = new ParticleStore();
+			gathered.ensureCapacity(balls);
+			for(MessageChannel channel : channels) {
+				channel.send(MessageChannel.GATHER);
+				ByteBuffer message = channel.receive(MessageChannel.BALLS);
+				int count = message.getInt();
+				for(int k = 0; k < count; k++) {
+					ids[gathered.size()] = MessageChannel.getBall(message, gathered);
+				}
+			}
+			if(gathered.size() != balls) {
+				throw new IOException("Gathered " + gathered.size() + " of " + balls + " balls");
+			}
+			store.clear();
+			int[] order = new int[balls];
+			for(int i = 0; i < balls; i++) {
+				order[(int) ids[i]] = i;
+			}
+			for(int id = 0; id < balls; id++) {
+				int i = order[id];
+				store.add(gathered.x[i], gathered.y[i], gathered.vx[i], gathered.vy[i],
+						  gathered.radius[i], gathered.mass[i], gathered.kind[i]);
+				store.alternate[id] = gathered.alternate[i];
+			}
+			engine.setTick(engine.getTick() + ticks);
+			System.out.printf("%d balls, %d ticks on %d workers in %.3f s (%.0f ticks/s), %d collisions%n",
+							  balls, ticks, workers, seconds, ticks/seconds, contacts);
+		}
+		finally {
+			for(MessageChannel channel : channels) {
+				if(channel != null) {
+					channel.close();
+				}
+			}
+			for(Process process : processes) {
+				if(!process.waitFor(EXIT_SECONDS, TimeUnit.SECONDS)) {
+					process.destroyForcibly();
+				}
+			}
+		}
+		if(checkpoint != null) {
+			Checkpoint.save(engine, Paths.get(checkpoint));
+			System.out.printf("Saved %d balls to %s%n", balls, checkpoint);
+		}
+	}
+
+	/**
+	 * <b>accept</b>
+	 * <p>
+	 * Waits for the next worker to connect, checking every so often that none of
+	 * the workers has exited.
+	 * @param server - the socket the workers connect to
+	 * @param processes - the workers' processes
+	 * @param deadline - the System.nanoTime by which the worker must connect
+	 * @return the connection to the worker
+	 * @throws IOException if a worker has exited, the deadline passed or the
+	 * connection failed
+	 */
+	private static SocketChannel accept(ServerSocketChannel server, List<Process> processes, long deadline)
+			throws IOException {
+		server.configureBlocking(false);
+		try(Selector selector = Selector.open()) {
+			server.register(selector, SelectionKey.OP_ACCEPT);
+			while(true) {
+				SocketChannel socket = server.accept();
+				if(socket != null) {
+					socket.configureBlocking(true);
+					return socket;
+				}
+				for(Process process : processes) {
+					if(!process.isAlive()) {
+						throw new IOException("Worker " + process.pid() + " exited with code "
+											  + process.exitValue() + " before connecting");
+					}
+				}
+				if(System.nanoTime() - deadline > 0) {
+					throw new IOException("Workers did not connect within " + CONNECT_SECONDS + " s");
+				}
+				selector.select(100);
+			}
+		}
+		finally {
+			server.configureBlocking(true);
+		}
+	}
+
+	/**
+	 * <b>startWorker</b>
+	 * <p>
+	 * Starts a DistributedWorker JVM with this JVM's class path, the modules and
+	 * -X options it was started with and its collision settings, sharing this
+	 * process's console. Other options, such as debugging agents, and the settings
+	 * that name the coordinator's own files are not passed on.
+	 * @param port - the port the coordinator is listening on
+	 * @return the worker's process
+	 * @throws IOException if the process cannot be started
+	 */
+	private static Process startWorker(int port) throws IOException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		List<String> options = ManagementFactory.getRuntimeMXBean().getInputArguments();
+		for(int i = 0; i < options.size(); i++) {
+			String option = options.get(i);
+			if(option.equals("--add-modules") && i + 1 < options.size()) {
+				command.add(option);
+				command.add(options.get(++i));
+			}
+			else if(option.startsWith("--add-modules=") || option.startsWith("-X")) {
+				command.add(option);
+			}
+		}
+		for(String name : System.getProperties().stringPropertyNames()) {
+			if(name.startsWith("collision.") && !COORDINATOR_ONLY.contains(name)) {
+				command.add("-D" + name + "=" + System.getProperty(name));
+			}
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(DistributedWorker.class.getName());
+		command.add("localhost");
+		command.add(Integer.toString(port));
+		return new ProcessBuilder(command).inheritIO().start();
+	}
+
+	/**
+	 * <b>sendInit</b>
+	 * <p>
+	 * Sends a worker its strip of the world and the balls in it.
+	 * @param channel - the connection to the worker
+	 * @param worker - the number of the worker
+	 * @param layout - the strips of the world
+	 * @param engine - the engine holding the world
+	 * @param maxRadius - the radius of the largest ball
+	 * @param westPort - the port of the worker's west neighbour, or -1 if it has none
+	 * @throws IOException if the message cannot be sent
+	 */
+	private static void sendInit(MessageChannel channel, int worker, StripLayout layout, SimulationEngine engine,
+								 double maxRadius, int westPort) throws IOException {
+		ParticleStore store = engine.getStore();
+		int count = 0;
+		for(int i = 0; i < store.size(); i++) {
+			if(layout.workerOf(layout.cellColumn(store.x[i])) == worker) {
+				count++;
+			}
+		}
+		ByteBuffer out = channel.start(MessageChannel.INIT, 4*4 + 3*8 + count*MessageChannel.BALL_BYTES);
+		out.putInt(worker).putInt(layout.getWorkers())
+		   .putDouble(engine.getWidth()).putDouble(engine.getHeight()).putDouble(maxRadius)
+		   .putInt(westPort).putInt(count);
+		for(int i = 0; i < store.size(); i++) {
+			if(layout.workerOf(layout.cellColumn(store.x[i])) == worker) {
+				MessageChannel.putBall(out, i, store, i);
+			}
+		}
+		channel.send();
+	}
+}//End of DistributedRunner class
\ No newline at end of file
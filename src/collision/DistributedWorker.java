@@ -0,0 +1,453 @@
+package collision;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+/**
+ * <b>DistributedWorker class</b>
+ * <p>
+ * One worker process of a distributed run, started by DistributedRunner. It owns
+ * the balls in one strip of the world (see StripLayout) and talks to the
+ * coordinator and to the workers of the strips just west and east of it.
+ * <p>
+ * Usage: java collision.DistributedWorker [coordinator host] [coordinator port]
+ * <p>
+ * On every TICK from the coordinator the worker:
+ * <ol>
+ * <li>moves its balls and bounces them off the walls;</li>
+ * <li>hands any ball whose cell is now in a neighbouring strip to that neighbour
+ * (MIGRATE), and takes in the balls its neighbours hand over;</li>
+ * <li>sends the balls in the first column of cells of its strip to its west
+ * neighbour, and takes the first column of its east neighbour as a halo (HALO);</li>
+ * <li>runs the four colours of TiledCollisionPass over its own tiles. The tiles
+ * at the east edge of the strip pair balls with the halo, and the east
+ * neighbour's tiles change the same balls, so before each colour that touches
+ * the halo its current state is fetched from the east neighbour and afterwards it
+ * is sent back (STATE). The contacts of each colour are published to the engine's
+ * CollisionEvents before that, so that the halo balls' image switches go back
+ * with them;</li>
+ * <li>drops the halo and reports the number of collisions (DONE).</li>
+ * </ol>
+ * <p>
+ * A worker runs exactly the arithmetic that a TiledCollisionPass would run for
+ * its tiles, with the balls of each cell visited in order of their id (their
+ * index in the coordinator's world). As tiles of one colour never share a ball,
+ * the whole run gives the same results as a single process running the world
+ * with a TiledCollisionPass. The solver is chosen with the usual properties (see
+ * SimulationSettings); conservation tracking, sleeping and event driven mode are
+ * not used.
+ * <p>
+ * A worker always sends to a neighbour before waiting on the same neighbour, in
+ * the same order along the whole row of strips, so the workers cannot deadlock
+ * on each other.
+ */
+public class DistributedWorker {
+	//Offsets of the neighbouring cells whose pairs a cell owns, as in TiledCollisionPass
+	private final int[] NEIGHBOUR_X = {1, 1, 1, 0};
+	private final int[] NEIGHBOUR_Y = {-1, 0, 1, 1};
+
+	private final MessageChannel coordinator;
+	private MessageChannel west;
+	private MessageChannel east;
+	private int index;
+	private StripLayout layout;
+	private SimulationEngine engine;
+	private ParticleStore store;
+	private long[] ids = new long[64];
+
+	private int owned;
+	private int[] leaving = new int[16];
+	private int[] shared = new int[16];
+	private int sharedCount;
+	private int firstColumn;
+	private int gridColumns;
+	private int[] cellOf = new int[0];
+	private int[] cellStart = new int[0];
+	private int[] cellEnd = new int[0];
+	private int[] sorted = new int[0];
+
+	public static void main(String[] args) throws IOException {
+		String host = args.length > 0 ? args[0] : "localhost";
+		int port = Integer.parseInt(args[1]);
+		new DistributedWorker(new MessageChannel(SocketChannel.open(new InetSocketAddress(host, port)))).run();
+	}
+
+	/**
+	 * Constructs a worker connected to its coordinator.
+	 * @param coordinator - the connection to the coordinator
+	 */
+	public DistributedWorker(MessageChannel coordinator) {
+		this.coordinator = coordinator;
+	}
+
+	/**
+	 * <b>run</b>
+	 * <p>
+	 * Joins the run, connects to the neighbouring workers and then runs ticks
+	 * until the coordinator gathers the balls.
+	 * @throws IOException if a connection fails
+	 */
+	public void run() throws IOException {
+		try {
+			try(ServerSocketChannel server = ServerSocketChannel.open()) {
+				server.bind(new InetSocketAddress("localhost", 0));
+				coordinator.start(MessageChannel.HELLO, 4).putInt(server.socket().getLocalPort());
+				coordinator.send();
+				int westPort = init(coordinator.receive(MessageChannel.INIT));
+				if(westPort >= 0) {
+					west = new MessageChannel(SocketChannel.open(new InetSocketAddress("localhost", westPort)));
+				}
+				if(index < layout.getWorkers() - 1) {
+					east = new MessageChannel(server.accept());
+				}
+			}
+			coordinator.receive();
+			while(coordinator.getType() == MessageChannel.TICK) {
+				coordinator.start(MessageChannel.DONE, 4).putInt(tick());
+				coordinator.send();
+				coordinator.receive();
+			}
+			if(coordinator.getType() != MessageChannel.GATHER) {
+				throw new IOException("Unexpected message " + coordinator.getType());
+			}
+			ByteBuffer out = coordinator.start(MessageChannel.BALLS, 4 + store.size()*MessageChannel.BALL_BYTES);
+			out.putInt(store.size());
+			for(int i = 0; i < store.size(); i++) {
+				MessageChannel.putBall(out, ids[i], store, i);
+			}
+			coordinator.send();
+		}
+		finally {
+			coordinator.close();
+			if(west != null) {
+				west.close();
+			}
+			if(east != null) {
+				east.close();
+			}
+		}
+	}
+
+	/**
+	 * <b>init</b>
+	 * <p>
+	 * Sets up the worker's strip and balls from the coordinator's INIT message.
+	 * @param message - the contents of the message
+	 * @return the port of the west neighbour, or -1 if there is none
+	 */
+	private int init(ByteBuffer message) {
+		index = message.getInt();
+		int workers = message.getInt();
+		double width = message.getDouble();
+		double height = message.getDouble();
+		double maxRadius = message.getDouble();
+		int westPort = message.getInt();
+		layout = new StripLayout(width, height, maxRadius, workers);
+		firstColumn = layout.firstColumn(index);
+		gridColumns = Math.min(layout.getColumns(), layout.endColumn(index) + 1) - firstColumn;
+		engine = new SimulationEngine(width, height);
+		SimulationSettings.configure(engine);
+		engine.setParallelism(0);
+		store = engine.getStore();
+		receiveBalls(message);
+		return westPort;
+	}
+
+	/**
+	 * <b>tick</b>
+	 * <p>
+	 * Runs one tick as described above.
+	 * @return the number of collisions resolved in the worker's tiles
+	 * @throws IOException if a connection fails
+	 */
+	private int tick() throws IOException {
+		engine.setTick(engine.getTick() + 1);
+		engine.integrate(1);
+		migrate();
+		exchangeHalo();
+		buildGrid();
+		int contacts = 0;
+		for(int colour = 0; colour < 4; colour++) {
+			boolean westShares = west != null && ((layout.firstTile(index) - 1) & 1) == (colour & 1);
+			boolean eastShares = east != null && ((layout.endTile(index) - 1) & 1) == (colour & 1);
+			if(westShares) {
+				sendState(west, shared, 0, sharedCount);
+			}
+			if(eastShares) {
+				receiveState(east, null, owned, store.size() - owned);
+			}
+			for(int ty = 0; ty < layout.getTileRows(); ty++) {
+				for(int tx = layout.firstTile(index); tx < layout.endTile(index); tx++) {
+					if(StripLayout.colourOf(tx, ty) == colour) {
+						contacts += processTile(tx, ty);
+					}
+				}
+			}
+			engine.publishContacts();
+			if(eastShares) {
+				sendState(east, null, owned, store.size() - owned);
+			}
+			if(westShares) {
+				receiveState(west, shared, 0, sharedCount);
+			}
+		}
+		while(store.size() > owned) {
+			store.remove(store.size() - 1);
+		}
+		return contacts;
+	}
+
+	/**
+	 * <b>migrate</b>
+	 * <p>
+	 * Hands balls that have left the strip to the neighbour that now owns them and
+	 * takes in the balls handed over by the neighbours.
+	 * @throws IOException if a connection fails
+	 */
+	private void migrate() throws IOException {
+		int leavingCount = 0;
+		int eastCount = 0;
+		for(int i = store.size() - 1; i >= 0; i--) {
+			int owner = ownerOf(i);
+			if(owner != index) {
+				if(Math.abs(owner - index) != 1) {
+					throw new IllegalStateException("Ball " + ids[i] + " crossed more than one strip in a tick");
+				}
+				if(leavingCount == leaving.length) {
+					leaving = Arrays.copyOf(leaving, leavingCount*2);
+				}
+				leaving[leavingCount++] = i;
+				if(owner > index) {
+					eastCount++;
+				}
+			}
+		}
+		int westCount = leavingCount - eastCount;
+		ByteBuffer toEast = null;
+		ByteBuffer toWest = null;
+		if(east != null) {
+			toEast = east.start(MessageChannel.MIGRATE, 4 + eastCount*MessageChannel.BALL_BYTES).putInt(eastCount);
+		}
+		if(west != null) {
+			toWest = west.start(MessageChannel.MIGRATE, 4 + westCount*MessageChannel.BALL_BYTES).putInt(westCount);
+		}
+		//the balls are taken from the highest index down, so removing one never moves another that is leaving
+		for(int k = 0; k < leavingCount; k++) {
+			int i = leaving[k];
+			MessageChannel.putBall(ownerOf(i) > index ? toEast : toWest, ids[i], store, i);
+			ids[i] = ids[store.size() - 1];
+			store.remove(i);
+		}
+		if(east != null) {
+			east.send();
+		}
+		if(west != null) {
+			receiveBalls(west.receive(MessageChannel.MIGRATE));
+			west.send();
+		}
+		if(east != null) {
+			receiveBalls(east.receive(MessageChannel.MIGRATE));
+		}
+	}
+
+	/**
+	 * <b>exchangeHalo</b>
+	 * <p>
+	 * Sends the balls in the first column of cells to the west neighbour and adds
+	 * the east neighbour's first column to the end of the store as the halo.
+	 * @throws IOException if a connection fails
+	 */
+	private void exchangeHalo() throws IOException {
+		owned = store.size();
+		sharedCount = 0;
+		if(west != null) {
+			for(int i = 0; i < owned; i++) {
+				if(layout.cellColumn(store.x[i]) == firstColumn) {
+					if(sharedCount == shared.length) {
+						shared = Arrays.copyOf(shared, sharedCount*2);
+					}
+					shared[sharedCount++] = i;
+				}
+			}
+			ByteBuffer out = west.start(MessageChannel.HALO, 4 + sharedCount*MessageChannel.BALL_BYTES);
+			out.putInt(sharedCount);
+			for(int k = 0; k < sharedCount; k++) {
+				MessageChannel.putBall(out, ids[shared[k]], store, shared[k]);
+			}
+			west.send();
+		}
+		if(east != null) {
+			receiveBalls(east.receive(MessageChannel.HALO));
+		}
+	}
+
+	/**
+	 * <b>buildGrid</b>
+	 * <p>
+	 * Sorts the owned balls and the halo into the cells of the strip and the
+	 * column after it, with the balls of each cell in order of their id.
+	 */
+	private void buildGrid() {
+		int count = store.size();
+		int cells = gridColumns*layout.getRows();
+		if(cellOf.length < count) {
+			cellOf = new int[Math.max(count, cellOf.length*2)];
+			sorted = new int[cellOf.length];
+		}
+		if(cellStart.length < cells + 1) {
+			cellStart = new int[cells + 1];
+			cellEnd = new int[cells + 1];
+		}
+		else {
+			Arrays.fill(cellStart, 0, cells + 1, 0);
+		}
+		for(int i = 0; i < count; i++) {
+			cellOf[i] = cell(layout.cellColumn(store.x[i]), layout.cellRow(store.y[i]));
+			cellStart[cellOf[i] + 1]++;
+		}
+		for(int c = 0; c < cells; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		System.arraycopy(cellStart, 0, cellEnd, 0, cells + 1);
+		for(int i = 0; i < count; i++) {
+			sorted[cellEnd[cellOf[i]]++] = i;
+		}
+		//cells hold a handful of balls, so an insertion sort by id is enough
+		for(int c = 0; c < cells; c++) {
+			for(int s = cellStart[c] + 1; s < cellStart[c + 1]; s++) {
+				int ball = sorted[s];
+				int t = s;
+				while(t > cellStart[c] && ids[sorted[t - 1]] > ids[ball]) {
+					sorted[t] = sorted[t - 1];
+					t--;
+				}
+				sorted[t] = ball;
+			}
+		}
+	}
+
+	/**
+	 * <b>processTile</b>
+	 * <p>
+	 * Checks and resolves every pair owned by the cells of a tile, exactly as
+	 * TiledCollisionPass does.
+	 * @param tx - the column of the tile
+	 * @param ty - the row of the tile
+	 * @return the number of collisions resolved
+	 */
+	private int processTile(int tx, int ty) {
+		int tileCells = layout.getTileCells();
+		int columns = layout.getColumns();
+		int rows = layout.getRows();
+		int x1 = Math.min(columns, (tx + 1)*tileCells);
+		int y1 = Math.min(rows, (ty + 1)*tileCells);
+		int contacts = 0;
+		for(int cy = ty*tileCells; cy < y1; cy++) {
+			for(int cx = tx*tileCells; cx < x1; cx++) {
+				int cell = cell(cx, cy);
+				for(int s = cellStart[cell]; s < cellStart[cell + 1]; s++) {
+					int a = sorted[s];
+					for(int t = s + 1; t < cellStart[cell + 1]; t++) {
+						if(engine.collidePair(a, sorted[t], 1, null)) {
+							contacts++;
+						}
+					}
+					for(int k = 0; k < NEIGHBOUR_X.length; k++) {
+						int nx = cx + NEIGHBOUR_X[k];
+						int ny = cy + NEIGHBOUR_Y[k];
+						if(nx >= columns || ny < 0 || ny >= rows) {
+							continue;
+						}
+						int neighbour = cell(nx, ny);
+						for(int t = cellStart[neighbour]; t < cellStart[neighbour + 1]; t++) {
+							if(engine.collidePair(a, sorted[t], 1, null)) {
+								contacts++;
+							}
+						}
+					}
+				}
+			}
+		}
+		return contacts;
+	}
+
+	/**
+	 * <b>cell</b>
+	 * <p>
+	 * @param cx - the column of a cell in the whole world
+	 * @param cy - the row of the cell
+	 * @return the index of the cell in the worker's grid
+	 */
+	private int cell(int cx, int cy) {
+		return cy*gridColumns + cx - firstColumn;
+	}
+
+	/**
+	 * <b>ownerOf</b>
+	 * <p>
+	 * @param i - the index of a ball
+	 * @return the worker whose strip the ball is in
+	 */
+	private int ownerOf(int i) {
+		return layout.workerOf(layout.cellColumn(store.x[i]));
+	}
+
+	/**
+	 * <b>receiveBalls</b>
+	 * <p>
+	 * Adds the balls of an INIT, MIGRATE or HALO message to the end of the store.
+	 * @param message - the contents of the message, at the number of balls
+	 */
+	private void receiveBalls(ByteBuffer message) {
+		int count = message.getInt();
+		store.ensureCapacity(store.size() + count);
+		if(ids.length < store.size() + count) {
+			ids = Arrays.copyOf(ids, Math.max(store.size() + count, ids.length*2));
+		}
+		for(int k = 0; k < count; k++) {
+			ids[store.size()] = MessageChannel.getBall(message, store);
+		}
+	}
+
+	/**
+	 * <b>sendState</b>
+	 * <p>
+	 * Sends the state of some balls to a neighbour.
+	 * @param to - the neighbour
+	 * @param indices - the indices of the balls, or null for a run of balls
+	 * @param first - the index of the first ball of the run
+	 * @param count - the number of balls
+	 * @throws IOException if the connection fails
+	 */
+	private void sendState(MessageChannel to, int[] indices, int first, int count) throws IOException {
+		ByteBuffer out = to.start(MessageChannel.STATE, count*MessageChannel.STATE_BYTES);
+		for(int k = 0; k < count; k++) {
+			MessageChannel.putState(out, store, indices != null ? indices[k] : first + k);
+		}
+		to.send();
+	}
+
+	/**
+	 * <b>receiveState</b>
+	 * <p>
+	 * Updates some balls with the state sent by a neighbour for the same balls.
+	 * @param from - the neighbour
+	 * @param indices - the indices of the balls, or null for a run of balls
+	 * @param first - the index of the first ball of the run
+	 * @param count - the number of balls
+	 * @throws IOException if the connection fails
+	 */
+	private void receiveState(MessageChannel from, int[] indices, int first, int count) throws IOException {
+		ByteBuffer message = from.receive(MessageChannel.STATE);
+		if(message.remaining() != count*MessageChannel.STATE_BYTES) {
+			throw new IOException("Expected the state of " + count + " balls");
+		}
+		for(int k = 0; k < count; k++) {
+			MessageChannel.getState(message, store, indices != null ? indices[k] : first + k);
+		}
+	}
+}//End of DistributedWorker class
\ No newline at end of file
@@ -0,0 +1,270 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * <b>EventDrivenSimulation class</b>
+ * <p>
+ * Advances the balls of a SimulationEngine from one collision to the next instead
+ * of in fixed steps.
+ * <p>
+ * For every ball the exact time of its next collision, either with another ball
+ * or with a wall, is worked out from its position and speed. Each ball's earliest
+ * event is kept in an IndexedEventQueue. Time then jumps straight to the earliest
+ * event, where that collision is resolved and the predictions of the balls 
+ * involved are worked out again. Between events the balls simply move in straight
+ * lines, so balls never overlap and never stick, and stretches of time with no
+ * collisions cost nothing however long they are.
+ * <p>
+ * When a ball collides, other balls that were expecting to hit it keep their old
+ * predictions in the queue. Rather than search for them, each prediction records
+ * how many collisions its partner had had when it was made. If the partner has
+ * collided since, the prediction is out of date and is simply worked out again 
+ * when it reaches the front of the queue (lazy invalidation).
+ * <p>
+ * Collisions are resolved with ImpulseSolver, which is exact for balls that are
+ * just touching, and logged for the engine's CollisionEvents like any others.
+ * Predicting a ball's next event checks it against every other ball, so this
+ * mode suits sparse worlds of up to a few thousand balls. If balls are added or
+ * removed between calls to advance, every prediction is worked out again at the
+ * start of the next one. Positions and speeds changed outside of this class
+ * without changing the number of balls are not noticed; the engine's
+ * setEventDriven starts a new simulation with fresh predictions.
+ * <p>
+ * The walls are always those of the world's rectangle; obstacles given to the
+ * engine with setGeometry are not used in this mode.
+ */
+public class EventDrivenSimulation {
+	//Partner values for events that are not with another ball
+	private static final int NONE = -1;
+	private static final int VERTICAL_WALL = -2;
+	private static final int HORIZONTAL_WALL = -3;
+	
+	private final SimulationEngine engine;
+	private final ParticleStore store;
+	private final CollisionSolver solver = new ImpulseSolver();
+	private final IndexedEventQueue queue = new IndexedEventQueue();
+	private double[] eventTime = new double[0];
+	private int[] partner = new int[0];
+	private int[] partnerCount = new int[0];
+	private int[] collisionCount = new int[0];
+	private double now;
+	private int knownSize = -1;
+	
+	/**
+	 * Constructs an event driven simulation of the engine's balls.
+	 * @param engine - the engine whose balls and world are simulated
+	 */
+	public EventDrivenSimulation(SimulationEngine engine) {
+		this.engine = engine;
+		this.store = engine.getStore();
+	}
+	
+	/**
+	 * <b>advance</b>
+	 * <p>
+	 * Moves the simulation forward, resolving every collision that happens in the
+	 * given length of time in the order they happen.
+	 * @param dt - the length of time to advance by
+	 * @return the number of collisions between balls that happened
+	 */
+	public int advance(double dt) {
+		if(knownSize != store.size()) {
+			rebuild();
+		}
+		double target = now + dt;
+		ConservationCounter counter = engine.getConservation();
+		ContactLog log = engine.getContactLog();
+		int contacts = 0;
+		while(queue.peekTime() <= target) {
+			int i = queue.poll();
+			double t = eventTime[i];
+			int j = partner[i];
+			moveTo(t);
+			if(j >= 0 && collisionCount[j] != partnerCount[i]) {
+				predict(i);//out of date, the partner has collided since
+				continue;
+			}
+			if(j >= 0) {
+				log.begin(store, i, j);
+				if(counter != null) {
+					counter.begin(store, i, j);
+				}
+				if(solver.resolve(store, i, j, 0)) {
+					if(counter != null) {
+						counter.end(store, i, j);
+					}
+					log.end(store, i, j);
+					contacts++;
+				}
+				collisionCount[i]++;
+				collisionCount[j]++;
+				queue.remove(j);
+				predict(i);
+				predict(j);
+			}
+			else {
+				if(j == VERTICAL_WALL) {
+					store.vx[i] = -store.vx[i];
+				}
+				else if(j == HORIZONTAL_WALL) {
+					store.vy[i] = -store.vy[i];
+				}
+				collisionCount[i]++;
+				predict(i);
+			}
+		}
+		moveTo(target);
+		return contacts;
+	}
+	
+	/**
+	 * <b>rebuild</b>
+	 * <p>
+	 * Throws away every prediction and works each ball's next event out again.
+	 */
+	private void rebuild() {
+		int count = store.size();
+		if(eventTime.length < count) {
+			int capacity = Math.max(count, eventTime.length*2);
+			eventTime = new double[capacity];
+			partner = new int[capacity];
+			partnerCount = new int[capacity];
+			collisionCount = new int[capacity];
+		}
+		Arrays.fill(collisionCount, 0, count, 0);
+		Arrays.fill(eventTime, 0, count, Double.POSITIVE_INFINITY);
+		queue.clear();
+		for(int i = 0; i < count; i++) {
+			predict(i);
+		}
+		knownSize = count;
+	}
+	
+	/**
+	 * <b>predict</b>
+	 * <p>
+	 * Works out a ball's next event and puts it in the queue. Any other ball that 
+	 * will now hit this ball before its own predicted event has its prediction 
+	 * changed to this collision.
+	 * @param i - the index of the ball
+	 */
+	private void predict(int i) {
+		double best = wallTime(store.x[i], store.vx[i], store.radius[i], engine.getWidth());
+		int bestPartner = best < Double.POSITIVE_INFINITY ? VERTICAL_WALL : NONE;
+		double wall = wallTime(store.y[i], store.vy[i], store.radius[i], engine.getHeight());
+		if(wall < best) {
+			best = wall;
+			bestPartner = HORIZONTAL_WALL;
+		}
+		int count = store.size();
+		for(int j = 0; j < count; j++) {
+			if(j == i) {
+				continue;
+			}
+			double t = now + pairTime(i, j);
+			if(t < best) {
+				best = t;
+				bestPartner = j;
+			}
+			if(t < eventTime[j]) {
+				eventTime[j] = t;
+				partner[j] = i;
+				partnerCount[j] = collisionCount[i];
+				queue.set(j, t);
+			}
+		}
+		eventTime[i] = best;
+		partner[i] = bestPartner;
+		if(bestPartner >= 0) {
+			partnerCount[i] = collisionCount[bestPartner];
+		}
+		if(best < Double.POSITIVE_INFINITY) {
+			queue.set(i, best);
+		}
+		else {
+			queue.remove(i);
+		}
+	}
+	
+	/**
+	 * <b>wallTime</b>
+	 * <p>
+	 * @param position - the ball's position along one axis
+	 * @param speed - the ball's speed along that axis
+	 * @param radius - the ball's radius
+	 * @param size - the size of the world along that axis
+	 * @return the absolute time at which the ball reaches a wall on that axis, or
+	 * infinity if it is not moving along it
+	 */
+	private double wallTime(double position, double speed, double radius, double size) {
+		if(speed > 0) {
+			return now + Math.max(0, (size - radius - position)/speed);
+		}
+		if(speed < 0) {
+			return now + Math.max(0, (radius - position)/speed);
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * <b>pairTime</b>
+	 * <p>
+	 * Works out how long it will be until two balls touch, by solving for the time
+	 * at which the distance between their centers equals the sum of their radii.
+	 * Balls that already overlap and are moving closer collide immediately.
+	 * @param i - the index of one ball
+	 * @param j - the index of the other ball
+	 * @return the time until the balls touch, or infinity if they never will
+	 */
+	private double pairTime(int i, int j) {
+		double dx = store.x[j] - store.x[i];
+		double dy = store.y[j] - store.y[i];
+		double dvx = store.vx[j] - store.vx[i];
+		double dvy = store.vy[j] - store.vy[i];
+		double dvdr = dx*dvx + dy*dvy;
+		if(dvdr >= 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double dvdv = dvx*dvx + dvy*dvy;
+		double drdr = dx*dx + dy*dy;
+		double sigma = store.radius[i] + store.radius[j];
+		double d = dvdr*dvdr - dvdv*(drdr - sigma*sigma);
+		if(d < 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return Math.max(0, -(dvdr + Math.sqrt(d))/dvdv);
+	}
+	
+	/**
+	 * <b>moveTo</b>
+	 * <p>
+	 * Moves every ball in a straight line to where it is at the given time.
+	 * @param t - the time to move to
+	 */
+	private void moveTo(double t) {
+		double dt = t - now;
+		if(dt == 0) {
+			return;
+		}
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] vx = store.vx;
+		double[] vy = store.vy;
+		int count = store.size();
+		for(int k = 0; k < count; k++) {
+			x[k] += vx[k]*dt;
+			y[k] += vy[k]*dt;
+		}
+		now = t;
+	}
+	
+	/**
+	 * <b>getTime</b>
+	 * <p>
+	 * @return now - the current simulation time
+	 */
+	public double getTime() {
+		return now;
+	}
+}//End of EventDrivenSimulation class
\ No newline at end of file
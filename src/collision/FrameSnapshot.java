@@ -0,0 +1,200 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * <b>FrameSnapshot class</b>
+ * <p>
+ * A copy of everything needed to draw one frame: where each ball is, how big it
+ * is and which image it shows.
+ * <p>
+ * Snapshots are filled in by the simulation thread and read by the renderer, and
+ * are passed between them by a SnapshotExchange. Positions are the top left corner
+ * of each ball's image, and sizes the width and height of the image (see 
+ * imageSize). The arrays are reused from frame to frame and only grow.
+ * <p>
+ * Working out a ball's image size and image needs nothing from AWT, so a headless
+ * run that records its frames still loads no AWT classes.
+ * <p>
+ * A snapshot may also hold where the balls were one tick earlier, and the time
+ * the state belongs to, so that a renderer drawing between two ticks can place
+ * each ball part of the way from its previous position to its current one (see
+ * getAlpha). Balls added during the last tick have no previous position and are
+ * drawn where they are.
+ * <p>
+ * A snapshot can also carry a copy of the engine's SpatialIndex taken at the same
+ * tick, so the thread reading it can find balls by position (for example the
+ * ball under a click) among exactly the balls it is showing.
+ */
+public class FrameSnapshot {
+	float[] x = new float[64];
+	float[] y = new float[64];
+	short[] size = new short[64];
+	byte[] sprite = new byte[64];
+	int count;
+	long tick;
+	float[] previousX = new float[64];
+	float[] previousY = new float[64];
+	int previousCount;
+	long previousTick = -1;
+	long time;
+	long period;
+	private final SpatialIndex index = new SpatialIndex();
+	
+	/**
+	 * <b>copyPreviousFrom</b>
+	 * <p>
+	 * Remembers where the balls in a store are now, just before the step that the
+	 * snapshot will be filled in from.
+	 * @param store - the balls to copy
+	 * @param tickBefore - the tick the state belongs to
+	 */
+	public void copyPreviousFrom(ParticleStore store, long tickBefore) {
+		int balls = store.size();
+		if(previousX.length < balls) {
+			int capacity = Math.max(balls, previousX.length*2);
+			previousX = Arrays.copyOf(previousX, capacity);
+			previousY = Arrays.copyOf(previousY, capacity);
+		}
+		double[] storeX = store.x;
+		double[] storeY = store.y;
+		double[] radius = store.radius;
+		for(int i = 0; i < balls; i++) {
+			previousX[i] = (float) (storeX[i] - radius[i]);
+			previousY[i] = (float) (storeY[i] - radius[i]);
+		}
+		previousCount = balls;
+		previousTick = tickBefore;
+	}
+	
+	/**
+	 * <b>copyFrom</b>
+	 * <p>
+	 * Fills the snapshot from the current state of a store.
+	 * @param store - the balls to copy
+	 * @param currentTick - the tick the state belongs to
+	 */
+	public void copyFrom(ParticleStore store, long currentTick) {
+		int balls = store.size();
+		if(x.length < balls) {
+			int capacity = Math.max(balls, x.length*2);
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			size = Arrays.copyOf(size, capacity);
+			sprite = Arrays.copyOf(sprite, capacity);
+		}
+		double[] storeX = store.x;
+		double[] storeY = store.y;
+		double[] radius = store.radius;
+		for(int i = 0; i < balls; i++) {
+			x[i] = (float) (storeX[i] - radius[i]);
+			y[i] = (float) (storeY[i] - radius[i]);
+			size[i] = (short) imageSize(radius[i]);
+			sprite[i] = (byte) spriteOf(store, i);
+		}
+		count = balls;
+		tick = currentTick;
+		//Previous positions only line up with these balls if nothing was removed in between
+		if(previousTick != currentTick - 1 || previousCount > balls) {
+			previousCount = 0;
+		}
+		period = 0;
+	}
+	
+	/**
+	 * <b>copyIndexFrom</b>
+	 * <p>
+	 * Copies the index of the balls the snapshot was just filled in from.
+	 * @param source - the engine's index, or null if it keeps none
+	 */
+	public void copyIndexFrom(SpatialIndex source) {
+		if(source != null) {
+			index.copyFrom(source);
+		}
+		else {
+			index.clear();
+		}
+	}
+	
+	/**
+	 * <b>setTiming</b>
+	 * <p>
+	 * Says when the snapshot's state belongs to, so that it can be interpolated.
+	 * @param stateTime - the time of the state, from System.nanoTime
+	 * @param tickNanos - the length of a tick in nanoseconds, or 0 to never
+	 * interpolate
+	 */
+	public void setTiming(long stateTime, long tickNanos) {
+		time = stateTime;
+		period = tickNanos;
+	}
+	
+	/**
+	 * <b>getAlpha</b>
+	 * <p>
+	 * Works out how far between the previous and the current positions a frame
+	 * drawn now should place the balls. The renderer runs one tick behind the 
+	 * simulation, so a frame drawn exactly when the state was reached shows the 
+	 * previous positions and one drawn a tick later shows the current ones.
+	 * @param now - the time the frame is drawn, from System.nanoTime
+	 * @return the fraction of the way from the previous positions, between 0 and 1
+	 */
+	public float getAlpha(long now) {
+		if(period == 0 || previousCount == 0) {
+			return 1;
+		}
+		float alpha = (float) (now - time)/period;
+		return Math.max(0, Math.min(1, alpha));
+	}
+	
+	/**
+	 * <b>getCount</b>
+	 * <p>
+	 * @return count - the number of balls in the snapshot
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	/**
+	 * <b>getIndex</b>
+	 * <p>
+	 * @return index - the index of the snapshot's balls, empty if the engine
+	 * keeps none
+	 */
+	public SpatialIndex getIndex() {
+		return index;
+	}
+	
+	/**
+	 * <b>getTick</b>
+	 * <p>
+	 * @return tick - the simulation tick the snapshot was taken at
+	 */
+	public long getTick() {
+		return tick;
+	}
+	
+	/**
+	 * <b>imageSize</b>
+	 * <p>
+	 * @param radius - the radius of a ball
+	 * @return the width and height of the ball's image: its diameter, counting the
+	 * pixel at the center (45 for the default radius of 22)
+	 */
+	public static int imageSize(double radius) {
+		return (int) Math.min(Short.MAX_VALUE, Math.round(2*radius) + 1);
+	}
+	
+	/**
+	 * <b>spriteOf</b>
+	 * <p>
+	 * @param store - the store holding the ball
+	 * @param i - the index of the ball
+	 * @return the image the ball is currently showing, SpriteCache.SUPERMAN or
+	 * SpriteCache.BATMAN
+	 */
+	public static int spriteOf(ParticleStore store, int i) {
+		return store.kind[i] == ParticleStore.MONSTER && store.alternate[i] ? SpriteCache.BATMAN : SpriteCache.SUPERMAN;
+	}
+}//End of FrameSnapshot class
\ No newline at end of file
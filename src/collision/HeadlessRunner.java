@@ -0,0 +1,252 @@
+package collision;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * <b>HeadlessRunner class</b>
+ * <p>
+ * Runs the simulation engine without a window and reports how fast it ran.
+ * <p>
+ * Usage: java -Djava.awt.headless=true collision.HeadlessRunner [balls] [ticks] [seed] [threads]
+ * <p>
+ * The world is filled with balls at random positions and random whole speeds 
+ * (between -2 and 2 in each direction), one in ten of them being a heavier 
+ * CollisionMonster ball. The world is sized so that the balls cover roughly a
+ * tenth of its area. The same seed always produces the same world. If a number 
+ * of threads is given, collisions are handled by the engine's tiled parallel pass.
+ * The engine can also be configured with the system properties described in 
+ * SimulationSettings; if conservation tracking is on, the drift is printed.
+ * <p>
+ * With -Dcollision.scenario=name or file the world is set up by a Scenario 
+ * instead, using the number of balls and the seed for the built in ones. With
+ * -Dcollision.geometry=file the balls bounce off the obstacles in that file
+ * (see StaticGeometry) instead of the plain walls of the world.
+ * <p>
+ * If -Dcollision.restore=file is given, the world is read from that Checkpoint file
+ * instead of being generated, and the number of balls and the seed are ignored. If
+ * -Dcollision.checkpoint=file is given, the world is saved to that file after the
+ * run. The time taken by either is printed. If -Dcollision.record=file is given,
+ * every tick is recorded to that file (see TrajectoryRecorder). With 
+ * -Dcollision.metrics=true a summary of TickMetrics is printed at the end.
+ * <p>
+ * With -Dcollision.offheap=true the generated world is kept in an 
+ * OffHeapParticleStore and run by an OffHeapSimulation (which needs 
+ * --add-modules jdk.incubator.foreign), so that tens of millions of balls can be
+ * run without a heap to match. The engine properties, scenarios, checkpoints and
+ * recordings do not apply to that mode. The heap in use and the time spent in
+ * garbage collection are printed at the end.
+ */
+public class HeadlessRunner {
+	private static final double RADIUS = 22;
+	
+	public static void main(String[] args) throws IOException {
+		int balls = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long ticks = args.length > 1 ? Long.parseLong(args[1]) : 10000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		
+		if(Boolean.getBoolean("collision.offheap")) {
+			runOffHeap(balls, ticks, seed);
+			return;
+		}
+		
+		String restore = System.getProperty("collision.restore");
+		String checkpoint = System.getProperty("collision.checkpoint");
+		String record = System.getProperty("collision.record");
+		SimulationEngine engine;
+		if(restore != null) {
+			long loadStart = System.nanoTime();
+			engine = Checkpoint.restore(Paths.get(restore));
+			balls = engine.getStore().size();
+			System.out.printf("Restored %d balls from %s in %.3f s%n", 
+							  balls, restore, (System.nanoTime() - loadStart)/1e9);
+		}
+		else {
+			Scenario scenario = SimulationSettings.scenario(balls, seed);
+			long setupStart = System.nanoTime();
+			if(scenario != null) {
+				engine = scenario.createEngine();
+				balls = engine.getStore().size();
+				System.out.printf("Set up %d balls in %.3f s%n", balls, (System.nanoTime() - setupStart)/1e9);
+			}
+			else {
+				engine = generate(balls, seed);
+			}
+		}
+		SimulationSettings.configure(engine);
+		SimulationSettings.geometry(engine);
+		if(threads > 0) {
+			engine.setParallelism(threads);
+		}
+		
+		long start = System.nanoTime();
+		if(record != null) {
+			TrajectoryRecorder recorder = new TrajectoryRecorder(Paths.get(record));
+			for(long i = 0; i < ticks; i++) {
+				engine.step(1);
+				recorder.record(engine.getStore(), engine.getTick());
+			}
+			recorder.close();
+		}
+		else {
+			engine.run(ticks);
+		}
+		double seconds = (System.nanoTime() - start)/1e9;
+		System.out.printf("%d balls, %d ticks in %.3f s (%.0f ticks/s)%n", 
+						  balls, ticks, seconds, ticks/seconds);
+		if(engine.getConservation() != null) {
+			System.out.println(engine.getConservation());
+		}
+		if(TickMetrics.ENABLED) {
+			System.out.println(TickMetrics.summary());
+		}
+		if(checkpoint != null) {
+			long saveStart = System.nanoTime();
+			Checkpoint.save(engine, Paths.get(checkpoint));
+			System.out.printf("Saved %d balls to %s in %.3f s%n", 
+							  engine.getStore().size(), checkpoint, (System.nanoTime() - saveStart)/1e9);
+		}
+	}
+	
+	/**
+	 * <b>generate</b>
+	 * <p>
+	 * Creates a world of randomly placed balls as described above.
+	 * @param balls - the number of balls
+	 * @param seed - the seed of the random positions and speeds
+	 * @return an engine holding the new world
+	 */
+	private static SimulationEngine generate(int balls, long seed) {
+		return generate(balls, seed, 0.1, 2, 2);
+	}
+	
+	/**
+	 * <b>generate</b>
+	 * <p>
+	 * Creates a world of randomly placed balls with random whole speeds, one in 
+	 * ten of them being a CollisionMonster ball.
+	 * @param balls - the number of balls
+	 * @param seed - the seed of the random positions and speeds
+	 * @param density - the fraction of the world's area covered by balls
+	 * @param speed - the largest speed in each direction
+	 * @param massRatio - how many times heavier a monster ball is than a normal one
+	 * @return an engine holding the new world
+	 */
+	static SimulationEngine generate(int balls, long seed, double density, int speed, double massRatio) {
+		double width = worldWidth(balls, density);
+		double height = worldHeight(balls, density);
+		SimulationEngine engine = new SimulationEngine(width, height);
+		ParticleStore store = engine.getStore();
+		store.ensureCapacity(balls);
+		fill(store::add, balls, seed, width, height, speed, massRatio);
+		return engine;
+	}
+	
+	/**
+	 * <b>runOffHeap</b>
+	 * <p>
+	 * Generates a world as described above straight into native memory, runs it
+	 * with an OffHeapSimulation and reports how fast it ran and what it cost the 
+	 * heap.
+	 * @param balls - the number of balls
+	 * @param ticks - the number of ticks to run
+	 * @param seed - the seed of the random positions and speeds
+	 */
+	private static void runOffHeap(int balls, long ticks, long seed) {
+		double width = worldWidth(balls, 0.1);
+		double height = worldHeight(balls, 0.1);
+		try(OffHeapParticleStore store = new OffHeapParticleStore(balls);
+			OffHeapSimulation simulation = new OffHeapSimulation(width, height, store)) {
+			long setupStart = System.nanoTime();
+			fill(store::add, balls, seed, width, height, 2, 2);
+			System.out.printf("Set up %d balls off the heap in %.3f s%n", balls, (System.nanoTime() - setupStart)/1e9);
+			long gcBefore = gcMillis();
+			long start = System.nanoTime();
+			long contacts = simulation.run(ticks);
+			double seconds = (System.nanoTime() - start)/1e9;
+			System.out.printf("%d balls, %d ticks in %.3f s (%.0f ticks/s), %d collisions%n", 
+							  balls, ticks, seconds, ticks/seconds, contacts);
+			Runtime runtime = Runtime.getRuntime();
+			System.out.printf("Heap in use %.1f MB, %d ms in garbage collection during the run%n",
+							  (runtime.totalMemory() - runtime.freeMemory())/1e6, gcMillis() - gcBefore);
+			if(TickMetrics.ENABLED) {
+				System.out.println(TickMetrics.summary());
+			}
+		}
+	}
+	
+	/**
+	 * <b>gcMillis</b>
+	 * <p>
+	 * @return the total time every garbage collector has spent collecting, in 
+	 * milliseconds
+	 */
+	private static long gcMillis() {
+		long total = 0;
+		for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, collector.getCollectionTime());
+		}
+		return total;
+	}
+	
+	/**
+	 * <b>worldWidth</b>
+	 * <p>
+	 * @param balls - the number of balls
+	 * @param density - the fraction of the world's area covered by balls
+	 * @return the width of a world holding the balls at that density
+	 */
+	private static double worldWidth(int balls, double density) {
+		return Math.max(Math.sqrt(balls*Math.PI*RADIUS*RADIUS/density), 4*RADIUS);
+	}
+	
+	/**
+	 * <b>worldHeight</b>
+	 * <p>
+	 * @param balls - the number of balls
+	 * @param density - the fraction of the world's area covered by balls
+	 * @return the height of a world holding the balls at that density
+	 */
+	private static double worldHeight(int balls, double density) {
+		return Math.max(Math.sqrt(balls*Math.PI*RADIUS*RADIUS/density)*3/4, 4*RADIUS);
+	}
+	
+	/**
+	 * <b>fill</b>
+	 * <p>
+	 * Adds randomly placed balls with random whole speeds, one in ten of them 
+	 * being a CollisionMonster ball, to a store.
+	 * @param store - where to add the balls
+	 * @param balls - the number of balls
+	 * @param seed - the seed of the random positions and speeds
+	 * @param width - the width of the world
+	 * @param height - the height of the world
+	 * @param speed - the largest speed in each direction
+	 * @param massRatio - how many times heavier a monster ball is than a normal one
+	 */
+	private static void fill(BallSink store, int balls, long seed, double width, double height, 
+							 int speed, double massRatio) {
+		Random random = new Random(seed);
+		for(int i = 0; i < balls; i++) {
+			boolean monster = random.nextInt(10) == 0;
+			store.add(RADIUS + random.nextDouble()*(width - 2*RADIUS), 
+					  RADIUS + random.nextDouble()*(height - 2*RADIUS),
+					  random.nextInt(2*speed + 1) - speed, random.nextInt(2*speed + 1) - speed, RADIUS, 
+					  monster ? massRatio : 1, monster ? ParticleStore.MONSTER : ParticleStore.NORMAL);
+		}
+	}
+	
+	/**
+	 * <b>BallSink Interface</b>
+	 * <p>
+	 * Something balls can be added to: a ParticleStore or an OffHeapParticleStore.
+	 */
+	private interface BallSink {
+		void add(double centerX, double centerY, double xSpeed, double ySpeed, 
+				 double ballRadius, double ballMass, byte type);
+	}
+}//End of HeadlessRunner class
\ No newline at end of file
@@ -0,0 +1,238 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * <b>HierarchicalGridBroadPhase class</b>
+ * <p>
+ * Finds candidate pairs with a stack of uniform grids whose cells double in size
+ * from one level to the next, so that balls of very different sizes can share a
+ * world.
+ * <p>
+ * A single grid (like SpatialHashBroadPhase) has to size its cells for the largest
+ * ball, and then a few huge balls put hundreds of small balls in every cell. Here
+ * the cells of the finest level are sized for the smallest ball, and each ball is
+ * hashed only into the finest level whose cells are at least its diameter. Two
+ * balls on the same level are found as in SpatialHashBroadPhase: each ball looks
+ * at its own cell and half of its neighbours. A ball also looks at the cells
+ * around it on every coarser level that holds any balls, as far out as the
+ * largest ball on that level could reach it from (at most 2x2 cells, since those
+ * cells are at least twice its diameter). Pairs between
+ * levels are only looked for from the smaller ball's side, so every unordered pair
+ * is still reported exactly once.
+ * <p>
+ * Each ball costs a few lookups per occupied level above its own, and there are
+ * only about log2 of the ratio between the largest and smallest radius levels, so
+ * the cost stays close to linear in the number of balls however mixed their sizes
+ * are. Each level has its own range of buckets, sized to the number of balls on
+ * it, so the handful of buckets of a level holding a few large balls stay in the
+ * cache while every small ball looks them up. The buckets of every level are
+ * rebuilt together every tick with one counting sort into arrays reused between
+ * ticks.
+ */
+public class HierarchicalGridBroadPhase implements BroadPhase {
+	//Extra room added to the cell size so that balls just touching are still neighbours
+	private final double MARGIN = 1;
+
+	//Cells on the finest level are at most 2^MAX_LEVEL times smaller than the coarsest
+	private static final int MAX_LEVEL = 30;
+
+	//Offsets of the cells visited around a ball's own cell on its own level
+	private final int[] NEIGHBOUR_X = {1, 1, 1, 0};
+	private final int[] NEIGHBOUR_Y = {-1, 0, 1, 1};
+
+	private final double[] cellSize = new double[MAX_LEVEL + 1];
+	private final int[] levelCount = new int[MAX_LEVEL + 1];
+	private final double[] levelRadius = new double[MAX_LEVEL + 1];
+	//Each level's buckets start at levelBase and are levelMask + 1 long
+	private final int[] levelBase = new int[MAX_LEVEL + 1];
+	private final int[] levelMask = new int[MAX_LEVEL + 1];
+	private int[] level = new int[0];
+	private int[] cellX = new int[0];
+	private int[] cellY = new int[0];
+	private int[] bucketOf = new int[0];
+	private int[] bucketStart = new int[0];
+	private int[] bucketEnd = new int[0];
+	private int[] sorted = new int[0];
+	//Bit l is set if level l holds any balls
+	private long occupied;
+
+	public void findPairs(ParticleStore store, PairList pairs) {
+		pairs.clear();
+		int count = store.size();
+		if(count < 2) {
+			return;
+		}
+		buildTable(store, count);
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] radius = store.radius;
+		for(int a = 0; a < count; a++) {
+			int l = level[a];
+			int cx = cellX[a];
+			int cy = cellY[a];
+			//Same cell: only balls after this one so each pair is seen once
+			int bucket = bucketOf[a];
+			for(int s = bucketStart[bucket]; s < bucketStart[bucket + 1]; s++) {
+				int b = sorted[s];
+				if(b > a && cellX[b] == cx && cellY[b] == cy) {
+					pairs.add(a, b);
+				}
+			}
+			for(int k = 0; k < NEIGHBOUR_X.length; k++) {
+				addCell(a, l, cx + NEIGHBOUR_X[k], cy + NEIGHBOUR_Y[k], pairs);
+			}
+			//Larger balls: every cell on each occupied level above that one could reach from
+			long above = occupied & (-2L << l);
+			while(above != 0) {
+				int coarser = Long.numberOfTrailingZeros(above);
+				above &= above - 1;
+				double reach = radius[a] + levelRadius[coarser] + MARGIN;
+				double size = cellSize[coarser];
+				int x0 = (int) Math.floor((x[a] - reach)/size);
+				int x1 = (int) Math.floor((x[a] + reach)/size);
+				int y0 = (int) Math.floor((y[a] - reach)/size);
+				int y1 = (int) Math.floor((y[a] + reach)/size);
+				for(int nx = x0; nx <= x1; nx++) {
+					for(int ny = y0; ny <= y1; ny++) {
+						addNear(a, coarser, nx, ny, x, y, radius, pairs);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <b>addNear</b>
+	 * <p>
+	 * Pairs a ball with every larger ball in one cell of a coarser level whose box
+	 * overlaps its own. A coarse cell is far bigger than the ball, so most of the
+	 * balls in it are nowhere near the ball, and the box test keeps them out of the
+	 * narrow phase.
+	 * @param a - the ball
+	 * @param l - the level of the cell
+	 * @param cx - the horizontal coordinate of the cell
+	 * @param cy - the vertical coordinate of the cell
+	 * @param x - the x positions of the balls
+	 * @param y - the y positions of the balls
+	 * @param radius - the radii of the balls
+	 * @param pairs - the list to add the pairs to
+	 */
+	private void addNear(int a, int l, int cx, int cy, double[] x, double[] y, double[] radius, PairList pairs) {
+		int bucket = levelBase[l] + (hash(cx, cy) & levelMask[l]);
+		for(int s = bucketStart[bucket]; s < bucketStart[bucket + 1]; s++) {
+			int b = sorted[s];
+			if(cellX[b] == cx && cellY[b] == cy) {
+				double reach = radius[a] + radius[b] + MARGIN;
+				if(Math.abs(x[a] - x[b]) < reach && Math.abs(y[a] - y[b]) < reach) {
+					pairs.add(a, b);
+				}
+			}
+		}
+	}
+
+	/**
+	 * <b>addCell</b>
+	 * <p>
+	 * Pairs a ball with every ball in one cell.
+	 * @param a - the ball
+	 * @param l - the level of the cell
+	 * @param cx - the horizontal coordinate of the cell
+	 * @param cy - the vertical coordinate of the cell
+	 * @param pairs - the list to add the pairs to
+	 */
+	private void addCell(int a, int l, int cx, int cy, PairList pairs) {
+		int bucket = levelBase[l] + (hash(cx, cy) & levelMask[l]);
+		for(int s = bucketStart[bucket]; s < bucketStart[bucket + 1]; s++) {
+			int b = sorted[s];
+			if(cellX[b] == cx && cellY[b] == cy) {
+				pairs.add(a, b);
+			}
+		}
+	}
+
+	/**
+	 * <b>buildTable</b>
+	 * <p>
+	 * Sizes the levels from the smallest ball, works out every ball's level and
+	 * cell, and sorts the ball indices by bucket.
+	 * @param store - the balls to hash
+	 * @param count - the number of balls in use
+	 */
+	private void buildTable(ParticleStore store, int count) {
+		if(cellX.length < count) {
+			level = new int[count];
+			cellX = new int[count];
+			cellY = new int[count];
+			bucketOf = new int[count];
+			sorted = new int[count];
+		}
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] radius = store.radius;
+		double minRadius = Double.MAX_VALUE;
+		for(int i = 0; i < count; i++) {
+			minRadius = Math.min(minRadius, radius[i]);
+		}
+		cellSize[0] = 2*minRadius + MARGIN;
+		for(int l = 1; l <= MAX_LEVEL; l++) {
+			cellSize[l] = cellSize[l - 1]*2;
+		}
+		Arrays.fill(levelCount, 0);
+		Arrays.fill(levelRadius, 0);
+		occupied = 0;
+		for(int i = 0; i < count; i++) {
+			int l = 0;
+			double reach = 2*radius[i] + MARGIN;
+			while(l < MAX_LEVEL && cellSize[l] < reach) {
+				l++;
+			}
+			level[i] = l;
+			levelCount[l]++;
+			levelRadius[l] = Math.max(levelRadius[l], radius[i]);
+			occupied |= 1L << l;
+		}
+		int buckets = 0;
+		for(int l = 0; l <= MAX_LEVEL; l++) {
+			int levelBuckets = levelCount[l] == 0 ? 0 : Integer.highestOneBit(levelCount[l]*2 - 1) << 1;
+			levelBase[l] = buckets;
+			levelMask[l] = levelBuckets - 1;
+			buckets += levelBuckets;
+		}
+		if(bucketStart.length < buckets + 1) {
+			bucketStart = new int[buckets*2 + 1];
+			bucketEnd = new int[buckets*2 + 1];
+		}
+		else {
+			Arrays.fill(bucketStart, 0, buckets + 1, 0);
+		}
+		for(int i = 0; i < count; i++) {
+			int l = level[i];
+			cellX[i] = (int) Math.floor(x[i]/cellSize[l]);
+			cellY[i] = (int) Math.floor(y[i]/cellSize[l]);
+			bucketOf[i] = levelBase[l] + (hash(cellX[i], cellY[i]) & levelMask[l]);
+			bucketStart[bucketOf[i] + 1]++;
+		}
+		for(int b = 0; b < buckets; b++) {
+			bucketStart[b + 1] += bucketStart[b];
+		}
+		//Place balls from the back so each bucket keeps ascending index order
+		System.arraycopy(bucketStart, 0, bucketEnd, 0, buckets + 1);
+		for(int i = count - 1; i >= 0; i--) {
+			sorted[--bucketEnd[bucketOf[i] + 1]] = i;
+		}
+	}
+
+	/**
+	 * <b>hash</b>
+	 * <p>
+	 * Mixes a pair of cell coordinates into a well spread integer.
+	 * @param x - the horizontal cell coordinate
+	 * @param y - the vertical cell coordinate
+	 * @return the hash of the cell
+	 */
+	private static int hash(int x, int y) {
+		int h = x*0x8da6b343 ^ y*0xd8163841;
+		return h ^ (h >>> 16);
+	}
+}//End of HierarchicalGridBroadPhase class
\ No newline at end of file
@@ -0,0 +1,37 @@
+package collision;
+
+/**
+ * <b>ImageToggle class</b>
+ * <p>
+ * The subscriber that makes CollisionMonster balls react to their collisions by
+ * switching between their two images, as they always have, once a tick is over
+ * instead of in the middle of the collision pass. Each engine subscribes one to
+ * its CollisionEvents with the BLOCK policy, so that no switch is ever lost.
+ * <p>
+ * A ball that collides twice in a tick switches twice, so only the number of its
+ * collisions matters and not their order. The reactions are counted in
+ * TickMetrics.
+ */
+public class ImageToggle implements CollisionSubscriber {
+	private final ParticleStore store;
+
+	/**
+	 * Constructs a subscriber that switches the images of balls in a store.
+	 * @param store - the store holding the balls
+	 */
+	public ImageToggle(ParticleStore store) {
+		this.store = store;
+	}
+
+	public void onContacts(CollisionEvents events, long from, long to) {
+		for(long e = from; e < to; e++) {
+			int m = events.getFirst(e);
+			int n = events.getSecond(e);
+			store.toggleImage(m);
+			store.toggleImage(n);
+			if(TickMetrics.ENABLED) {
+				TickMetrics.reacted(store, m, n);
+			}
+		}
+	}
+}//End of ImageToggle class
\ No newline at end of file
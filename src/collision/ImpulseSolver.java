@@ -0,0 +1,49 @@
+package collision;
+
+/**
+ * <b>ImpulseSolver class</b>
+ * <p>
+ * Resolves elastic collisions with an impulse along the contact normal, using no
+ * trigonometry and keeping speeds at full double precision.
+ * <p>
+ * The normal is the unit vector from the left ball's center to the right ball's
+ * center, found with a single reciprocal square root. Only the part of the 
+ * relative speed along the normal is changed: each ball receives an equal and
+ * opposite impulse of 2 * mM * mN / (mM + mN) times that speed, so momentum and
+ * kinetic energy are both conserved up to floating point rounding. The mass 
+ * weighting is the same as AngleSolver's, so a CollisionMonster (mass 2) reacts 
+ * the same way under both solvers.
+ * <p>
+ * Pairs that are already moving apart are left alone. This stops overlapping balls
+ * from being pulled back into each other, so no extra move is needed to keep them
+ * from sticking. Such pairs do not count as collisions.
+ */
+public class ImpulseSolver implements CollisionSolver {
+
+	public boolean resolve(ParticleStore store, int m, int n, double dt) {
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] vx = store.vx;
+		double[] vy = store.vy;
+		double[] mass = store.mass;
+		double dx = x[m] - x[n];
+		double dy = y[m] - y[n];
+		double distSquared = dx*dx + dy*dy;
+		if(distSquared == 0) {
+			return false;
+		}
+		double inverseDistance = 1/Math.sqrt(distSquared);
+		double normalX = dx*inverseDistance;
+		double normalY = dy*inverseDistance;
+		double approach = (vx[m] - vx[n])*normalX + (vy[m] - vy[n])*normalY;
+		if(approach >= 0) {
+			return false;
+		}
+		double impulse = 2*approach/(mass[m] + mass[n]);
+		vx[m] -= impulse*mass[n]*normalX;
+		vy[m] -= impulse*mass[n]*normalY;
+		vx[n] += impulse*mass[m]*normalX;
+		vy[n] += impulse*mass[m]*normalY;
+		return true;
+	}
+}//End of ImpulseSolver class
\ No newline at end of file
@@ -0,0 +1,156 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * <b>IndexedEventQueue class</b>
+ * <p>
+ * A binary min-heap of event times keyed by ball index.
+ * <p>
+ * Each ball has at most one entry, its earliest predicted event, and that entry
+ * can be found, moved up or down, or removed in O(log n) through the ball's index.
+ * This lets EventDrivenSimulation replace a ball's prediction in place instead of
+ * piling up outdated events in the queue.
+ */
+public class IndexedEventQueue {
+	private int[] heap = new int[16];
+	private int[] position = new int[16];
+	private double[] time = new double[16];
+	private int size;
+	
+	/**
+	 * Constructs an empty queue.
+	 */
+	public IndexedEventQueue() {
+		Arrays.fill(position, -1);
+	}
+	
+	/**
+	 * <b>set</b>
+	 * <p>
+	 * Inserts a ball's event or changes the time of the one it already has.
+	 * @param ball - the index of the ball
+	 * @param eventTime - the time of the ball's event
+	 */
+	public void set(int ball, double eventTime) {
+		ensureCapacity(ball + 1);
+		if(position[ball] < 0) {
+			heap[size] = ball;
+			position[ball] = size;
+			time[ball] = eventTime;
+			swim(size++);
+		}
+		else {
+			double old = time[ball];
+			time[ball] = eventTime;
+			if(eventTime < old) {
+				swim(position[ball]);
+			}
+			else {
+				sink(position[ball]);
+			}
+		}
+	}
+	
+	/**
+	 * <b>remove</b>
+	 * <p>
+	 * Removes a ball's event, if it has one.
+	 * @param ball - the index of the ball
+	 */
+	public void remove(int ball) {
+		if(ball >= position.length || position[ball] < 0) {
+			return;
+		}
+		int at = position[ball];
+		exchange(at, --size);
+		position[ball] = -1;
+		if(at < size) {
+			swim(at);
+			sink(at);
+		}
+	}
+	
+	/**
+	 * <b>poll</b>
+	 * <p>
+	 * Removes the earliest event.
+	 * @return the index of the ball whose event was earliest
+	 */
+	public int poll() {
+		int ball = heap[0];
+		remove(ball);
+		return ball;
+	}
+	
+	/**
+	 * <b>clear</b>
+	 * <p>
+	 * Removes every event.
+	 */
+	public void clear() {
+		for(int i = 0; i < size; i++) {
+			position[heap[i]] = -1;
+		}
+		size = 0;
+	}
+	
+	/**
+	 * <b>peekTime</b>
+	 * <p>
+	 * @return the time of the earliest event, or infinity if the queue is empty
+	 */
+	public double peekTime() {
+		return size == 0 ? Double.POSITIVE_INFINITY : time[heap[0]];
+	}
+	
+	/**
+	 * <b>isEmpty</b>
+	 * <p>
+	 * @return whether the queue has no events
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	private void swim(int at) {
+		while(at > 0 && time[heap[(at - 1)/2]] > time[heap[at]]) {
+			exchange(at, (at - 1)/2);
+			at = (at - 1)/2;
+		}
+	}
+	
+	private void sink(int at) {
+		while(2*at + 1 < size) {
+			int child = 2*at + 1;
+			if(child + 1 < size && time[heap[child + 1]] < time[heap[child]]) {
+				child++;
+			}
+			if(time[heap[at]] <= time[heap[child]]) {
+				break;
+			}
+			exchange(at, child);
+			at = child;
+		}
+	}
+	
+	private void exchange(int a, int b) {
+		int swap = heap[a];
+		heap[a] = heap[b];
+		heap[b] = swap;
+		position[heap[a]] = a;
+		position[heap[b]] = b;
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if(capacity <= position.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, position.length*2);
+		int old = position.length;
+		heap = Arrays.copyOf(heap, newCapacity);
+		time = Arrays.copyOf(time, newCapacity);
+		position = Arrays.copyOf(position, newCapacity);
+		Arrays.fill(position, old, newCapacity, -1);
+	}
+}//End of IndexedEventQueue class
\ No newline at end of file
@@ -0,0 +1,137 @@
+package collision;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <b>LatencyHistogram class</b>
+ * <p>
+ * Counts how often each duration was recorded, precisely enough to read off
+ * percentiles, in a fixed amount of memory and without allocating.
+ * <p>
+ * Durations are grouped into buckets the way HdrHistogram does it: values below
+ * SUB_BUCKETS each get their own bucket, and above that every power of two is
+ * split into SUB_BUCKETS/2 equal buckets. Each bucket is therefore less than
+ * 2/SUB_BUCKETS (about 1.6%) wide relative to the values it holds, from one
+ * nanosecond up to several minutes. Finding a bucket is a few shifts, and
+ * recording is one store into an array.
+ * <p>
+ * Only one thread may record into a histogram, but any thread can read it at the
+ * same time. Readers see each count either before or after the latest record,
+ * which is good enough for monitoring.
+ */
+public class LatencyHistogram {
+	//Must be a power of two; 128 gives two significant decimal digits
+	private static final int SUB_BUCKETS = 128;
+	private static final int SUB_BITS = 7;
+	private static final int HALF = SUB_BUCKETS/2;
+	//Enough buckets for any value up to 2^40 ns (about 18 minutes)
+	private static final int MAX_SHIFT = 40 - SUB_BITS + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + MAX_SHIFT*HALF);
+	private volatile long total;
+	private volatile long sum;
+	private volatile long max;
+
+	/**
+	 * <b>record</b>
+	 * <p>
+	 * Adds one duration to the histogram. Negative durations count as zero.
+	 * @param nanos - the duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		int index = indexOf(value);
+		counts.lazySet(index, counts.get(index) + 1);
+		total = total + 1;
+		sum = sum + value;
+		if(value > max) {
+			max = value;
+		}
+	}
+
+	/**
+	 * <b>getCount</b>
+	 * <p>
+	 * @return the number of durations recorded
+	 */
+	public long getCount() {
+		return total;
+	}
+
+	/**
+	 * <b>getMean</b>
+	 * <p>
+	 * @return the mean duration in nanoseconds, or 0 if none were recorded
+	 */
+	public double getMean() {
+		long count = total;
+		return count == 0 ? 0 : (double) sum/count;
+	}
+
+	/**
+	 * <b>getMax</b>
+	 * <p>
+	 * @return the longest duration recorded in nanoseconds
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * <b>getPercentile</b>
+	 * <p>
+	 * @param percentile - between 0 and 100
+	 * @return the duration in nanoseconds that the given percentage of recorded
+	 * durations are at or below (rounded up to the top of its bucket), or 0 if none
+	 * were recorded
+	 */
+	public long getPercentile(double percentile) {
+		long count = 0;
+		for(int i = 0; i < counts.length(); i++) {
+			count += counts.get(i);
+		}
+		if(count == 0) {
+			return 0;
+		}
+		long wanted = Math.max(1, (long) Math.ceil(count*Math.min(100, percentile)/100));
+		long seen = 0;
+		for(int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if(seen >= wanted) {
+				return Math.min(highestIn(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * <b>indexOf</b>
+	 * <p>
+	 * @param value - a duration, at least 0
+	 * @return the bucket the duration belongs in
+	 */
+	private static int indexOf(long value) {
+		if(value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		//shift so that the value's top SUB_BITS bits are left, between HALF and SUB_BUCKETS - 1
+		int shift = Math.min(63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1), MAX_SHIFT);
+		long top = Math.min(value >>> shift, SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (shift - 1)*HALF + (int) (top - HALF);
+	}
+
+	/**
+	 * <b>highestIn</b>
+	 * <p>
+	 * @param index - a bucket
+	 * @return the largest duration that belongs in the bucket
+	 */
+	private static long highestIn(int index) {
+		if(index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKETS)/HALF + 1;
+		long top = (index - SUB_BUCKETS) % HALF + HALF;
+		return ((top + 1) << shift) - 1;
+	}
+}//End of LatencyHistogram class
\ No newline at end of file
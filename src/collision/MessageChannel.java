@@ -0,0 +1,281 @@
+package collision;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * <b>MessageChannel class</b>
+ * <p>
+ * Sends and receives the binary messages of a distributed run (see
+ * DistributedRunner) over a blocking socket channel.
+ * <p>
+ * Every message is a frame of an int giving the length of its contents, an int
+ * giving its type (one of the constants below) and then the contents. A whole
+ * batch of balls goes in one message, so a tick costs a handful of messages
+ * between each pair of neighbours however many balls cross between them.
+ * <p>
+ * Outgoing and incoming messages are built in two heap buffers that grow as
+ * needed and are reused, so a running worker allocates nothing per message. A
+ * buffer returned by receive is only valid until the next call to receive.
+ * <p>
+ * Balls are sent as records of BALL_BYTES bytes (their id and everything held
+ * about them in a ParticleStore) or, when only what a collision can change is
+ * needed, as records of STATE_BYTES bytes (position, speed and image).
+ */
+public class MessageChannel implements Closeable {
+
+	/**
+	 * Worker to coordinator: the worker's port for its east neighbour
+	 */
+	public static final int HELLO = 1;
+
+	/**
+	 * Coordinator to worker: the worker's strip, the world and its balls
+	 */
+	public static final int INIT = 2;
+
+	/**
+	 * Coordinator to worker: run one tick
+	 */
+	public static final int TICK = 3;
+
+	/**
+	 * Worker to coordinator: the tick is done, with the number of collisions
+	 */
+	public static final int DONE = 4;
+
+	/**
+	 * Coordinator to worker: send back every ball and stop
+	 */
+	public static final int GATHER = 5;
+
+	/**
+	 * Worker to coordinator: every ball the worker owns
+	 */
+	public static final int BALLS = 6;
+
+	/**
+	 * Worker to worker: balls that have moved into the other worker's strip
+	 */
+	public static final int MIGRATE = 7;
+
+	/**
+	 * Worker to worker: balls next to the other worker's strip
+	 */
+	public static final int HALO = 8;
+
+	/**
+	 * Worker to worker: the current state of the balls shared as a halo
+	 */
+	public static final int STATE = 9;
+
+	/**
+	 * The size of a ball sent with putBall
+	 */
+	public static final int BALL_BYTES = 8 + 6*8 + 2;
+
+	/**
+	 * The size of a ball's state sent with putState
+	 */
+	public static final int STATE_BYTES = 4*8 + 1;
+
+	private final int HEADER_BYTES = 8;
+
+	private final SocketChannel channel;
+	private ByteBuffer out = ByteBuffer.allocate(1 << 16);
+	private ByteBuffer in = ByteBuffer.allocate(1 << 16);
+	private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+	private int type;
+
+	/**
+	 * Constructs a message channel over a connected socket channel.
+	 * @param channel - the connection to the other side
+	 * @throws IOException if the channel cannot be set up
+	 */
+	public MessageChannel(SocketChannel channel) throws IOException {
+		this.channel = channel;
+		channel.configureBlocking(true);
+		channel.socket().setTcpNoDelay(true);
+	}
+
+	/**
+	 * <b>start</b>
+	 * <p>
+	 * Starts a new outgoing message.
+	 * @param type - the type of the message
+	 * @param bytes - the size of its contents, or more
+	 * @return the buffer to put the contents in
+	 */
+	public ByteBuffer start(int type, int bytes) {
+		if(out.capacity() < HEADER_BYTES + bytes) {
+			out = ByteBuffer.allocate(Math.max(HEADER_BYTES + bytes, out.capacity()*2));
+		}
+		out.clear();
+		out.putInt(0).putInt(type);
+		return out;
+	}
+
+	/**
+	 * <b>send</b>
+	 * <p>
+	 * Sends the message begun with start.
+	 * @throws IOException if the message cannot be sent
+	 */
+	public void send() throws IOException {
+		out.putInt(0, out.position() - HEADER_BYTES);
+		out.flip();
+		while(out.hasRemaining()) {
+			channel.write(out);
+		}
+	}
+
+	/**
+	 * <b>send</b>
+	 * <p>
+	 * Sends a message with no contents.
+	 * @param type - the type of the message
+	 * @throws IOException if the message cannot be sent
+	 */
+	public void send(int type) throws IOException {
+		start(type, 0);
+		send();
+	}
+
+	/**
+	 * <b>receive</b>
+	 * <p>
+	 * Waits for the next message, which must be of the given type.
+	 * @param expectedType - the type of message expected
+	 * @return a buffer holding the message's contents
+	 * @throws IOException if the connection fails or a different message arrives
+	 */
+	public ByteBuffer receive(int expectedType) throws IOException {
+		ByteBuffer contents = receive();
+		if(type != expectedType) {
+			throw new IOException("Expected message " + expectedType + " but received " + type);
+		}
+		return contents;
+	}
+
+	/**
+	 * <b>receive</b>
+	 * <p>
+	 * Waits for the next message, of any type.
+	 * @return a buffer holding the message's contents
+	 * @throws IOException if the connection fails
+	 */
+	public ByteBuffer receive() throws IOException {
+		header.clear();
+		readFully(header);
+		int length = header.getInt(0);
+		type = header.getInt(4);
+		if(in.capacity() < length) {
+			in = ByteBuffer.allocate(Math.max(length, in.capacity()*2));
+		}
+		in.clear().limit(length);
+		readFully(in);
+		in.flip();
+		return in;
+	}
+
+	/**
+	 * <b>getType</b>
+	 * <p>
+	 * @return type - the type of the last message received
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * <b>readFully</b>
+	 * <p>
+	 * Reads from the channel until the buffer is full.
+	 * @param buffer - the buffer to fill
+	 * @throws IOException if the connection fails or is closed first
+	 */
+	private void readFully(ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer) < 0) {
+				throw new EOFException("Connection closed by the other side");
+			}
+		}
+	}
+
+	/**
+	 * <b>putBall</b>
+	 * <p>
+	 * Writes a ball as a record of BALL_BYTES bytes.
+	 * @param buffer - the buffer to write to
+	 * @param id - the ball's id
+	 * @param store - the store holding the ball
+	 * @param i - the index of the ball
+	 */
+	public static void putBall(ByteBuffer buffer, long id, ParticleStore store, int i) {
+		buffer.putLong(id)
+			  .putDouble(store.x[i]).putDouble(store.y[i])
+			  .putDouble(store.vx[i]).putDouble(store.vy[i])
+			  .putDouble(store.radius[i]).putDouble(store.mass[i])
+			  .put(store.kind[i]).put((byte) (store.alternate[i] ? 1 : 0));
+	}
+
+	/**
+	 * <b>getBall</b>
+	 * <p>
+	 * Reads a ball written by putBall and adds it to the end of a store.
+	 * @param buffer - the buffer to read from
+	 * @param store - the store to add the ball to
+	 * @return the ball's id
+	 */
+	public static long getBall(ByteBuffer buffer, ParticleStore store) {
+		long id = buffer.getLong();
+		int i = store.add(buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+						  buffer.getDouble(), buffer.getDouble(), buffer.get());
+		store.alternate[i] = buffer.get() != 0;
+		return id;
+	}
+
+	/**
+	 * <b>putState</b>
+	 * <p>
+	 * Writes the position, speed and image of a ball as a record of STATE_BYTES
+	 * bytes.
+	 * @param buffer - the buffer to write to
+	 * @param store - the store holding the ball
+	 * @param i - the index of the ball
+	 */
+	public static void putState(ByteBuffer buffer, ParticleStore store, int i) {
+		buffer.putDouble(store.x[i]).putDouble(store.y[i])
+			  .putDouble(store.vx[i]).putDouble(store.vy[i])
+			  .put((byte) (store.alternate[i] ? 1 : 0));
+	}
+
+	/**
+	 * <b>getState</b>
+	 * <p>
+	 * Reads a record written by putState into a ball already in a store.
+	 * @param buffer - the buffer to read from
+	 * @param store - the store holding the ball
+	 * @param i - the index of the ball
+	 */
+	public static void getState(ByteBuffer buffer, ParticleStore store, int i) {
+		store.x[i] = buffer.getDouble();
+		store.y[i] = buffer.getDouble();
+		store.vx[i] = buffer.getDouble();
+		store.vy[i] = buffer.getDouble();
+		store.alternate[i] = buffer.get() != 0;
+	}
+
+	/**
+	 * <b>close</b>
+	 * <p>
+	 * Closes the connection.
+	 * @throws IOException if the connection cannot be closed
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+}//End of MessageChannel class
\ No newline at end of file
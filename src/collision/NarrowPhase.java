@@ -0,0 +1,46 @@
+package collision;
+
+/**
+ * <b>NarrowPhase interface</b>
+ * <p>
+ * Checks the candidate pairs found by a BroadPhase and resolves the ones that are
+ * touching.
+ * <p>
+ * Pairs must be handled in the order of the list, each one against the positions
+ * left by the pairs before it, so that every implementation makes exactly the same
+ * decisions as ScalarNarrowPhase. Whether a pair is touching is decided by 
+ * SimulationEngine.collidePair.
+ */
+public interface NarrowPhase {
+	
+	/**
+	 * <b>collide</b>
+	 * <p>
+	 * Checks every pair in the list and resolves those that are touching.
+	 * @param engine - the engine whose balls the pairs refer to
+	 * @param pairs - the candidate pairs
+	 * @param dt - the length of the step
+	 * @param counter - the counter to record collisions in, or null
+	 * @return the number of collisions resolved
+	 */
+	int collide(SimulationEngine engine, PairList pairs, double dt, ConservationCounter counter);
+	
+	/**
+	 * <b>fastest</b>
+	 * <p>
+	 * Creates a VectorNarrowPhase if the jdk.incubator.vector module is available
+	 * (the program was started with --add-modules jdk.incubator.vector) and the
+	 * processor can work on more than one double at a time, and a 
+	 * ScalarNarrowPhase otherwise. The vector class is loaded by name so that this
+	 * works without the module.
+	 * @return the fastest narrow phase available
+	 */
+	static NarrowPhase fastest() {
+		try {
+			return (NarrowPhase) Class.forName("collision.VectorNarrowPhase").getDeclaredConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+			return new ScalarNarrowPhase();
+		}
+	}
+}//End of NarrowPhase interface
\ No newline at end of file
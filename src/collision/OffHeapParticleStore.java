@@ -0,0 +1,323 @@
+package collision;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * <b>OffHeapParticleStore class</b>
+ * <p>
+ * Holds the state of every ball in native memory instead of on the Java heap, for
+ * worlds of tens of millions of balls.
+ * <p>
+ * The layout is the same structure of arrays as ParticleStore: the centers,
+ * speeds, radii and masses each live in their own segment of doubles, and ball i
+ * is the i-th double of every segment. The ball's type and the image it shows
+ * are packed into a single byte tag per ball (MONSTER_BIT and ALTERNATE_BIT)
+ * rather than a type array and a boolean array, and there are no CollisionObject
+ * views. A ball therefore costs 49 bytes of native memory and nothing on the
+ * heap, so the heap stays the same size and the garbage collector has nothing
+ * more to trace however many balls there are.
+ * <p>
+ * Every segment belongs to one ResourceScope (the Java 17 incubator's version of
+ * an arena), which is freed all at once by close. The memory is not freed by the
+ * garbage collector, so a store must be closed once it is no longer needed, and
+ * must not be used afterwards. The scope is shared, so the store can be used from
+ * any thread, though like ParticleStore it is not safe to change from two
+ * threads at once. Growing the store copies it into a new scope and closes the
+ * old one.
+ * <p>
+ * Balls are read and written through the static MemoryAccess methods, which
+ * compile down to plain loads and stores of primitives, so loops over the store
+ * never box. The loops that need speed (see OffHeapSimulation) use the segments
+ * directly.
+ * <p>
+ * Needs the jdk.incubator.foreign module (--add-modules jdk.incubator.foreign).
+ * Native segments count towards the JVM's direct memory limit, which defaults to
+ * the maximum heap size, so a large world with a small heap also needs
+ * -XX:MaxDirectMemorySize.
+ */
+public class OffHeapParticleStore implements AutoCloseable {
+
+	/**
+	 * Set in a ball's tag if it is a CollisionMonster ball
+	 */
+	public static final byte MONSTER_BIT = 1;
+
+	/**
+	 * Set in a ball's tag while a CollisionMonster ball shows its other image
+	 */
+	public static final byte ALTERNATE_BIT = 2;
+
+	private final int INITIAL_CAPACITY = 64;
+
+	private ResourceScope scope;
+	MemorySegment x;
+	MemorySegment y;
+	MemorySegment vx;
+	MemorySegment vy;
+	MemorySegment radius;
+	MemorySegment mass;
+	MemorySegment tag;
+	private int capacity;
+	private int size;
+
+	/**
+	 * Constructs an empty store.
+	 */
+	public OffHeapParticleStore() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Constructs an empty store with room for a number of balls.
+	 * @param initialCapacity - the number of balls to make room for
+	 */
+	public OffHeapParticleStore(int initialCapacity) {
+		allocate(Math.max(1, initialCapacity));
+	}
+
+	/**
+	 * <b>copyOf</b>
+	 * <p>
+	 * Copies every ball of a ParticleStore into a new off-heap store.
+	 * @param store - the balls to copy
+	 * @return the new store
+	 */
+	public static OffHeapParticleStore copyOf(ParticleStore store) {
+		OffHeapParticleStore copy = new OffHeapParticleStore(store.size());
+		for(int i = 0; i < store.size(); i++) {
+			copy.add(store.x[i], store.y[i], store.vx[i], store.vy[i], store.radius[i], store.mass[i], store.kind[i]);
+			if(store.alternate[i]) {
+				copy.toggleImage(i);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * <b>add</b>
+	 * <p>
+	 * Adds a ball to the end of the store.
+	 * @param centerX - the x position of the ball's center
+	 * @param centerY - the y position of the ball's center
+	 * @param xSpeed - the horizontal speed of the ball
+	 * @param ySpeed - the vertical speed of the ball
+	 * @param ballRadius - the radius of the ball
+	 * @param ballMass - the mass of the ball
+	 * @param type - the type of ball, ParticleStore.NORMAL or ParticleStore.MONSTER
+	 * @return the index of the new ball
+	 */
+	public int add(double centerX, double centerY, double xSpeed, double ySpeed,
+				   double ballRadius, double ballMass, byte type) {
+		ensureCapacity(size + 1);
+		MemoryAccess.setDoubleAtIndex(x, size, centerX);
+		MemoryAccess.setDoubleAtIndex(y, size, centerY);
+		MemoryAccess.setDoubleAtIndex(vx, size, xSpeed);
+		MemoryAccess.setDoubleAtIndex(vy, size, ySpeed);
+		MemoryAccess.setDoubleAtIndex(radius, size, ballRadius);
+		MemoryAccess.setDoubleAtIndex(mass, size, ballMass);
+		MemoryAccess.setByteAtOffset(tag, size, type == ParticleStore.MONSTER ? MONSTER_BIT : 0);
+		return size++;
+	}
+
+	/**
+	 * <b>remove</b>
+	 * <p>
+	 * Removes a ball by moving the last ball into its slot.
+	 * @param i - the index of the ball to remove
+	 */
+	public void remove(int i) {
+		if(i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("No ball at index " + i);
+		}
+		int last = --size;
+		if(i != last) {
+			MemoryAccess.setDoubleAtIndex(x, i, MemoryAccess.getDoubleAtIndex(x, last));
+			MemoryAccess.setDoubleAtIndex(y, i, MemoryAccess.getDoubleAtIndex(y, last));
+			MemoryAccess.setDoubleAtIndex(vx, i, MemoryAccess.getDoubleAtIndex(vx, last));
+			MemoryAccess.setDoubleAtIndex(vy, i, MemoryAccess.getDoubleAtIndex(vy, last));
+			MemoryAccess.setDoubleAtIndex(radius, i, MemoryAccess.getDoubleAtIndex(radius, last));
+			MemoryAccess.setDoubleAtIndex(mass, i, MemoryAccess.getDoubleAtIndex(mass, last));
+			MemoryAccess.setByteAtOffset(tag, i, MemoryAccess.getByteAtOffset(tag, last));
+		}
+	}
+
+	/**
+	 * <b>clear</b>
+	 * <p>
+	 * Removes every ball from the store, keeping its memory.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * <b>ensureCapacity</b>
+	 * <p>
+	 * Grows the segments so that they can hold at least the given number of balls.
+	 * @param minimum - the number of balls the store must be able to hold
+	 */
+	public void ensureCapacity(int minimum) {
+		if(minimum <= capacity) {
+			return;
+		}
+		ResourceScope oldScope = scope;
+		MemorySegment[] old = {x, y, vx, vy, radius, mass, tag};
+		allocate(Math.max(minimum, capacity*2));
+		MemorySegment[] grown = {x, y, vx, vy, radius, mass, tag};
+		for(int k = 0; k < old.length; k++) {
+			long used = k == old.length - 1 ? size : (long) size*Double.BYTES;//the tags are bytes
+			grown[k].asSlice(0, used).copyFrom(old[k].asSlice(0, used));
+		}
+		oldScope.close();
+	}
+
+	/**
+	 * <b>allocate</b>
+	 * <p>
+	 * Allocates new segments for a number of balls in a new scope. The old
+	 * segments are left for the caller to copy and free.
+	 * @param newCapacity - the number of balls to make room for
+	 */
+	private void allocate(int newCapacity) {
+		scope = ResourceScope.newSharedScope();
+		long doubles = (long) newCapacity*Double.BYTES;
+		x = MemorySegment.allocateNative(doubles, Double.BYTES, scope);
+		y = MemorySegment.allocateNative(doubles, Double.BYTES, scope);
+		vx = MemorySegment.allocateNative(doubles, Double.BYTES, scope);
+		vy = MemorySegment.allocateNative(doubles, Double.BYTES, scope);
+		radius = MemorySegment.allocateNative(doubles, Double.BYTES, scope);
+		mass = MemorySegment.allocateNative(doubles, Double.BYTES, scope);
+		tag = MemorySegment.allocateNative(newCapacity, 1, scope);
+		capacity = newCapacity;
+	}
+
+	/**
+	 * <b>close</b>
+	 * <p>
+	 * Frees the store's native memory. The store must not be used afterwards.
+	 */
+	public void close() {
+		if(scope.isAlive()) {
+			scope.close();
+		}
+		size = 0;
+		capacity = 0;
+	}
+
+	/**
+	 * <b>toggleImage</b>
+	 * <p>
+	 * Switches the image a CollisionMonster ball is showing. Has no effect on
+	 * regular balls.
+	 * @param i - the index of the ball
+	 */
+	public void toggleImage(int i) {
+		byte bits = MemoryAccess.getByteAtOffset(tag, i);
+		if((bits & MONSTER_BIT) != 0) {
+			MemoryAccess.setByteAtOffset(tag, i, (byte) (bits ^ ALTERNATE_BIT));
+		}
+	}
+
+	/**
+	 * <b>getX</b>
+	 * <p>
+	 * @param i - the index of the ball
+	 * @return the x position of the ball's center
+	 */
+	public double getX(int i) {
+		return MemoryAccess.getDoubleAtIndex(x, i);
+	}
+
+	/**
+	 * <b>getY</b>
+	 * <p>
+	 * @param i - the index of the ball
+	 * @return the y position of the ball's center
+	 */
+	public double getY(int i) {
+		return MemoryAccess.getDoubleAtIndex(y, i);
+	}
+
+	/**
+	 * <b>getXSpeed</b>
+	 * <p>
+	 * @param i - the index of the ball
+	 * @return the horizontal speed of the ball
+	 */
+	public double getXSpeed(int i) {
+		return MemoryAccess.getDoubleAtIndex(vx, i);
+	}
+
+	/**
+	 * <b>getYSpeed</b>
+	 * <p>
+	 * @param i - the index of the ball
+	 * @return the vertical speed of the ball
+	 */
+	public double getYSpeed(int i) {
+		return MemoryAccess.getDoubleAtIndex(vy, i);
+	}
+
+	/**
+	 * <b>getRadius</b>
+	 * <p>
+	 * @param i - the index of the ball
+	 * @return the radius of the ball
+	 */
+	public double getRadius(int i) {
+		return MemoryAccess.getDoubleAtIndex(radius, i);
+	}
+
+	/**
+	 * <b>getMass</b>
+	 * <p>
+	 * @param i - the index of the ball
+	 * @return the mass of the ball
+	 */
+	public double getMass(int i) {
+		return MemoryAccess.getDoubleAtIndex(mass, i);
+	}
+
+	/**
+	 * <b>getTag</b>
+	 * <p>
+	 * @param i - the index of the ball
+	 * @return the ball's tag: MONSTER_BIT and ALTERNATE_BIT
+	 */
+	public byte getTag(int i) {
+		return MemoryAccess.getByteAtOffset(tag, i);
+	}
+
+	/**
+	 * <b>getSprite</b>
+	 * <p>
+	 * @param i - the index of the ball
+	 * @return the image the ball is currently showing, SpriteCache.SUPERMAN or
+	 * SpriteCache.BATMAN
+	 */
+	public int getSprite(int i) {
+		int bits = MemoryAccess.getByteAtOffset(tag, i);
+		return (bits & (MONSTER_BIT | ALTERNATE_BIT)) == (MONSTER_BIT | ALTERNATE_BIT)
+				? SpriteCache.BATMAN : SpriteCache.SUPERMAN;
+	}
+
+	/**
+	 * <b>size</b>
+	 * <p>
+	 * @return size - the number of balls in the store
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * <b>getCapacity</b>
+	 * <p>
+	 * @return capacity - the number of balls the store can hold before growing
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+}//End of OffHeapParticleStore class
\ No newline at end of file
@@ -0,0 +1,72 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * <b>PairList class</b>
+ * <p>
+ * A growable list of candidate ball pairs produced by a broad phase.
+ * <p>
+ * The two members of each pair are kept in parallel int arrays so that the list
+ * can be reused every tick without allocating a new object per pair.
+ */
+public class PairList {
+	int[] first = new int[64];
+	int[] second = new int[64];
+	private int size;
+
+	/**
+	 * <b>add</b>
+	 * <p>
+	 * Adds a pair to the end of the list.
+	 * @param a - the index of the first ball
+	 * @param b - the index of the second ball
+	 */
+	public void add(int a, int b) {
+		if(size == first.length) {
+			first = Arrays.copyOf(first, size*2);
+			second = Arrays.copyOf(second, size*2);
+		}
+		first[size] = a;
+		second[size] = b;
+		size++;
+	}
+
+	/**
+	 * <b>clear</b>
+	 * <p>
+	 * Empties the list while keeping its storage.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * <b>size</b>
+	 * <p>
+	 * @return size - the number of pairs in the list
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * <b>getFirst</b>
+	 * <p>
+	 * @param i - the position of the pair in the list
+	 * @return the index of the first ball of the pair
+	 */
+	public int getFirst(int i) {
+		return first[i];
+	}
+
+	/**
+	 * <b>getSecond</b>
+	 * <p>
+	 * @param i - the position of the pair in the list
+	 * @return the index of the second ball of the pair
+	 */
+	public int getSecond(int i) {
+		return second[i];
+	}
+}//End of PairList class
\ No newline at end of file
@@ -0,0 +1,186 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * <b>ParticleStore class</b>
+ * <p>
+ * Holds the state of every ball in the simulation as a structure of arrays.
+ * <p>
+ * Each property (center position, speed, radius, mass, ball type and image state)
+ * is kept in its own primitive array, and ball i is the i-th entry of every array.
+ * This lets the movement and collision loops read straight through contiguous 
+ * memory instead of following a reference to a separate object for every ball.
+ * The arrays are package-private for that reason and must not be cached by 
+ * callers across an add, since they are replaced when the store grows.
+ * <p>
+ * The store starts small and doubles its capacity whenever it fills up. Balls are
+ * removed by moving the last ball into the freed slot, so removal is O(1) but 
+ * changes the index of the moved ball. Any CollisionObject view attached to the
+ * moved ball is told its new index.
+ */
+public class ParticleStore {
+	
+	/**
+	 * Type of a regular ball
+	 */
+	public static final byte NORMAL = 0;
+	
+	/**
+	 * Type of a CollisionMonster ball
+	 */
+	public static final byte MONSTER = 1;
+	
+	private final int INITIAL_CAPACITY = 64;
+	
+	double[] x = new double[INITIAL_CAPACITY];
+	double[] y = new double[INITIAL_CAPACITY];
+	double[] vx = new double[INITIAL_CAPACITY];
+	double[] vy = new double[INITIAL_CAPACITY];
+	double[] radius = new double[INITIAL_CAPACITY];
+	double[] mass = new double[INITIAL_CAPACITY];
+	byte[] kind = new byte[INITIAL_CAPACITY];
+	boolean[] alternate = new boolean[INITIAL_CAPACITY];
+	private CollisionObject[] views = new CollisionObject[INITIAL_CAPACITY];
+	int size;
+	
+	/**
+	 * <b>add</b>
+	 * <p>
+	 * Adds a ball to the end of the store.
+	 * @param centerX - the x position of the ball's center
+	 * @param centerY - the y position of the ball's center
+	 * @param xSpeed - the horizontal speed of the ball
+	 * @param ySpeed - the vertical speed of the ball
+	 * @param ballRadius - the radius of the ball
+	 * @param ballMass - the mass of the ball
+	 * @param type - the type of ball, NORMAL or MONSTER
+	 * @return the index of the new ball
+	 */
+	public int add(double centerX, double centerY, double xSpeed, double ySpeed,
+				   double ballRadius, double ballMass, byte type) {
+		ensureCapacity(size + 1);
+		x[size] = centerX;
+		y[size] = centerY;
+		vx[size] = xSpeed;
+		vy[size] = ySpeed;
+		radius[size] = ballRadius;
+		mass[size] = ballMass;
+		kind[size] = type;
+		alternate[size] = false;
+		views[size] = null;
+		return size++;
+	}
+	
+	/**
+	 * <b>remove</b>
+	 * <p>
+	 * Removes a ball by moving the last ball into its slot.
+	 * @param i - the index of the ball to remove
+	 */
+	public void remove(int i) {
+		if(i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("No ball at index " + i);
+		}
+		int last = --size;
+		if(views[i] != null) {
+			views[i].setIndex(-1);
+		}
+		if(i != last) {
+			x[i] = x[last];
+			y[i] = y[last];
+			vx[i] = vx[last];
+			vy[i] = vy[last];
+			radius[i] = radius[last];
+			mass[i] = mass[last];
+			kind[i] = kind[last];
+			alternate[i] = alternate[last];
+			views[i] = views[last];
+			if(views[i] != null) {
+				views[i].setIndex(i);
+			}
+		}
+		views[last] = null;
+	}
+	
+	/**
+	 * <b>clear</b>
+	 * <p>
+	 * Removes every ball from the store.
+	 */
+	public void clear() {
+		for(int i = 0; i < size; i++) {
+			if(views[i] != null) {
+				views[i].setIndex(-1);
+				views[i] = null;
+			}
+		}
+		size = 0;
+	}
+	
+	/**
+	 * <b>ensureCapacity</b>
+	 * <p>
+	 * Grows the arrays so that they can hold at least the given number of balls.
+	 * @param capacity - the number of balls the store must be able to hold
+	 */
+	public void ensureCapacity(int capacity) {
+		if(capacity <= x.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, x.length*2);
+		x = Arrays.copyOf(x, newCapacity);
+		y = Arrays.copyOf(y, newCapacity);
+		vx = Arrays.copyOf(vx, newCapacity);
+		vy = Arrays.copyOf(vy, newCapacity);
+		radius = Arrays.copyOf(radius, newCapacity);
+		mass = Arrays.copyOf(mass, newCapacity);
+		kind = Arrays.copyOf(kind, newCapacity);
+		alternate = Arrays.copyOf(alternate, newCapacity);
+		views = Arrays.copyOf(views, newCapacity);
+	}
+	
+	/**
+	 * <b>toggleImage</b>
+	 * <p>
+	 * Switches the image a CollisionMonster ball is showing. Has no effect on
+	 * regular balls.
+	 * @param i - the index of the ball
+	 */
+	public void toggleImage(int i) {
+		if(kind[i] == MONSTER) {
+			alternate[i] = !alternate[i];
+		}
+	}
+	
+	/**
+	 * <b>attach</b>
+	 * <p>
+	 * Records the view object for a ball so that it can be kept up to date when
+	 * balls are removed.
+	 * @param i - the index of the ball
+	 * @param view - the view of the ball
+	 */
+	void attach(int i, CollisionObject view) {
+		views[i] = view;
+	}
+	
+	/**
+	 * <b>getView</b>
+	 * <p>
+	 * @param i - the index of the ball
+	 * @return the view attached to the ball, or null if it has none
+	 */
+	public CollisionObject getView(int i) {
+		return views[i];
+	}
+	
+	/**
+	 * <b>size</b>
+	 * <p>
+	 * @return size - the number of balls in the store
+	 */
+	public int size() {
+		return size;
+	}
+}//End of ParticleStore class
\ No newline at end of file
@@ -0,0 +1,64 @@
+package collision;
+
+/**
+ * <b>PhaseStats class</b>
+ * <p>
+ * A summary of a LatencyHistogram at one moment: how many times a phase ran and
+ * how long it took, in nanoseconds. Published over JMX by TickMetrics.
+ */
+public class PhaseStats {
+	private final long count;
+	private final double mean;
+	private final long median;
+	private final long p90;
+	private final long p99;
+	private final long p999;
+	private final long max;
+	
+	/**
+	 * Constructs a summary of a histogram.
+	 * @param histogram - the histogram to summarise
+	 */
+	public PhaseStats(LatencyHistogram histogram) {
+		count = histogram.getCount();
+		mean = histogram.getMean();
+		median = histogram.getPercentile(50);
+		p90 = histogram.getPercentile(90);
+		p99 = histogram.getPercentile(99);
+		p999 = histogram.getPercentile(99.9);
+		max = histogram.getMax();
+	}
+	
+	public long getCount() {
+		return count;
+	}
+	
+	public double getMean() {
+		return mean;
+	}
+	
+	public long getMedian() {
+		return median;
+	}
+	
+	public long getP90() {
+		return p90;
+	}
+	
+	public long getP99() {
+		return p99;
+	}
+	
+	public long getP999() {
+		return p999;
+	}
+	
+	public long getMax() {
+		return max;
+	}
+	
+	public String toString() {
+		return String.format("n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus", 
+							 count, mean/1e3, median/1e3, p99/1e3, max/1e3);
+	}
+}//End of PhaseStats class
\ No newline at end of file
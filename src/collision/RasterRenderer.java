@@ -0,0 +1,328 @@
+package collision;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <b>RasterRenderer class</b>
+ * <p>
+ * Draws a FrameSnapshot of a very large number of balls by writing pixels
+ * straight into the int array behind a BufferedImage, instead of drawing a sprite
+ * per ball.
+ * <p>
+ * Once there are tens of thousands of balls their sprites overlap into noise and
+ * the drawImage calls take most of the frame. This renderer gives up the detail:
+ * in DOTS mode each ball is a single pixel at its center in its image's colour,
+ * and in HEATMAP mode the view is divided into CELL by CELL pixel cells, each
+ * coloured by how many balls are in it (on a log scale, so that both sparse and
+ * crowded areas stay readable). AUTO uses dots while there are fewer balls than a
+ * tenth of the view's pixels and the heatmap beyond that. Balls are placed
+ * between their previous and current positions as in SpriteRenderer.
+ * <p>
+ * A frame is drawn in three parallel passes on the common ForkJoinPool. The view
+ * is split into bands of rows. The first pass works out the pixel each ball lands
+ * on, in chunks of CHUNK balls, and counts how many balls of each chunk land in
+ * each band. From those counts every chunk is given its own run of slots in each
+ * band's part of a single list of ball indices, and the second pass fills those
+ * slots in, sorting the balls by band (a counting sort that keeps the balls of a
+ * band in index order). The third lets each band clear its rows and draw only its
+ * own balls, so that no two threads ever write the same pixel (or heatmap cell,
+ * as bands are whole rows of cells) and the whole frame reads every ball just
+ * once. The finished image is copied to the screen with a single drawImage.
+ */
+public class RasterRenderer {
+
+	/**
+	 * Picks dots or heatmap from the number of balls
+	 */
+	public static final int AUTO = 0;
+
+	/**
+	 * One pixel per ball
+	 */
+	public static final int DOTS = 1;
+
+	/**
+	 * The number of balls per cell
+	 */
+	public static final int HEATMAP = 2;
+
+	/**
+	 * The width and height in pixels of a heatmap cell
+	 */
+	public static final int CELL = 4;
+
+	//The number of balls whose pixels are found by one task
+	private static final int CHUNK = 1 << 14;
+	//The passes of a RasterTask
+	private static final int LOCATE = 0;
+	private static final int SORT = 1;
+	private static final int DRAW = 2;
+	//The balls per pixel above which AUTO switches to the heatmap
+	private static final double HEATMAP_DENSITY = 0.1;
+	//A cell holding this many balls or more gets the darkest colour
+	private static final int HEAT_FULL = 256;
+	private static final int[] HEAT = heatColours();
+	private static final int SUPERMAN_RGB = 0x2050C0;
+	private static final int BATMAN_RGB = 0x202020;
+
+	private final int mode;
+	private BufferedImage image;
+	private int[] pixels;
+	private int width;
+	private int height;
+	private int cellColumns;
+	private int[] cellCounts = new int[0];
+	private int[] pixelX = new int[0];
+	private int[] pixelY = new int[0];
+	//Ball indices sorted by band, and where each band's indices start
+	private int[] order = new int[0];
+	private int[] bandStart = new int[1];
+	//Balls of each chunk in each band, then the chunk's next slot in order
+	private int[] chunkSlots = new int[0];
+
+	//The frame being drawn, read by the tasks
+	private FrameSnapshot snapshot;
+	private float alpha;
+	private boolean heatmap;
+	private int background;
+	private int bandRows;
+	private int bands;
+
+	/**
+	 * Constructs a renderer.
+	 * @param mode - AUTO, DOTS or HEATMAP
+	 */
+	public RasterRenderer(int mode) {
+		if(mode != AUTO && mode != DOTS && mode != HEATMAP) {
+			throw new IllegalArgumentException("Unknown raster mode: " + mode);
+		}
+		this.mode = mode;
+	}
+
+	/**
+	 * <b>paint</b>
+	 * <p>
+	 * Draws a frame showing every ball in the snapshot.
+	 * @param component - the component being painted
+	 * @param page - the component's graphics
+	 * @param frame - the balls to draw
+	 */
+	public void paint(Component component, Graphics page, FrameSnapshot frame) {
+		int newWidth = component.getWidth();
+		int newHeight = component.getHeight();
+		if(newWidth <= 0 || newHeight <= 0) {
+			return;
+		}
+		if(image == null || newWidth != width || newHeight != height) {
+			width = newWidth;
+			height = newHeight;
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			cellColumns = (width + CELL - 1)/CELL;
+			cellCounts = new int[cellColumns*((height + CELL - 1)/CELL)];
+		}
+		int count = frame.count;
+		if(pixelX.length < count) {
+			pixelX = new int[Math.max(count, pixelX.length*2)];
+			pixelY = new int[pixelX.length];
+			order = new int[pixelX.length];
+		}
+		snapshot = frame;
+		alpha = frame.getAlpha(System.nanoTime());
+		heatmap = mode == HEATMAP || (mode == AUTO && count > HEATMAP_DENSITY*width*height);
+		background = component.getBackground().getRGB();
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		int rowsOfCells = (height + CELL - 1)/CELL;
+		bands = Math.max(1, Math.min(rowsOfCells, 2*parallelism));
+		bandRows = ((rowsOfCells + bands - 1)/bands)*CELL;
+		bands = (height + bandRows - 1)/bandRows;
+		int chunks = (count + CHUNK - 1)/CHUNK;
+		if(chunkSlots.length < chunks*bands) {
+			chunkSlots = new int[chunks*bands];
+		}
+		if(bandStart.length < bands + 1) {
+			bandStart = new int[bands + 1];
+		}
+		ForkJoinPool.commonPool().invoke(new RasterTask(LOCATE, 0, chunks));
+		int next = 0;
+		for(int band = 0; band < bands; band++) {
+			bandStart[band] = next;
+			for(int chunk = 0; chunk < chunks; chunk++) {
+				int balls = chunkSlots[chunk*bands + band];
+				chunkSlots[chunk*bands + band] = next;
+				next += balls;
+			}
+		}
+		bandStart[bands] = next;
+		ForkJoinPool.commonPool().invoke(new RasterTask(SORT, 0, chunks));
+		ForkJoinPool.commonPool().invoke(new RasterTask(DRAW, 0, bands));
+		snapshot = null;
+		page.drawImage(image, 0, 0, null);
+	}
+
+	/**
+	 * <b>locate</b>
+	 * <p>
+	 * Works out the pixel that the center of each ball in one chunk lands on,
+	 * between its previous and current position, and counts the chunk's balls in
+	 * each band. Balls outside the view get a vertical pixel of -1.
+	 * @param chunk - the number of the chunk
+	 */
+	private void locate(int chunk) {
+		FrameSnapshot frame = snapshot;
+		float[] x = frame.x;
+		float[] y = frame.y;
+		float[] previousX = frame.previousX;
+		float[] previousY = frame.previousY;
+		short[] sizes = frame.size;
+		int previousCount = alpha < 1 ? frame.previousCount : 0;
+		int from = chunk*CHUNK;
+		int to = Math.min(frame.count, from + CHUNK);
+		int counts = chunk*bands;
+		Arrays.fill(chunkSlots, counts, counts + bands, 0);
+		for(int i = from; i < to; i++) {
+			float half = sizes[i]*0.5f;
+			float ballX = x[i];
+			float ballY = y[i];
+			if(i < previousCount) {
+				ballX = previousX[i] + (ballX - previousX[i])*alpha;
+				ballY = previousY[i] + (ballY - previousY[i])*alpha;
+			}
+			int px = (int) Math.floor(ballX + half);
+			int py = (int) Math.floor(ballY + half);
+			pixelX[i] = px;
+			if(px >= 0 && px < width && py >= 0 && py < height) {
+				pixelY[i] = py;
+				chunkSlots[counts + py/bandRows]++;
+			}
+			else {
+				pixelY[i] = -1;
+			}
+		}
+	}
+
+	/**
+	 * <b>sort</b>
+	 * <p>
+	 * Puts the index of each ball in one chunk that is in the view into the next
+	 * of the chunk's slots for its band.
+	 * @param chunk - the number of the chunk
+	 */
+	private void sort(int chunk) {
+		int from = chunk*CHUNK;
+		int to = Math.min(snapshot.count, from + CHUNK);
+		int slots = chunk*bands;
+		for(int i = from; i < to; i++) {
+			int py = pixelY[i];
+			if(py >= 0) {
+				order[chunkSlots[slots + py/bandRows]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * <b>drawBand</b>
+	 * <p>
+	 * Clears one band of rows and draws the balls that were sorted into it.
+	 * @param band - the number of the band
+	 */
+	private void drawBand(int band) {
+		int top = band*bandRows;
+		int bottom = Math.min(height, top + bandRows);
+		int first = bandStart[band];
+		int last = bandStart[band + 1];
+		if(!heatmap) {
+			byte[] sprites = snapshot.sprite;
+			Arrays.fill(pixels, top*width, bottom*width, background);
+			for(int k = first; k < last; k++) {
+				int i = order[k];
+				pixels[pixelY[i]*width + pixelX[i]] = sprites[i] == SpriteCache.BATMAN ? BATMAN_RGB : SUPERMAN_RGB;
+			}
+			return;
+		}
+		int cellTop = top/CELL;
+		int cellBottom = (bottom + CELL - 1)/CELL;
+		Arrays.fill(cellCounts, cellTop*cellColumns, cellBottom*cellColumns, 0);
+		for(int k = first; k < last; k++) {
+			int i = order[k];
+			cellCounts[(pixelY[i]/CELL)*cellColumns + pixelX[i]/CELL]++;
+		}
+		for(int row = top; row < bottom; row++) {
+			int cellRow = (row/CELL)*cellColumns;
+			int offset = row*width;
+			for(int column = 0; column < width; column++) {
+				int balls = cellCounts[cellRow + column/CELL];
+				pixels[offset + column] = balls == 0 ? background : HEAT[Math.min(balls, HEAT_FULL)];
+			}
+		}
+	}
+
+	/**
+	 * <b>heatColours</b>
+	 * <p>
+	 * Builds the colour for every number of balls in a cell, from pale yellow for
+	 * one ball through orange to dark red for HEAT_FULL or more, evenly spaced on
+	 * a log scale.
+	 * @return the colours, indexed by the number of balls
+	 */
+	private static int[] heatColours() {
+		int[] colours = new int[HEAT_FULL + 1];
+		Color light = new Color(255, 240, 160);
+		Color middle = new Color(240, 120, 30);
+		Color dark = new Color(120, 0, 20);
+		for(int balls = 1; balls <= HEAT_FULL; balls++) {
+			double t = Math.log(balls)/Math.log(HEAT_FULL);
+			Color from = t < 0.5 ? light : middle;
+			Color to = t < 0.5 ? middle : dark;
+			double s = t < 0.5 ? t*2 : t*2 - 1;
+			int r = (int) Math.round(from.getRed() + (to.getRed() - from.getRed())*s);
+			int g = (int) Math.round(from.getGreen() + (to.getGreen() - from.getGreen())*s);
+			int b = (int) Math.round(from.getBlue() + (to.getBlue() - from.getBlue())*s);
+			colours[balls] = (r << 16) | (g << 8) | b;
+		}
+		return colours;
+	}
+
+	/**
+	 * <b>RasterTask Class</b>
+	 * <p>
+	 * Locates or sorts a range of chunks of balls, or draws a range of bands,
+	 * splitting the range in half until each task has a single chunk or band.
+	 */
+	private class RasterTask extends RecursiveAction {
+		private final int pass;
+		private final int from;
+		private final int to;
+
+		RasterTask(int pass, int from, int to) {
+			this.pass = pass;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if(to - from == 1) {
+				if(pass == LOCATE) {
+					locate(from);
+				}
+				else if(pass == SORT) {
+					sort(from);
+				}
+				else {
+					drawBand(from);
+				}
+			}
+			else if(to > from) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RasterTask(pass, from, middle), new RasterTask(pass, middle, to));
+			}
+		}
+	}
+}//End of RasterRenderer class
\ No newline at end of file
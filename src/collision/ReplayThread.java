@@ -0,0 +1,129 @@
+package collision;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <b>ReplayThread class</b>
+ * <p>
+ * Plays back a recording made by a TrajectoryRecorder, publishing one frame every
+ * tick period through a SnapshotExchange, just as a SimulationThread does after
+ * each step. The renderer cannot tell the two apart, but no physics is run.
+ * <p>
+ * When the end of the recording is reached, playback starts again from the
+ * beginning. Other threads can jump to any tick with seek.
+ */
+public class ReplayThread implements Runnable {
+	//Set in pendingSeek when there is no seek waiting
+	private static final long NO_SEEK = Long.MIN_VALUE;
+
+	private final TrajectoryReader reader;
+	private final SnapshotExchange exchange;
+	private final long tickNanos;
+	private volatile long pendingSeek = NO_SEEK;
+	private volatile long currentTick;
+	private volatile boolean running;
+	private Thread thread;
+
+	/**
+	 * Constructs a replay thread for a recording.
+	 * @param reader - the recording to play
+	 * @param exchange - where to publish frames
+	 * @param tickNanos - the time between frames in nanoseconds
+	 */
+	public ReplayThread(TrajectoryReader reader, SnapshotExchange exchange, long tickNanos) {
+		this.reader = reader;
+		this.exchange = exchange;
+		this.tickNanos = tickNanos;
+		currentTick = reader.getFirstTick();
+	}
+
+	/**
+	 * <b>start</b>
+	 * <p>
+	 * Starts playback if it is not already running.
+	 */
+	public synchronized void start() {
+		if(thread != null) {
+			return;
+		}
+		running = true;
+		thread = new Thread(this, "replay");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * <b>stop</b>
+	 * <p>
+	 * Stops playback and waits for the thread to finish.
+	 */
+	public synchronized void stop() {
+		if(thread == null) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	/**
+	 * <b>seek</b>
+	 * <p>
+	 * Jumps to a tick before the next frame is shown. Ticks outside the recording
+	 * are moved to its first or last frame.
+	 * @param tick - the tick to jump to
+	 */
+	public void seek(long tick) {
+		pendingSeek = Math.max(reader.getFirstTick(), Math.min(tick, reader.getLastTick()));
+	}
+
+	/**
+	 * <b>getTick</b>
+	 * <p>
+	 * @return the tick of the frame shown most recently
+	 */
+	public long getTick() {
+		return currentTick;
+	}
+
+	public void run() {
+		long next = System.nanoTime();
+		try {
+			while(running) {
+				long seekTo = pendingSeek;
+				if(seekTo != NO_SEEK) {
+					pendingSeek = NO_SEEK;
+					reader.seek(seekTo);
+				}
+				FrameSnapshot snapshot = exchange.getBack();
+				if(!reader.next(snapshot)) {
+					reader.seek(reader.getFirstTick());
+					if(!reader.next(snapshot)) {
+						return;//an empty recording
+					}
+				}
+				currentTick = snapshot.getTick();
+				exchange.publish();
+				next += tickNanos;
+				long wait = next - System.nanoTime();
+				if(wait < -100*tickNanos) {
+					next = System.nanoTime();//too far behind to catch up
+				}
+				while(running && wait > 0) {
+					LockSupport.parkNanos(wait);
+					wait = next - System.nanoTime();
+				}
+			}
+		}
+		catch(IOException e) {
+			System.err.println("Replay stopped: " + e);
+		}
+	}
+}//End of ReplayThread class
\ No newline at end of file
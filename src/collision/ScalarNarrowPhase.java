@@ -0,0 +1,19 @@
+package collision;
+
+/**
+ * <b>ScalarNarrowPhase class</b>
+ * <p>
+ * Checks the candidate pairs one at a time with SimulationEngine.collidePair.
+ * Always available, and the reference the other narrow phases must agree with.
+ */
+public class ScalarNarrowPhase implements NarrowPhase {
+	public int collide(SimulationEngine engine, PairList pairs, double dt, ConservationCounter counter) {
+		int contacts = 0;
+		for(int p = 0; p < pairs.size(); p++) {
+			if(engine.collidePair(pairs.getFirst(p), pairs.getSecond(p), dt, counter)) {
+				contacts++;
+			}
+		}
+		return contacts;
+	}
+}//End of ScalarNarrowPhase class
\ No newline at end of file
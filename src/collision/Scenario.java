@@ -0,0 +1,642 @@
+package collision;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * <b>Scenario class</b>
+ * <p>
+ * Describes how to fill a world with balls, so that large worlds can be set up in
+ * one go and the same world can be set up again from its seed.
+ * <p>
+ * A scenario is a list of groups of balls. Each group is laid out in one of three
+ * ways inside its region of the world (the whole world by default):
+ * <ul>
+ * <li>lattice - evenly spaced rows and columns filling the region</li>
+ * <li>gas - scattered at random over the region</li>
+ * <li>clustered - gathered in a number of round clusters at random places</li>
+ * </ul>
+ * Every ball in a group starts with the group's drift velocity (vx, vy) plus a
+ * random velocity of up to the group's speed in a random direction, and is a
+ * CollisionMonster ball with the probability given by the group's monsters
+ * fraction. All the balls of a group have the group's radius (the default ball
+ * size unless set), and their mass grows with their area: a ball of the default
+ * size weighs 1, or 2 for a CollisionMonster ball. Groups with different layouts,
+ * fractions and sizes can be mixed freely.
+ * <p>
+ * Balls never start out overlapping each other or touching a wall. Scattered and
+ * clustered balls are placed on a grid of cells a little more than a diameter
+ * and a half of the smallest balls wide, at most one per cell and at a random 
+ * spot inside it, so placing a ball only has to check its own cell. A lattice, and
+ * any ball too large for a cell, marks every cell it touches, so later balls keep
+ * clear of it; large scattered and clustered balls are placed by trying random
+ * spots until one is clear. The balls are written straight into the engine's
+ * ParticleStore after growing it once, without creating a view object for each,
+ * so a million balls are set up in about a second.
+ * <p>
+ * Scenarios can be built in code, picked by name (see named) or loaded from a
+ * properties file (see load).
+ */
+public class Scenario {
+	//Keeps balls from starting exactly on a wall or on each other
+	private static final double CLEARANCE = 1;
+	//The fewest placement cells (or large balls) a group's region is given across, each way
+	private static final int MIN_REGION_CELLS = 3;
+
+	private final long seed;
+	private final List<Group> groups = new ArrayList<Group>();
+	private double width;
+	private double height;
+
+	/**
+	 * Constructs an empty scenario.
+	 * @param seed - the seed of every random choice made while placing the balls
+	 */
+	public Scenario(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * <b>named</b>
+	 * <p>
+	 * Creates one of the built in scenarios: lattice, gas or clustered (every ball
+	 * laid out that way) or mixed (a third of the balls each way, side by side).
+	 * One ball in ten is a CollisionMonster ball, one in four in mixed.
+	 * @param name - the name of the scenario
+	 * @param balls - the number of balls
+	 * @param seed - the seed of the random choices
+	 * @return the scenario
+	 */
+	public static Scenario named(String name, int balls, long seed) {
+		Scenario scenario = new Scenario(seed);
+		switch(name) {
+			case "lattice":
+				scenario.add(new Group("lattice", balls).velocity(0, 0, 2).monsters(0.1));
+				break;
+			case "gas":
+				scenario.add(new Group("gas", balls).velocity(0, 0, 2).monsters(0.1));
+				break;
+			case "clustered":
+				scenario.add(new Group("clustered", balls).velocity(0, 0, 1).monsters(0.1));
+				break;
+			case "mixed":
+				int third = balls/3;
+				scenario.add(new Group("lattice", third).velocity(1, 0, 0).monsters(0.25).region(0, 0, 1/3.0, 1));
+				scenario.add(new Group("gas", third).velocity(0, 0, 2).monsters(0.25).region(1/3.0, 0, 1/3.0, 1));
+				scenario.add(new Group("clustered", balls - 2*third).velocity(-1, 0, 1).monsters(0.25).region(2/3.0, 0, 1/3.0, 1));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown scenario: " + name);
+		}
+		return scenario;
+	}
+
+	/**
+	 * <b>load</b>
+	 * <p>
+	 * Reads a scenario from a properties file such as:
+	 * <pre>
+	 * width=4000
+	 * height=3000
+	 * seed=7
+	 * groups=wall,cloud
+	 * wall.layout=lattice
+	 * wall.count=2000
+	 * wall.region=0,0,0.25,1
+	 * wall.vx=1
+	 * cloud.layout=clustered
+	 * cloud.count=3000
+	 * cloud.clusters=5
+	 * cloud.speed=2
+	 * cloud.monsters=0.2
+	 * </pre>
+	 * width and height are optional (the world is then sized by createEngine). A
+	 * group needs a layout and a count; vx, vy, speed and monsters default to 0,
+	 * radius to CollisionObject.DEFAULT_RADIUS, region (left, top, width and
+	 * height as fractions of the world) to the whole world, clusters to 8 and
+	 * spread (the size of a cluster in pixels) to enough room for the cluster's
+	 * balls.
+	 * @param file - the file to read
+	 * @param defaultSeed - the seed used if the file does not give one
+	 * @return the scenario
+	 * @throws IOException if the file cannot be read
+	 */
+	public static Scenario load(Path file, long defaultSeed) throws IOException {
+		Properties properties = new Properties();
+		try(Reader reader = Files.newBufferedReader(file)) {
+			properties.load(reader);
+		}
+		Scenario scenario = new Scenario(Long.parseLong(properties.getProperty("seed", Long.toString(defaultSeed))));
+		scenario.setSize(Double.parseDouble(properties.getProperty("width", "0")),
+						 Double.parseDouble(properties.getProperty("height", "0")));
+		String names = properties.getProperty("groups");
+		if(names == null) {
+			throw new IOException("No groups in scenario file: " + file);
+		}
+		for(String name : names.split(",")) {
+			name = name.trim();
+			String layout = properties.getProperty(name + ".layout");
+			String count = properties.getProperty(name + ".count");
+			if(layout == null || count == null) {
+				throw new IOException("Group " + name + " needs a layout and a count: " + file);
+			}
+			Group group = new Group(layout, Integer.parseInt(count));
+			group.velocity(Double.parseDouble(properties.getProperty(name + ".vx", "0")),
+						   Double.parseDouble(properties.getProperty(name + ".vy", "0")),
+						   Double.parseDouble(properties.getProperty(name + ".speed", "0")));
+			group.monsters(Double.parseDouble(properties.getProperty(name + ".monsters", "0")));
+			group.size(Double.parseDouble(properties.getProperty(name + ".radius", 
+								Integer.toString(CollisionObject.DEFAULT_RADIUS))));
+			group.clusters(Integer.parseInt(properties.getProperty(name + ".clusters", "8")),
+						   Double.parseDouble(properties.getProperty(name + ".spread", "0")));
+			String region = properties.getProperty(name + ".region");
+			if(region != null) {
+				String[] parts = region.split(",");
+				if(parts.length != 4) {
+					throw new IOException("Region of group " + name + " needs 4 numbers: " + file);
+				}
+				group.region(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()),
+							 Double.parseDouble(parts[2].trim()), Double.parseDouble(parts[3].trim()));
+			}
+			scenario.add(group);
+		}
+		return scenario;
+	}
+
+	/**
+	 * <b>add</b>
+	 * <p>
+	 * Adds a group of balls to the scenario.
+	 * @param group - the group to add
+	 * @return this scenario
+	 */
+	public Scenario add(Group group) {
+		groups.add(group);
+		return this;
+	}
+
+	/**
+	 * <b>setSize</b>
+	 * <p>
+	 * Sets the size of the world created by createEngine.
+	 * @param newWidth - the width, or 0 to size the world by the number of balls
+	 * @param newHeight - the height, or 0 to size the world by the number of balls
+	 */
+	public void setSize(double newWidth, double newHeight) {
+		width = newWidth;
+		height = newHeight;
+	}
+
+	/**
+	 * <b>getBalls</b>
+	 * <p>
+	 * @return the number of balls in every group together
+	 */
+	public int getBalls() {
+		int balls = 0;
+		for(Group group : groups) {
+			balls += group.count;
+		}
+		return balls;
+	}
+
+	/**
+	 * <b>createEngine</b>
+	 * <p>
+	 * Creates an engine and fills it with the scenario. Unless a size was set, the
+	 * world is sized so that the balls cover about a tenth of it, at 4:3, and then
+	 * grown if need be so that every group's region is at least MIN_REGION_CELLS
+	 * placement cells (or balls, for balls too large for a cell) wide and high.
+	 * Without this, a small group given a fraction of a small world (such as the
+	 * thirds of the mixed scenario with a handful of balls) would not fit.
+	 * @return the engine
+	 */
+	public SimulationEngine createEngine() {
+		double w = width;
+		double h = height;
+		if(w <= 0 || h <= 0) {
+			double area = 0;
+			double largest = CollisionObject.DEFAULT_RADIUS;
+			for(Group group : groups) {
+				area += group.count*Math.PI*group.radius*group.radius;
+				largest = Math.max(largest, group.radius);
+			}
+			double side = Math.sqrt(area*10);
+			w = Math.max(side, 4*largest);
+			h = Math.max(side*3/4, 4*largest);
+			double cell = cellSize();
+			for(Group group : groups) {
+				if(group.count > 0 && group.regionWidth > 0 && group.regionHeight > 0) {
+					double room = MIN_REGION_CELLS*Math.max(cell, 2*(group.radius + CLEARANCE));
+					w = Math.max(w, room/group.regionWidth);
+					h = Math.max(h, room/group.regionHeight);
+				}
+			}
+		}
+		SimulationEngine engine = new SimulationEngine(w, h);
+		populate(engine);
+		return engine;
+	}
+
+	/**
+	 * <b>cellSize</b>
+	 * <p>
+	 * @return the width of the cells balls are placed in: one and a half of the
+	 * smallest balls, with room to keep them apart
+	 */
+	private double cellSize() {
+		double smallest = groups.isEmpty() ? CollisionObject.DEFAULT_RADIUS : Double.MAX_VALUE;
+		for(Group group : groups) {
+			smallest = Math.min(smallest, group.radius);
+		}
+		return 3*smallest + 2*CLEARANCE;
+	}
+
+	/**
+	 * <b>populate</b>
+	 * <p>
+	 * Adds the scenario's balls to an engine's world, keeping clear of any balls
+	 * the world already has.
+	 * @param engine - the engine to fill
+	 * @throws IllegalArgumentException if the balls do not fit
+	 */
+	public void populate(SimulationEngine engine) {
+		ParticleStore store = engine.getStore();
+		Placement placement = new Placement(engine.getWidth(), engine.getHeight(), cellSize());
+		for(int i = 0; i < store.size(); i++) {
+			placement.occupy(store.x[i], store.y[i], store.radius[i], -1);
+		}
+		store.ensureCapacity(store.size() + getBalls());
+		Random random = new Random(seed);
+		for(int g = 0; g < groups.size(); g++) {
+			Group group = groups.get(g);
+			switch(group.layout) {
+				case "lattice":
+					placement.lattice(store, group, g, random);
+					break;
+				case "gas":
+					placement.gas(store, group, g, random);
+					break;
+				case "clustered":
+					placement.clustered(store, group, g, random);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown layout: " + group.layout);
+			}
+		}
+	}
+
+	/**
+	 * <b>Group class</b>
+	 * <p>
+	 * A number of balls laid out the same way. The setters return the group so that
+	 * they can be chained.
+	 */
+	public static class Group {
+		private final String layout;
+		private final int count;
+		private double vx;
+		private double vy;
+		private double speed;
+		private double monsters;
+		private double radius = CollisionObject.DEFAULT_RADIUS;
+		private double left = 0;
+		private double top = 0;
+		private double regionWidth = 1;
+		private double regionHeight = 1;
+		private int clusters = 8;
+		private double spread;
+
+		/**
+		 * Constructs a group of balls at rest, with no CollisionMonster balls.
+		 * @param layout - lattice, gas or clustered
+		 * @param count - the number of balls
+		 */
+		public Group(String layout, int count) {
+			if(count < 0) {
+				throw new IllegalArgumentException("Negative number of balls: " + count);
+			}
+			this.layout = layout;
+			this.count = count;
+		}
+
+		/**
+		 * @param driftX - the x speed every ball starts with
+		 * @param driftY - the y speed every ball starts with
+		 * @param randomSpeed - the largest random speed added to it
+		 * @return this group
+		 */
+		public Group velocity(double driftX, double driftY, double randomSpeed) {
+			vx = driftX;
+			vy = driftY;
+			speed = randomSpeed;
+			return this;
+		}
+
+		/**
+		 * @param fraction - the chance of each ball being a CollisionMonster ball
+		 * @return this group
+		 */
+		public Group monsters(double fraction) {
+			monsters = fraction;
+			return this;
+		}
+
+		/**
+		 * @param ballRadius - the radius of every ball in the group
+		 * @return this group
+		 */
+		public Group size(double ballRadius) {
+			if(ballRadius <= 0) {
+				throw new IllegalArgumentException("A ball needs a positive radius: " + ballRadius);
+			}
+			radius = ballRadius;
+			return this;
+		}
+
+		/**
+		 * @param x - the left of the region, as a fraction of the world's width
+		 * @param y - the top of the region, as a fraction of the world's height
+		 * @param w - the width of the region, as a fraction of the world's width
+		 * @param h - the height of the region, as a fraction of the world's height
+		 * @return this group
+		 */
+		public Group region(double x, double y, double w, double h) {
+			left = x;
+			top = y;
+			regionWidth = w;
+			regionHeight = h;
+			return this;
+		}
+
+		/**
+		 * @param number - the number of clusters of a clustered group
+		 * @param size - the standard deviation of the distance of a ball from its
+		 * cluster's center in pixels, or 0 to fit it to the number of balls
+		 * @return this group
+		 */
+		public Group clusters(int number, double size) {
+			if(number < 1) {
+				throw new IllegalArgumentException("A clustered group needs at least one cluster: " + number);
+			}
+			clusters = number;
+			spread = size;
+			return this;
+		}
+	}//End of Group class
+
+	/**
+	 * <b>Placement class</b>
+	 * <p>
+	 * The grid of cells used to keep balls apart while a scenario is laid out.
+	 */
+	private static class Placement {
+		private static final int FREE = 0;
+		//Given up on finding a free spot for a clustered or large ball after this many tries
+		private static final int ATTEMPTS = 1000;
+
+		private final double width;
+		private final double height;
+		private final double cell;
+		private final int columns;
+		private final int rows;
+		//FREE, 1 for balls the world already had, or 2 + the number of the group
+		//whose ball is in the cell
+		private final int[] owner;
+
+		Placement(double width, double height, double cell) {
+			this.width = width;
+			this.height = height;
+			this.cell = cell;
+			columns = Math.max(0, (int) (width/cell));
+			rows = Math.max(0, (int) (height/cell));
+			owner = new int[Math.multiplyExact(columns, rows)];
+		}
+
+		/**
+		 * Marks every cell a ball touches as taken by a group.
+		 */
+		void occupy(double x, double y, double radius, int group) {
+			int cx0 = Math.max(0, (int) ((x - radius)/cell));
+			int cx1 = Math.min(columns - 1, (int) ((x + radius)/cell));
+			int cy0 = Math.max(0, (int) ((y - radius)/cell));
+			int cy1 = Math.min(rows - 1, (int) ((y + radius)/cell));
+			for(int cy = cy0; cy <= cy1; cy++) {
+				for(int cx = cx0; cx <= cx1; cx++) {
+					owner[cy*columns + cx] = group + 2;
+				}
+			}
+		}
+
+		/**
+		 * @return whether every cell a ball touches is free or has the given owner
+		 */
+		private boolean clear(double x, double y, double radius, int allowed) {
+			int cx0 = Math.max(0, (int) ((x - radius)/cell));
+			int cx1 = Math.min(columns - 1, (int) ((x + radius)/cell));
+			int cy0 = Math.max(0, (int) ((y - radius)/cell));
+			int cy1 = Math.min(rows - 1, (int) ((y + radius)/cell));
+			for(int cy = cy0; cy <= cy1; cy++) {
+				for(int cx = cx0; cx <= cx1; cx++) {
+					int taken = owner[cy*columns + cx];
+					if(taken != FREE && taken != allowed) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Lays a group out in rows and columns spread evenly over its region.
+		 */
+		void lattice(ParticleStore store, Group group, int g, Random random) {
+			if(group.count == 0) {
+				return;
+			}
+			double reach = group.radius + CLEARANCE;
+			double x0 = group.left*width + reach;
+			double y0 = group.top*height + reach;
+			double w = group.regionWidth*width - 2*reach;
+			double h = group.regionHeight*height - 2*reach;
+			int latticeColumns = Math.max(1, (int) Math.ceil(Math.sqrt(group.count*Math.max(w, 1)/Math.max(h, 1))));
+			int latticeRows = (group.count + latticeColumns - 1)/latticeColumns;
+			double pitchX = latticeColumns > 1 ? w/(latticeColumns - 1) : 0;
+			double pitchY = latticeRows > 1 ? h/(latticeRows - 1) : 0;
+			double minimum = 2*reach;
+			if(w < 0 || h < 0 || (latticeColumns > 1 && pitchX < minimum) || (latticeRows > 1 && pitchY < minimum)) {
+				throw new IllegalArgumentException("A lattice of " + group.count + " balls does not fit its region");
+			}
+			for(int i = 0; i < group.count; i++) {
+				double x = latticeColumns > 1 ? x0 + (i % latticeColumns)*pitchX : x0 + w/2;
+				double y = latticeRows > 1 ? y0 + (i / latticeColumns)*pitchY : y0 + h/2;
+				if(!clear(x, y, group.radius, g + 2)) {
+					throw new IllegalArgumentException("A lattice of " + group.count +
+													   " balls overlaps balls placed before it");
+				}
+				occupy(x, y, group.radius, g);
+				addBall(store, group, x, y, random);
+			}
+		}
+
+		/**
+		 * Scatters a group over the free cells of its region.
+		 */
+		void gas(ParticleStore store, Group group, int g, Random random) {
+			if(!fitsCell(group)) {
+				double x0 = group.left*width;
+				double y0 = group.top*height;
+				double w = group.regionWidth*width;
+				double h = group.regionHeight*height;
+				for(int i = 0; i < group.count; i++) {
+					int attempts = 0;
+					while(!placeLarge(store, group, g, x0 + random.nextDouble()*w, y0 + random.nextDouble()*h, random)) {
+						if(++attempts == ATTEMPTS) {
+							throw new IllegalArgumentException("The scattered balls do not fit their region");
+						}
+					}
+				}
+				return;
+			}
+			int cx0 = firstCell(group.left*width);
+			int cx1 = lastCell(group.left + group.regionWidth, width, columns);
+			int cy0 = firstCell(group.top*height);
+			int cy1 = lastCell(group.top + group.regionHeight, height, rows);
+			int free = 0;
+			int[] cells = new int[Math.max(0, (cx1 - cx0)*(cy1 - cy0))];
+			for(int cy = cy0; cy < cy1; cy++) {
+				for(int cx = cx0; cx < cx1; cx++) {
+					if(owner[cy*columns + cx] == FREE) {
+						cells[free++] = cy*columns + cx;
+					}
+				}
+			}
+			if(free < group.count) {
+				throw new IllegalArgumentException("Only " + free + " of " + group.count +
+												   " scattered balls fit their region");
+			}
+			//a partial shuffle picks count different cells at random
+			for(int i = 0; i < group.count; i++) {
+				int pick = i + random.nextInt(free - i);
+				int cell = cells[pick];
+				cells[pick] = cells[i];
+				placeInCell(store, group, g, cell, random);
+			}
+		}
+
+		/**
+		 * Gathers a group in clusters at random places in its region.
+		 */
+		void clustered(ParticleStore store, Group group, int g, Random random) {
+			double x0 = group.left*width;
+			double y0 = group.top*height;
+			double w = group.regionWidth*width;
+			double h = group.regionHeight*height;
+			double[] centerX = new double[group.clusters];
+			double[] centerY = new double[group.clusters];
+			for(int c = 0; c < group.clusters; c++) {
+				centerX[c] = x0 + random.nextDouble()*w;
+				centerY[c] = y0 + random.nextDouble()*h;
+			}
+			//by default, room for a cluster's balls at about one per four cells
+			double spread = group.spread > 0 ? group.spread :
+							Math.max(cell, 2*(group.radius + CLEARANCE))*Math.sqrt(4.0*group.count/group.clusters/Math.PI);
+			boolean small = fitsCell(group);
+			for(int i = 0; i < group.count; i++) {
+				int c = i % group.clusters;
+				double sigma = spread;
+				int attempts = 0;
+				while(true) {
+					double x = centerX[c] + random.nextGaussian()*sigma;
+					double y = centerY[c] + random.nextGaussian()*sigma;
+					if(x >= x0 && x < x0 + w && y >= y0 && y < y0 + h) {
+						if(!small) {
+							if(placeLarge(store, group, g, x, y, random)) {
+								break;
+							}
+						}
+						else {
+							int cx = (int) (x/cell);
+							int cy = (int) (y/cell);
+							if(cx < columns && cy < rows && owner[cy*columns + cx] == FREE) {
+								placeInCell(store, group, g, cy*columns + cx, random);
+								break;
+							}
+						}
+					}
+					if(++attempts == ATTEMPTS) {
+						throw new IllegalArgumentException("The clustered balls do not fit their region");
+					}
+					sigma *= 1.01;//spread out further when the middle of the cluster is full
+				}
+			}
+		}
+
+		/**
+		 * @return whether a group's balls fit inside a single cell, clear of its edges
+		 */
+		private boolean fitsCell(Group group) {
+			return 2*(group.radius + CLEARANCE) <= cell;
+		}
+
+		/**
+		 * Places a ball of a group at a random spot inside a free cell.
+		 */
+		private void placeInCell(ParticleStore store, Group group, int g, int cell, Random random) {
+			double reach = group.radius + CLEARANCE;
+			double slack = this.cell - 2*reach;
+			double x = (cell % columns)*this.cell + reach + random.nextDouble()*slack;
+			double y = (cell / columns)*this.cell + reach + random.nextDouble()*slack;
+			owner[cell] = g + 2;
+			addBall(store, group, x, y, random);
+		}
+
+		/**
+		 * Places a ball too large for a cell at a spot, if it lies inside the world
+		 * and every cell it touches is free.
+		 * @return whether the ball was placed
+		 */
+		private boolean placeLarge(ParticleStore store, Group group, int g, double x, double y, Random random) {
+			double reach = group.radius + CLEARANCE;
+			if(x - reach < 0 || y - reach < 0 || x + reach > columns*cell || y + reach > rows*cell
+					|| !clear(x, y, reach, FREE)) {
+				return false;
+			}
+			occupy(x, y, reach, g);
+			addBall(store, group, x, y, random);
+			return true;
+		}
+
+		/**
+		 * Adds a ball of a group to the store with a random velocity and type.
+		 */
+		private void addBall(ParticleStore store, Group group, double x, double y, Random random) {
+			double angle = random.nextDouble()*2*Math.PI;
+			double speed = group.speed*Math.sqrt(random.nextDouble());
+			boolean monster = random.nextDouble() < group.monsters;
+			double area = (group.radius/CollisionObject.DEFAULT_RADIUS)*(group.radius/CollisionObject.DEFAULT_RADIUS);
+			store.add(x, y, group.vx + speed*Math.cos(angle), group.vy + speed*Math.sin(angle), group.radius,
+					  (monster ? 2 : 1)*area, monster ? ParticleStore.MONSTER : ParticleStore.NORMAL);
+		}
+
+		/**
+		 * @return the first cell that starts at or after a position
+		 */
+		private int firstCell(double position) {
+			return (int) Math.ceil(position/cell - 1e-9);
+		}
+
+		/**
+		 * @return one past the last cell that ends at or before a fraction of a side
+		 */
+		private int lastCell(double fraction, double side, int cells) {
+			return Math.min(cells, (int) Math.floor(Math.min(1, fraction)*side/cell + 1e-9));
+		}
+	}//End of Placement class
+}//End of Scenario class
\ No newline at end of file
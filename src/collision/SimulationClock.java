@@ -0,0 +1,161 @@
+package collision;
+
+/**
+ * <b>SimulationClock class</b>
+ * <p>
+ * Decides when the simulation should step, so that it runs at a fixed number of
+ * ticks per second however late the thread running it wakes up.
+ * <p>
+ * The clock keeps an accumulator of real time that has passed but has not been
+ * simulated yet. Each time it is advanced, the time since the last advance is
+ * added and one tick is due for every whole tick period in the accumulator; what
+ * is left over carries on to the next advance. A thread that wakes up late simply
+ * runs several ticks in a row to catch up, so the simulation keeps its speed on a
+ * loaded machine instead of slowing down with it.
+ * <p>
+ * Catching up is capped at maxCatchUp ticks per advance. If the simulation cannot
+ * keep up at all (a step takes longer than a tick period), the time beyond the cap
+ * is dropped rather than carried over, so the simulation slows down instead of
+ * falling ever further behind. Dropped ticks are counted.
+ * <p>
+ * What is left in the accumulator after the due ticks have run says how far the
+ * real time has got past the newest state, which is what a renderer needs to
+ * interpolate between the last two states (see FrameSnapshot.getAlpha).
+ * <p>
+ * The clock also chooses how many sub-steps a tick is split into. A ball moving
+ * more than MAX_TRAVEL of its radius in a step can pass through another ball or
+ * sink deep into it before the overlap is seen, so a tick is split into as many
+ * equal sub-steps as the fastest ball (for its size) needs, up to maxSubsteps.
+ * Every ball takes every sub-step, so a single fast ball multiplies the cost of
+ * the whole tick by the number of sub-steps it needs.
+ */
+public class SimulationClock {
+	/**
+	 * The fraction of its radius a ball may move in one sub-step
+	 */
+	public static final double MAX_TRAVEL = 0.5;
+
+	private final long tickNanos;
+	private final int maxCatchUp;
+	private final int maxSubsteps;
+	private long accumulator;
+	private long last;
+	private boolean started;
+	private volatile long skipped;
+
+	/**
+	 * Constructs a clock.
+	 * @param tickNanos - the length of a tick in nanoseconds, or 0 to step as fast as
+	 * possible
+	 * @param maxCatchUp - the most ticks run in a row to catch up
+	 * @param maxSubsteps - the most sub-steps a tick is split into
+	 */
+	public SimulationClock(long tickNanos, int maxCatchUp, int maxSubsteps) {
+		if(tickNanos < 0 || maxCatchUp < 1 || maxSubsteps < 1) {
+			throw new IllegalArgumentException("Invalid clock: " + tickNanos + " ns, "
+											   + maxCatchUp + " ticks, " + maxSubsteps + " sub-steps");
+		}
+		this.tickNanos = tickNanos;
+		this.maxCatchUp = maxCatchUp;
+		this.maxSubsteps = maxSubsteps;
+	}
+
+	/**
+	 * <b>advance</b>
+	 * <p>
+	 * Adds the time passed since the last advance and takes the ticks now due out
+	 * of the accumulator. The first advance starts the clock and runs one tick.
+	 * @param now - the current time from System.nanoTime
+	 * @return the number of ticks to run now, at most maxCatchUp
+	 */
+	public int advance(long now) {
+		if(tickNanos == 0) {
+			return 1;
+		}
+		if(!started) {
+			started = true;
+			last = now;
+			return 1;
+		}
+		accumulator += now - last;
+		last = now;
+		long due = accumulator/tickNanos;
+		if(due > maxCatchUp) {
+			skipped += due - maxCatchUp;
+			accumulator -= (due - maxCatchUp)*tickNanos;
+			due = maxCatchUp;
+		}
+		accumulator -= due*tickNanos;
+		return (int) due;
+	}
+
+	/**
+	 * <b>untilNextTick</b>
+	 * <p>
+	 * @param now - the current time from System.nanoTime
+	 * @return how long to wait before the next tick is due, in nanoseconds
+	 */
+	public long untilNextTick(long now) {
+		if(tickNanos == 0) {
+			return 0;
+		}
+		return tickNanos - accumulator - (now - last);
+	}
+
+	/**
+	 * <b>getStateTime</b>
+	 * <p>
+	 * @return the time (from System.nanoTime) that the newest state belongs to: the
+	 * last advance minus what was left in the accumulator
+	 */
+	public long getStateTime() {
+		return last - accumulator;
+	}
+
+	/**
+	 * <b>substeps</b>
+	 * <p>
+	 * Works out how many sub-steps a step needs so that no ball moves more than
+	 * MAX_TRAVEL of its radius in one. The balls' squared speeds are compared for
+	 * their sizes, so only the fastest needs a square root. Event driven engines
+	 * never need any, as they find the exact time of each collision.
+	 * @param engine - the engine about to step
+	 * @param dt - the length of the step
+	 * @return the number of sub-steps, between 1 and maxSubsteps
+	 */
+	public int substeps(SimulationEngine engine, double dt) {
+		if(maxSubsteps == 1 || engine.isEventDriven()) {
+			return 1;
+		}
+		ParticleStore store = engine.getStore();
+		double[] vx = store.vx;
+		double[] vy = store.vy;
+		double[] radius = store.radius;
+		//the largest squared speed in radii per unit of time
+		double fastest = 0;
+		int count = store.size();
+		for(int i = 0; i < count; i++) {
+			fastest = Math.max(fastest, (vx[i]*vx[i] + vy[i]*vy[i])/(radius[i]*radius[i]));
+		}
+		double needed = Math.ceil(Math.sqrt(fastest)*dt/MAX_TRAVEL);
+		return (int) Math.max(1, Math.min(maxSubsteps, needed));
+	}
+
+	/**
+	 * <b>getTickNanos</b>
+	 * <p>
+	 * @return the length of a tick in nanoseconds, or 0 if the clock does not wait
+	 */
+	public long getTickNanos() {
+		return tickNanos;
+	}
+
+	/**
+	 * <b>getSkipped</b>
+	 * <p>
+	 * @return the number of ticks dropped because the simulation could not keep up
+	 */
+	public long getSkipped() {
+		return skipped;
+	}
+}//End of SimulationClock class
\ No newline at end of file
@@ -0,0 +1,572 @@
+package collision;
+
+/**
+ * <b>SimulationEngine class</b>
+ * <p>
+ * Runs the physics of the simulation without any user interface.
+ * <p>
+ * Each step moves every ball by its speed, bounces balls off the walls of the
+ * world and then detects and resolves collisions between balls. This is the same
+ * work that used to be done directly by CollisionPanel on every timer tick; the
+ * panel is now just one user of the engine.
+ * <p>
+ * The walls are a StaticGeometry, four walls around the world to begin with;
+ * setGeometry replaces them with any set of obstacles, such as a maze.
+ * <p>
+ * The engine and everything it uses (ParticleStore, BroadPhase, PairList) only
+ * deal with primitive arrays, so no AWT or Swing classes are loaded when it is
+ * used on its own. This lets it be run on a server with -Djava.awt.headless=true,
+ * as HeadlessRunner does.
+ * <p>
+ * A step of length 1 moves each ball by exactly its speed, which is what one timer
+ * tick used to do. Other step lengths scale the distance moved.
+ * <p>
+ * With -Dcollision.metrics=true the time taken by each phase of a step and what
+ * happened in it are recorded in TickMetrics.
+ * <p>
+ * Collision detection works as described in CollisionPanel: a broad phase finds
+ * nearby pairs, which are checked against the sum of their radii. Touching pairs
+ * are handed to a CollisionSolver. The default AngleSolver uses the original 2D
+ * elastic collision formulas; ImpulseSolver can be chosen with setSolver. With
+ * conservation tracking switched on, a ConservationCounter measures how much
+ * momentum and energy the solver gains or loses.
+ * <p>
+ * Calling setParallelism replaces the broad phase pass with a TiledCollisionPass,
+ * which spreads the collision work over several threads and gives the same results
+ * for any number of threads.
+ * <p>
+ * Calling setSleeping lets balls that stand still fall asleep, so that they cost
+ * nothing until a moving ball reaches them (see SleepSystem).
+ * <p>
+ * Calling setEventDriven replaces fixed steps altogether with an 
+ * EventDrivenSimulation, which jumps from one exact collision time to the next.
+ * Stepping in fixed steps with overlap checks remains the default.
+ * <p>
+ * Resolving a collision changes nothing but the two balls' motion. Each one is
+ * recorded in a ContactLog and published to the engine's CollisionEvents at the
+ * end of the step, where subscribers react to them; the CollisionMonster balls'
+ * image switching is one of those subscribers (see ImageToggle).
+ * <p>
+ * Calling setSpatialIndexing keeps a SpatialIndex of the balls up to date after
+ * every step, for finding balls by position without scanning the store.
+ */
+public class SimulationEngine {
+	/**
+	 * How close two balls must come, beyond touching, to count as colliding
+	 */
+	static final double TOUCHING = .001;
+	
+	//Room in the ring of collision events, enough for every collision of most ticks
+	private static final int EVENT_CAPACITY = 1 << 16;
+	
+	private final double width;
+	private final double height;
+	private final ParticleStore store;
+	private BroadPhase broadPhase = new SpatialHashBroadPhase();
+	private final PairList pairs = new PairList();
+	private NarrowPhase narrowPhase = NarrowPhase.fastest();
+	private TiledCollisionPass tiledPass;
+	private CollisionSolver solver = new AngleSolver();
+	private ConservationCounter conservation;
+	private EventDrivenSimulation eventDriven;
+	private SleepSystem sleepSystem;
+	private SpatialIndex spatialIndex;
+	private StaticGeometry geometry;
+	private final ContactLog contactLog = new ContactLog();
+	private final CollisionEvents events = new CollisionEvents(EVENT_CAPACITY);
+	private long tick;
+	
+	/**
+	 * Constructs an engine with an empty world of the given size.
+	 * @param width - the width of the world
+	 * @param height - the height of the world
+	 */
+	public SimulationEngine(double width, double height) {
+		this(width, height, new ParticleStore());
+	}
+	
+	/**
+	 * Constructs an engine that simulates the balls in the given store.
+	 * @param width - the width of the world
+	 * @param height - the height of the world
+	 * @param store - the balls to simulate
+	 */
+	public SimulationEngine(double width, double height, ParticleStore store) {
+		this.width = width;
+		this.height = height;
+		this.store = store;
+		geometry = StaticGeometry.box(width, height);
+		events.subscribe(new ImageToggle(store), CollisionEvents.BLOCK, 1);
+	}
+	
+	/**
+	 * <b>run</b>
+	 * <p>
+	 * Runs a number of steps of length 1.
+	 * @param nSteps - the number of steps to run
+	 */
+	public void run(long nSteps) {
+		for(long i = 0; i < nSteps; i++) {
+			step(1);
+		}
+	}
+	
+	/**
+	 * <b>step</b>
+	 * <p>
+	 * Advances the simulation by one step.
+	 * @param dt - the length of the step, in timer ticks
+	 */
+	public void step(double dt) {
+		step(dt, 1);
+	}
+	
+	/**
+	 * <b>step</b>
+	 * <p>
+	 * Advances the simulation by one step made of a number of equal sub-steps, each
+	 * of which moves the balls and resolves their collisions. The step still counts
+	 * as a single tick.
+	 * @param dt - the length of the step, in timer ticks
+	 * @param substeps - the number of sub-steps to split it into
+	 */
+	public void step(double dt, int substeps) {
+		long start = TickMetrics.ENABLED ? System.nanoTime() : 0;
+		for(int i = 0; i < substeps; i++) {
+			substep(dt/substeps);
+		}
+		tick++;
+		publishContacts();
+		if(spatialIndex != null) {
+			spatialIndex.refit(store);
+		}
+		if(TickMetrics.ENABLED) {
+			TickMetrics.TICK.record(System.nanoTime() - start);
+			TickMetrics.liveBalls = store.size();
+		}
+	}
+	
+	/**
+	 * <b>substep</b>
+	 * <p>
+	 * Moves the balls and resolves their collisions once, in whichever mode the
+	 * engine is in.
+	 * @param dt - the length of the sub-step
+	 */
+	private void substep(double dt) {
+		long start = TickMetrics.ENABLED ? System.nanoTime() : 0;
+		if(eventDriven != null) {
+			int contacts = eventDriven.advance(dt);
+			if(TickMetrics.ENABLED) {
+				TickMetrics.CONTACTS.add(contacts);
+			}
+		}
+		else if(sleepSystem != null) {
+			sleepSystem.step(dt);
+		}
+		else {
+			integrate(dt);
+			if(TickMetrics.ENABLED) {
+				TickMetrics.INTEGRATE.record(System.nanoTime() - start);
+			}
+			if(tiledPass != null) {
+				tiledPass.run(dt);
+			}
+			else {
+				checkCollision(dt);
+			}
+		}
+	}
+	
+	/**
+	 * <b>integrate</b>
+	 * <p>
+	 * Moves every ball, then bounces the balls that have reached the static
+	 * geometry off it (see StaticGeometry). Moving comes first, in a loop of its
+	 * own that the JIT compiler can turn into SIMD instructions.
+	 * @param dt - the length of the step
+	 */
+	void integrate(double dt) {
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] vx = store.vx;
+		double[] vy = store.vy;
+		int count = store.size();
+		for(int k = 0; k < count; k++) {
+			x[k] += vx[k]*dt;
+			y[k] += vy[k]*dt;
+		}
+		geometry.bounce(store, 0, count, dt);
+	}
+	
+	/**
+	 * <b>move</b>
+	 * <p>
+	 * Moves one ball and bounces it off the static geometry, as integrate does for
+	 * every ball.
+	 * @param k - the index of the ball
+	 * @param dt - the length of the step
+	 */
+	void move(int k, double dt) {
+		store.x[k] += store.vx[k]*dt;
+		store.y[k] += store.vy[k]*dt;
+		geometry.bounce(store, k, dt);
+	}
+	
+	/**
+	 * <b>checkCollision</b>
+	 * <p>
+	 * Performs collision detection and collision resolution on the pairs found by
+	 * the broad phase, using the narrow phase.
+	 * @param dt - the length of the step
+	 */
+	void checkCollision(double dt) {
+		long start = TickMetrics.ENABLED ? System.nanoTime() : 0;
+		broadPhase.findPairs(store, pairs);
+		long broadEnd = TickMetrics.ENABLED ? System.nanoTime() : 0;
+		int contacts = narrowPhase(pairs, dt);
+		if(TickMetrics.ENABLED) {
+			TickMetrics.BROAD.record(broadEnd - start);
+			TickMetrics.NARROW.record(System.nanoTime() - broadEnd);
+			TickMetrics.PAIR_TESTS.add(pairs.size());
+			TickMetrics.CONTACTS.add(contacts);
+		}
+	}
+	
+	/**
+	 * <b>narrowPhase</b>
+	 * <p>
+	 * Checks a list of candidate pairs with the narrow phase and resolves the ones
+	 * that are touching.
+	 * @param candidates - the pairs to check
+	 * @param dt - the length of the step
+	 * @return the number of collisions
+	 */
+	int narrowPhase(PairList candidates, double dt) {
+		return narrowPhase.collide(this, candidates, dt, conservation);
+	}
+	
+	/**
+	 * <b>collidePair</b>
+	 * <p>
+	 * Checks whether two balls are touching and resolves their collision if so.
+	 * <p>
+	 * The pair is ordered so that m is the ball further to the right, which is the
+	 * order the resolution formulas expect. Pairs whose centers are level 
+	 * horizontally are skipped.
+	 * <p>
+	 * The balls are touching if the squared distance between their centers is less
+	 * than the square of their radii plus TOUCHING, which saves a square root. 
+	 * VectorNarrowPhase does the same arithmetic, in the same order, so that it 
+	 * always agrees with this test.
+	 * <p>
+	 * Only the two balls are read or changed, so pairs with no ball in common can be
+	 * handled on different threads at the same time, each with its own log.
+	 * @param a - the index of one ball
+	 * @param b - the index of the other ball
+	 * @param dt - the length of the step
+	 * @param counter - the counter to record the collision in, or null
+	 * @param log - the log to record the contact in
+	 * @return whether the balls collided
+	 */
+	boolean collidePair(int a, int b, double dt, ConservationCounter counter, ContactLog log) {
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] radius = store.radius;
+		int m = a;
+		int n = b;
+		if(x[m] < x[n]) {//puts the right ball first
+			m = b;
+			n = a;
+		}
+		double xDistance = x[m] - x[n];
+		double yDistance = y[m] - y[n];
+		double limit = radius[m] + radius[n] + TOUCHING;
+		if(xDistance*xDistance + yDistance*yDistance < limit*limit && xDistance > 0) {
+			if(counter == null) {
+				return resolve(m, n, dt, log);
+			}
+			counter.begin(store, m, n);
+			if(resolve(m, n, dt, log)) {
+				counter.end(store, m, n);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * <b>collidePair</b>
+	 * <p>
+	 * Checks whether two balls are touching and resolves their collision if so,
+	 * recording the contact in the engine's own log. Used by the narrow phases,
+	 * which run on the engine's thread.
+	 * @param a - the index of one ball
+	 * @param b - the index of the other ball
+	 * @param dt - the length of the step
+	 * @param counter - the counter to record the collision in, or null
+	 * @return whether the balls collided
+	 */
+	boolean collidePair(int a, int b, double dt, ConservationCounter counter) {
+		return collidePair(a, b, dt, counter, contactLog);
+	}
+	
+	/**
+	 * <b>resolve</b>
+	 * <p>
+	 * Resolves the collision between two touching balls with the current solver
+	 * and records the contact. Anything else that should happen because of it,
+	 * such as a CollisionMonster ball switching its image, is left to the
+	 * subscribers of the engine's CollisionEvents once the tick is over.
+	 * @param m - the index of the ball on the right
+	 * @param n - the index of the ball on the left
+	 * @param dt - the length of the step
+	 * @param log - the log to record the contact in
+	 * @return whether the solver changed the balls' speeds; a pair it left alone
+	 * is not recorded
+	 */
+	boolean resolve(int m, int n, double dt, ContactLog log) {
+		log.begin(store, m, n);
+		if(solver.resolve(store, m, n, dt)) {
+			log.end(store, m, n);
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * <b>publishContacts</b>
+	 * <p>
+	 * Publishes the contacts recorded since the last call as events of the current
+	 * tick and delivers them to the subscribers that are due. Called at the end of
+	 * every step.
+	 */
+	void publishContacts() {
+		events.publish(contactLog, tick);
+		contactLog.clear();
+		events.deliver(tick);
+	}
+	
+	/**
+	 * <b>getContactLog</b>
+	 * <p>
+	 * @return contactLog - the contacts of the current tick, not yet published
+	 */
+	ContactLog getContactLog() {
+		return contactLog;
+	}
+	
+	/**
+	 * <b>getEvents</b>
+	 * <p>
+	 * @return events - the bus the collisions of every tick are published to, for
+	 * subscribing to them
+	 */
+	public CollisionEvents getEvents() {
+		return events;
+	}
+	
+	/**
+	 * <b>setBroadPhase</b>
+	 * <p>
+	 * Changes the broad phase used to find the pairs of balls to check.
+	 * @param newBroadPhase - the broad phase to use from the next step on
+	 */
+	public void setBroadPhase(BroadPhase newBroadPhase) {
+		broadPhase = newBroadPhase;
+	}
+	
+	/**
+	 * <b>setNarrowPhase</b>
+	 * <p>
+	 * Changes how the pairs found by the broad phase are checked.
+	 * @param newNarrowPhase - the narrow phase to use from the next step on
+	 */
+	public void setNarrowPhase(NarrowPhase newNarrowPhase) {
+		narrowPhase = newNarrowPhase;
+	}
+	
+	/**
+	 * <b>setSolver</b>
+	 * <p>
+	 * Changes the solver used to resolve collisions.
+	 * @param newSolver - the solver to use from the next step on
+	 */
+	public void setSolver(CollisionSolver newSolver) {
+		solver = newSolver;
+	}
+	
+	/**
+	 * <b>setConservationTracking</b>
+	 * <p>
+	 * Switches measuring of momentum and energy drift on or off. Tracking costs a
+	 * few extra multiplications per collision and is off by default.
+	 * @param track - whether to measure drift
+	 */
+	public void setConservationTracking(boolean track) {
+		conservation = track ? new ConservationCounter() : null;
+	}
+	
+	/**
+	 * <b>getConservation</b>
+	 * <p>
+	 * @return conservation - the drift measured since tracking was switched on, or
+	 * null if it is off
+	 */
+	public ConservationCounter getConservation() {
+		return conservation;
+	}
+	
+	/**
+	 * <b>setEventDriven</b>
+	 * <p>
+	 * Chooses between fixed steps (the default) and event driven simulation. In
+	 * event driven mode step(dt) advances the balls by dt, resolving each collision
+	 * at the exact time it happens, and the broad phase, parallelism and solver 
+	 * settings are not used.
+	 * @param enabled - whether to use event driven simulation
+	 */
+	public void setEventDriven(boolean enabled) {
+		eventDriven = enabled ? new EventDrivenSimulation(this) : null;
+	}
+	
+	/**
+	 * <b>isEventDriven</b>
+	 * <p>
+	 * @return whether the engine is running an EventDrivenSimulation
+	 */
+	public boolean isEventDriven() {
+		return eventDriven != null;
+	}
+	
+	/**
+	 * <b>setSleeping</b>
+	 * <p>
+	 * Turns the SleepSystem on or off. While it is on, balls that stand still are
+	 * put to sleep and skipped until something reaches them. It takes the place of
+	 * the broad phase pass and of a TiledCollisionPass, and is not used in event
+	 * driven mode.
+	 * @param enabled - true to put still balls to sleep
+	 */
+	public void setSleeping(boolean enabled) {
+		sleepSystem = enabled ? new SleepSystem(this) : null;
+	}
+	
+	/**
+	 * <b>getSleepSystem</b>
+	 * <p>
+	 * @return the sleep system, or null if sleeping is off
+	 */
+	public SleepSystem getSleepSystem() {
+		return sleepSystem;
+	}
+	
+	/**
+	 * <b>setGeometry</b>
+	 * <p>
+	 * Changes the obstacles balls bounce off. Include the world's walls (see
+	 * StaticGeometry.addBox) to keep the balls in the world. Event driven mode
+	 * always uses the world's walls.
+	 * @param newGeometry - the geometry to use from the next step on
+	 */
+	public void setGeometry(StaticGeometry newGeometry) {
+		geometry = newGeometry;
+	}
+	
+	/**
+	 * <b>getGeometry</b>
+	 * <p>
+	 * @return geometry - the obstacles balls bounce off
+	 */
+	public StaticGeometry getGeometry() {
+		return geometry;
+	}
+	
+	/**
+	 * <b>setSpatialIndexing</b>
+	 * <p>
+	 * Turns the SpatialIndex on or off. While it is on, the index is refitted to
+	 * the balls after every step and built straight away when turned on.
+	 * @param enabled - true to keep an index of the balls
+	 */
+	public void setSpatialIndexing(boolean enabled) {
+		spatialIndex = enabled ? new SpatialIndex() : null;
+		if(spatialIndex != null) {
+			spatialIndex.build(store);
+		}
+	}
+	
+	/**
+	 * <b>getSpatialIndex</b>
+	 * <p>
+	 * The index belongs to the thread running the engine; other threads should
+	 * query a copy (see FrameSnapshot.getIndex).
+	 * @return the index of the balls as of the last step, or null if indexing is
+	 * off
+	 */
+	public SpatialIndex getSpatialIndex() {
+		return spatialIndex;
+	}
+	
+	/**
+	 * <b>setParallelism</b>
+	 * <p>
+	 * Chooses how collisions are found. With 0 the broad phase is used on the 
+	 * calling thread (the default). With 1 or more a TiledCollisionPass is used with
+	 * that many threads; its results do not depend on the number of threads, so
+	 * 1 can be used to check the results of a multi-threaded run.
+	 * @param threads - the number of threads, or 0 for the broad phase pass
+	 */
+	public void setParallelism(int threads) {
+		if(tiledPass != null) {
+			tiledPass.shutdown();
+		}
+		tiledPass = threads > 0 ? new TiledCollisionPass(this, threads) : null;
+	}
+	
+	/**
+	 * <b>getStore</b>
+	 * <p>
+	 * @return store - the balls being simulated
+	 */
+	public ParticleStore getStore() {
+		return store;
+	}
+	
+	/**
+	 * <b>getTick</b>
+	 * <p>
+	 * @return tick - the number of steps run so far
+	 */
+	public long getTick() {
+		return tick;
+	}
+	
+	/**
+	 * <b>setTick</b>
+	 * <p>
+	 * Sets the step count, used when a world is restored from a Checkpoint.
+	 * @param newTick - the number of steps already run
+	 */
+	void setTick(long newTick) {
+		tick = newTick;
+	}
+	
+	/**
+	 * <b>getWidth</b>
+	 * <p>
+	 * @return width - the width of the world
+	 */
+	public double getWidth() {
+		return width;
+	}
+	
+	/**
+	 * <b>getHeight</b>
+	 * <p>
+	 * @return height - the height of the world
+	 */
+	public double getHeight() {
+		return height;
+	}
+}//End of SimulationEngine class
\ No newline at end of file
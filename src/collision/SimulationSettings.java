@@ -0,0 +1,173 @@
+package collision;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * <b>SimulationSettings class</b>
+ * <p>
+ * Configures a SimulationEngine from system properties, so that the window and 
+ * the headless runner can be set up the same way from the command line.
+ * <p>
+ * The properties read are:
+ * <ul>
+ * <li>collision.broadphase - grid (default), hgrid (hierarchical grid, for balls
+ * of very different sizes), sap (sweep and prune) or brute</li>
+ * <li>collision.narrowphase - auto (default, the vector narrow phase when the
+ * jdk.incubator.vector module is available), scalar or vector</li>
+ * <li>collision.solver - angle (default) or impulse</li>
+ * <li>collision.threads - the number of threads for the tiled collision pass, or
+ * 0 (default) for the ordinary broad phase pass</li>
+ * <li>collision.conservation - true to measure momentum and energy drift</li>
+ * <li>collision.sleep - true to put balls that stand still to sleep</li>
+ * <li>collision.mode - discrete (default) for fixed steps or event for event 
+ * driven simulation</li>
+ * </ul>
+ * The world's starting balls can be chosen with collision.scenario (see scenario),
+ * obstacles with collision.geometry (see geometry), and the rate the window runs
+ * the simulation at with collision.rate, collision.catchup and collision.substeps
+ * (see clock).
+ */
+public class SimulationSettings {
+	
+	/**
+	 * <b>configure</b>
+	 * <p>
+	 * Applies the settings given as system properties to an engine.
+	 * @param engine - the engine to configure
+	 */
+	public static void configure(SimulationEngine engine) {
+		String broadPhase = System.getProperty("collision.broadphase", "grid");
+		switch(broadPhase) {
+			case "grid":
+				engine.setBroadPhase(new SpatialHashBroadPhase());
+				break;
+			case "hgrid":
+				engine.setBroadPhase(new HierarchicalGridBroadPhase());
+				break;
+			case "sap":
+				engine.setBroadPhase(new SweepAndPruneBroadPhase());
+				break;
+			case "brute":
+				engine.setBroadPhase(new BruteForceBroadPhase());
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown broad phase: " + broadPhase);
+		}
+		String narrowPhase = System.getProperty("collision.narrowphase", "auto");
+		switch(narrowPhase) {
+			case "auto":
+				engine.setNarrowPhase(NarrowPhase.fastest());
+				break;
+			case "scalar":
+				engine.setNarrowPhase(new ScalarNarrowPhase());
+				break;
+			case "vector":
+				NarrowPhase fastest = NarrowPhase.fastest();
+				if(!(fastest instanceof VectorNarrowPhase)) {
+					throw new IllegalArgumentException("The vector narrow phase needs --add-modules jdk.incubator.vector");
+				}
+				engine.setNarrowPhase(fastest);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown narrow phase: " + narrowPhase);
+		}
+		String solver = System.getProperty("collision.solver", "angle");
+		switch(solver) {
+			case "angle":
+				engine.setSolver(new AngleSolver());
+				break;
+			case "impulse":
+				engine.setSolver(new ImpulseSolver());
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown solver: " + solver);
+		}
+		engine.setParallelism(Integer.getInteger("collision.threads", 0));
+		engine.setConservationTracking(Boolean.getBoolean("collision.conservation"));
+		engine.setSleeping(Boolean.getBoolean("collision.sleep"));
+		String mode = System.getProperty("collision.mode", "discrete");
+		switch(mode) {
+			case "discrete":
+				engine.setEventDriven(false);
+				break;
+			case "event":
+				engine.setEventDriven(true);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown mode: " + mode);
+		}
+	}
+	
+	/**
+	 * <b>scenario</b>
+	 * <p>
+	 * Reads the collision.scenario property: either the name of a built in 
+	 * scenario (lattice, gas, clustered or mixed, see Scenario.named) or the path
+	 * of a scenario file (see Scenario.load).
+	 * @param balls - the number of balls for a built in scenario
+	 * @param seed - the seed for a built in scenario or a file that gives none
+	 * @return the scenario, or null if the property is not set
+	 * @throws IOException if the scenario file cannot be read
+	 */
+	public static Scenario scenario(int balls, long seed) throws IOException {
+		String scenario = System.getProperty("collision.scenario");
+		if(scenario == null) {
+			return null;
+		}
+		switch(scenario) {
+			case "lattice":
+			case "gas":
+			case "clustered":
+			case "mixed":
+				return Scenario.named(scenario, balls, seed);
+			default:
+				return Scenario.load(Paths.get(scenario), seed);
+		}
+	}
+	
+	/**
+	 * <b>geometry</b>
+	 * <p>
+	 * Reads the collision.geometry property, the path of a file of obstacles
+	 * (see StaticGeometry.load), and gives the obstacles to an engine in place
+	 * of its plain walls. Nothing changes if the property is not set.
+	 * @param engine - the engine to give the obstacles to
+	 * @throws IOException if the geometry file cannot be read
+	 */
+	public static void geometry(SimulationEngine engine) throws IOException {
+		String geometry = System.getProperty("collision.geometry");
+		if(geometry != null) {
+			engine.setGeometry(StaticGeometry.load(Paths.get(geometry), engine.getWidth(), engine.getHeight()));
+		}
+	}
+	
+	/**
+	 * <b>clock</b>
+	 * <p>
+	 * Builds the SimulationClock that paces a SimulationThread from the properties:
+	 * <ul>
+	 * <li>collision.rate - ticks per second, or 0 to run as fast as possible 
+	 * (defaults to one tick every defaultTickNanos)</li>
+	 * <li>collision.catchup - the most ticks run in a row after waking up late
+	 * (default 5)</li>
+	 * <li>collision.substeps - the most sub-steps a tick of fast balls is split
+	 * into (default 8, 1 to never split)</li>
+	 * </ul>
+	 * @param defaultTickNanos - the length of a tick if no rate is given
+	 * @return the clock
+	 */
+	public static SimulationClock clock(long defaultTickNanos) {
+		long tickNanos = defaultTickNanos;
+		String rate = System.getProperty("collision.rate");
+		if(rate != null) {
+			double perSecond = Double.parseDouble(rate);
+			if(perSecond < 0) {
+				throw new IllegalArgumentException("Invalid rate: " + rate);
+			}
+			tickNanos = perSecond == 0 ? 0 : Math.round(1e9/perSecond);
+		}
+		return new SimulationClock(tickNanos, Integer.getInteger("collision.catchup", 5),
+								   Integer.getInteger("collision.substeps", 8));
+	}
+}//End of SimulationSettings class
\ No newline at end of file
@@ -0,0 +1,155 @@
+package collision;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <b>SimulationThread class</b>
+ * <p>
+ * Runs a SimulationEngine on its own thread and publishes a snapshot of the balls
+ * after every step.
+ * <p>
+ * The thread steps the engine at the fixed rate kept by a SimulationClock,
+ * independently of how often the window is repainted, and hands the newest state
+ * to the renderer through a SnapshotExchange so that neither side ever waits for
+ * the other. If the thread wakes up late it runs the ticks it missed in a row 
+ * (up to the clock's limit) and publishes only the last one, along with where 
+ * the balls were a tick before so that the renderer can interpolate. A tick 
+ * period of zero runs the simulation as fast as it can.
+ * <p>
+ * The engine must only be used from this thread once it has started. Other 
+ * threads (such as the Swing event thread handling mouse clicks) change the world
+ * by submitting tasks, which are run on the simulation thread before the next step.
+ * <p>
+ * Each tick is split into as many sub-steps as the clock says the fastest ball
+ * needs. If a TrajectoryRecorder is set, every tick is also recorded. If the
+ * engine keeps a SpatialIndex, a copy of it goes out with each snapshot.
+ */
+public class SimulationThread implements Runnable {
+	private final SimulationEngine engine;
+	private final SnapshotExchange exchange;
+	private final SimulationClock clock;
+	private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private TrajectoryRecorder recorder;
+	private volatile boolean running;
+	private Thread thread;
+	
+	/**
+	 * Constructs a simulation thread for an engine that runs one tick per period
+	 * without sub-steps.
+	 * @param engine - the engine to run
+	 * @param exchange - where to publish snapshots
+	 * @param tickNanos - the time between steps in nanoseconds, or 0 for no limit
+	 */
+	public SimulationThread(SimulationEngine engine, SnapshotExchange exchange, long tickNanos) {
+		this(engine, exchange, new SimulationClock(tickNanos, 1, 1));
+	}
+	
+	/**
+	 * Constructs a simulation thread for an engine.
+	 * @param engine - the engine to run
+	 * @param exchange - where to publish snapshots
+	 * @param clock - decides when to step and into how many sub-steps
+	 */
+	public SimulationThread(SimulationEngine engine, SnapshotExchange exchange, SimulationClock clock) {
+		this.engine = engine;
+		this.exchange = exchange;
+		this.clock = clock;
+	}
+	
+	/**
+	 * <b>start</b>
+	 * <p>
+	 * Starts the simulation thread if it is not already running.
+	 */
+	public synchronized void start() {
+		if(thread != null) {
+			return;
+		}
+		running = true;
+		thread = new Thread(this, "simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * <b>stop</b>
+	 * <p>
+	 * Stops the simulation thread and waits for it to finish its current step.
+	 */
+	public synchronized void stop() {
+		if(thread == null) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+	
+	/**
+	 * <b>submit</b>
+	 * <p>
+	 * Runs a task on the simulation thread before its next step.
+	 * @param task - the task to run
+	 */
+	public void submit(Runnable task) {
+		tasks.add(task);
+	}
+	
+	/**
+	 * <b>setRecorder</b>
+	 * <p>
+	 * Records every step from now on. Must be called before the thread is started.
+	 * @param newRecorder - the recorder to use, or null to stop recording
+	 */
+	public void setRecorder(TrajectoryRecorder newRecorder) {
+		recorder = newRecorder;
+	}
+	
+	/**
+	 * <b>getClock</b>
+	 * <p>
+	 * @return the clock the thread steps by
+	 */
+	public SimulationClock getClock() {
+		return clock;
+	}
+	
+	public void run() {
+		while(running) {
+			int ticks = clock.advance(System.nanoTime());
+			Runnable task;
+			while((task = tasks.poll()) != null) {
+				task.run();
+			}
+			ParticleStore store = engine.getStore();
+			FrameSnapshot snapshot = exchange.getBack();
+			for(int t = 0; t < ticks; t++) {
+				if(t == ticks - 1) {
+					snapshot.copyPreviousFrom(store, engine.getTick());
+				}
+				engine.step(1, clock.substeps(engine, 1));
+				if(recorder != null) {
+					recorder.record(store, engine.getTick());
+				}
+			}
+			if(ticks > 0) {
+				snapshot.copyFrom(store, engine.getTick());
+				snapshot.copyIndexFrom(engine.getSpatialIndex());
+				snapshot.setTiming(clock.getStateTime(), clock.getTickNanos());
+				exchange.publish();
+			}
+			long wait = clock.untilNextTick(System.nanoTime());
+			while(running && wait > 0) {
+				LockSupport.parkNanos(wait);
+				wait = clock.untilNextTick(System.nanoTime());
+			}
+		}
+	}
+}//End of SimulationThread class
\ No newline at end of file
@@ -0,0 +1,436 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * <b>SleepSystem class</b>
+ * <p>
+ * Stops spending time on balls that are standing still.
+ * <p>
+ * A ball that has not moved at all for REST_TICKS steps in a row (such as one
+ * created with CardinalDirection.C) is put to sleep. Sleeping balls are not moved
+ * or bounced off the walls, and they are never checked against each other; only
+ * the balls that are awake look for what they might hit. The awake balls are
+ * hashed into a grid every step, while the sleeping ones sit in a second grid
+ * that is only rebuilt once enough balls have fallen asleep or woken up since the
+ * last time. Until then a ball that falls asleep stays in the awake list (but is
+ * not moved), and a ball that wakes is simply skipped in the sleeping grid. The
+ * cost of a step therefore depends on the number of awake balls rather than on
+ * all of them.
+ * <p>
+ * A sleeping ball is woken as soon as the box around an awake ball overlaps its
+ * own box, before the collision between them is resolved. Sleeping balls that
+ * touch each other form an island (found with a union-find when the sleeping grid
+ * is rebuilt), and the whole island wakes together, since a hit on one of them
+ * may push it into the others.
+ * <p>
+ * There is no friction in this world, so only balls that are completely still
+ * ever fall asleep and putting them to sleep does not change how they move. Pairs
+ * are checked in a different order than the ordinary broad phase would, so
+ * results are not identical to a run without sleeping.
+ */
+public class SleepSystem {
+	/**
+	 * The number of steps a ball must stand still for before it falls asleep
+	 */
+	public static final int REST_TICKS = 60;
+
+	//Extra room added to the cell size so that balls just touching are still neighbours
+	private final double MARGIN = 1;
+	
+	//Offsets of the neighbouring cells whose listed balls a ball is paired with
+	private final int[] NEIGHBOUR_X = {1, 1, 1, 0};
+	private final int[] NEIGHBOUR_Y = {-1, 0, 1, 1};
+	
+	//Changes to let pile up before the sleeping grid is rebuilt, plus a share of its size
+	private final int REBUILD_CHANGES = 256;
+	private final int REBUILD_SHARE = 16;
+
+	private final SimulationEngine engine;
+	private final PairList pairs = new PairList();
+	private final Grid listedGrid = new Grid();
+	private final Grid sleepingGrid = new Grid();
+	private int knownSize;
+	private boolean rebuild = true;
+	private int changes;
+	private double cellSize;
+
+	private int[] restTicks = new int[0];
+	private boolean[] asleep = new boolean[0];
+	//Balls that are awake, or fell asleep since the sleeping grid was built
+	private boolean[] listed = new boolean[0];
+	private int[] list = new int[0];
+	private int listCount;
+	private int[] sleeping = new int[0];
+	private int sleepingCount;
+	private int[] woken = new int[0];
+	private int wokenCount;
+
+	//Islands of touching sleeping balls: a union-find forest, then each island's members
+	private int[] parent = new int[0];
+	private int[] islandOf = new int[0];
+	private int[] islandStart = new int[0];
+	private int[] islandMembers = new int[0];
+
+	/**
+	 * Constructs a sleep system for an engine. Every ball starts awake.
+	 * @param engine - the engine whose balls to put to sleep
+	 */
+	public SleepSystem(SimulationEngine engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * <b>step</b>
+	 * <p>
+	 * Moves the awake balls and resolves their collisions, waking any sleeping
+	 * balls they reach, then puts balls that have stood still long enough to sleep.
+	 * @param dt - the length of the step
+	 * @return the number of collisions between balls
+	 */
+	public int step(double dt) {
+		ParticleStore store = engine.getStore();
+		if(store.size() != knownSize) {
+			resize(store);
+		}
+		if(rebuild || changes > REBUILD_CHANGES + sleepingCount/REBUILD_SHARE) {
+			rebuild(store);
+		}
+		long start = TickMetrics.ENABLED ? System.nanoTime() : 0;
+		for(int k = 0; k < listCount; k++) {
+			if(!asleep[list[k]]) {
+				engine.move(list[k], dt);
+			}
+		}
+		long integrateEnd = TickMetrics.ENABLED ? System.nanoTime() : 0;
+		findPairs(store);
+		long broadEnd = TickMetrics.ENABLED ? System.nanoTime() : 0;
+		int contacts = engine.narrowPhase(pairs, dt);
+		if(TickMetrics.ENABLED) {
+			TickMetrics.INTEGRATE.record(integrateEnd - start);
+			TickMetrics.BROAD.record(broadEnd - integrateEnd);
+			TickMetrics.NARROW.record(System.nanoTime() - broadEnd);
+			TickMetrics.PAIR_TESTS.add(pairs.size());
+			TickMetrics.CONTACTS.add(contacts);
+		}
+
+		//the balls woken this step join the list for the next one
+		for(int k = 0; k < wokenCount; k++) {
+			listed[woken[k]] = true;
+			list[listCount++] = woken[k];
+		}
+		changes += wokenCount;
+		wokenCount = 0;
+		double[] vx = store.vx;
+		double[] vy = store.vy;
+		for(int k = 0; k < listCount; k++) {
+			int i = list[k];
+			if(vx[i] != 0 || vy[i] != 0) {
+				asleep[i] = false;
+				restTicks[i] = 0;
+			}
+			else if(!asleep[i] && ++restTicks[i] >= REST_TICKS) {
+				asleep[i] = true;
+				changes++;
+			}
+		}
+		return contacts;
+	}
+
+	/**
+	 * <b>getSleeping</b>
+	 * <p>
+	 * @return the number of balls asleep after the latest step
+	 */
+	public int getSleeping() {
+		int count = 0;
+		for(int i = 0; i < knownSize; i++) {
+			if(asleep[i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * <b>isAsleep</b>
+	 * <p>
+	 * @param i - the index of a ball
+	 * @return whether the ball is asleep
+	 */
+	public boolean isAsleep(int i) {
+		return i < knownSize && asleep[i];
+	}
+
+	/**
+	 * <b>resize</b>
+	 * <p>
+	 * Catches up with balls added to or removed from the store. Added balls start
+	 * awake. Removing a ball moves another one into its place, so after a removal
+	 * every ball is woken.
+	 * @param store - the balls
+	 */
+	private void resize(ParticleStore store) {
+		int size = store.size();
+		if(restTicks.length < size) {
+			int capacity = Math.max(size, restTicks.length*2);
+			restTicks = Arrays.copyOf(restTicks, capacity);
+			asleep = Arrays.copyOf(asleep, capacity);
+			listed = new boolean[capacity];
+			list = new int[capacity];
+			sleeping = new int[capacity];
+			woken = new int[capacity];
+			parent = new int[capacity];
+			islandOf = new int[capacity];
+			islandStart = new int[capacity + 1];
+			islandMembers = new int[capacity];
+		}
+		if(size < knownSize) {
+			Arrays.fill(restTicks, 0, size, 0);
+			Arrays.fill(asleep, 0, size, false);
+		}
+		else {
+			Arrays.fill(restTicks, knownSize, size, 0);
+			Arrays.fill(asleep, knownSize, size, false);
+		}
+		knownSize = size;
+		rebuild = true;
+	}
+
+	/**
+	 * <b>rebuild</b>
+	 * <p>
+	 * Sorts the balls into listed and sleeping, rebuilds the sleeping grid and finds
+	 * the islands of touching sleeping balls.
+	 * @param store - the balls
+	 */
+	private void rebuild(ParticleStore store) {
+		double maxRadius = 0;
+		double[] radius = store.radius;
+		listCount = 0;
+		sleepingCount = 0;
+		for(int i = 0; i < knownSize; i++) {
+			maxRadius = Math.max(maxRadius, radius[i]);
+			listed[i] = !asleep[i];
+			if(asleep[i]) {
+				sleeping[sleepingCount++] = i;
+			}
+			else {
+				list[listCount++] = i;
+			}
+		}
+		cellSize = 2*maxRadius + MARGIN;
+		sleepingGrid.build(sleeping, sleepingCount, store, cellSize);
+		findIslands(store);
+		rebuild = false;
+		changes = 0;
+	}
+
+	/**
+	 * <b>findIslands</b>
+	 * <p>
+	 * Joins every pair of touching sleeping balls in a union-find forest, then
+	 * lists the members of each island together.
+	 * @param store - the balls
+	 */
+	private void findIslands(ParticleStore store) {
+		for(int k = 0; k < sleepingCount; k++) {
+			parent[sleeping[k]] = sleeping[k];
+		}
+		for(int k = 0; k < sleepingCount; k++) {
+			int a = sleeping[k];
+			int x = sleepingGrid.cellX[k];
+			int y = sleepingGrid.cellY[k];
+			for(int nx = x - 1; nx <= x + 1; nx++) {
+				for(int ny = y - 1; ny <= y + 1; ny++) {
+					int bucket = sleepingGrid.bucket(nx, ny);
+					for(int s = sleepingGrid.start[bucket]; s < sleepingGrid.start[bucket + 1]; s++) {
+						int j = sleepingGrid.sorted[s];
+						int b = sleeping[j];
+						if(b > a && sleepingGrid.cellX[j] == nx && sleepingGrid.cellY[j] == ny && near(store, a, b)) {
+							union(a, b);
+						}
+					}
+				}
+			}
+		}
+		//count the members of each root, then place them
+		Arrays.fill(islandStart, 0, knownSize + 1, 0);
+		for(int k = 0; k < sleepingCount; k++) {
+			int root = find(sleeping[k]);
+			islandOf[sleeping[k]] = root;
+			islandStart[root + 1]++;
+		}
+		for(int i = 0; i < knownSize; i++) {
+			islandStart[i + 1] += islandStart[i];
+		}
+		for(int k = 0; k < sleepingCount; k++) {
+			int i = sleeping[k];
+			islandMembers[islandStart[islandOf[i]]++] = i;
+		}
+		//each start now holds the next island's start, so shift them back
+		System.arraycopy(islandStart, 0, islandStart, 1, knownSize);
+		islandStart[0] = 0;
+	}
+
+	/**
+	 * <b>findPairs</b>
+	 * <p>
+	 * Finds the candidate pairs that involve at least one awake ball, waking the
+	 * sleeping balls that awake balls reach.
+	 * @param store - the balls
+	 */
+	private void findPairs(ParticleStore store) {
+		pairs.clear();
+		listedGrid.build(list, listCount, store, cellSize);
+		for(int k = 0; k < listCount; k++) {
+			int a = list[k];
+			int x = listedGrid.cellX[k];
+			int y = listedGrid.cellY[k];
+			//listed against listed: own cell and half the neighbours, so each pair once
+			int bucket = listedGrid.bucket(x, y);
+			for(int s = listedGrid.start[bucket]; s < listedGrid.start[bucket + 1]; s++) {
+				int j = listedGrid.sorted[s];
+				if(j > k && listedGrid.cellX[j] == x && listedGrid.cellY[j] == y) {
+					pairs.add(a, list[j]);
+				}
+			}
+			for(int n = 0; n < NEIGHBOUR_X.length; n++) {
+				int nx = x + NEIGHBOUR_X[n];
+				int ny = y + NEIGHBOUR_Y[n];
+				bucket = listedGrid.bucket(nx, ny);
+				for(int s = listedGrid.start[bucket]; s < listedGrid.start[bucket + 1]; s++) {
+					int j = listedGrid.sorted[s];
+					if(listedGrid.cellX[j] == nx && listedGrid.cellY[j] == ny) {
+						pairs.add(a, list[j]);
+					}
+				}
+			}
+			//awake against the sleeping grid: the whole neighbourhood
+			if(asleep[a] || sleepingCount == 0) {
+				continue;
+			}
+			for(int nx = x - 1; nx <= x + 1; nx++) {
+				for(int ny = y - 1; ny <= y + 1; ny++) {
+					bucket = sleepingGrid.bucket(nx, ny);
+					for(int s = sleepingGrid.start[bucket]; s < sleepingGrid.start[bucket + 1]; s++) {
+						int j = sleepingGrid.sorted[s];
+						int b = sleeping[j];
+						if(!listed[b] && sleepingGrid.cellX[j] == nx && sleepingGrid.cellY[j] == ny && near(store, a, b)) {
+							if(asleep[b]) {
+								wakeIsland(b);
+							}
+							pairs.add(a, b);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * <b>wakeIsland</b>
+	 * <p>
+	 * Wakes a ball in the sleeping grid and every ball in its island.
+	 * @param i - the index of the ball
+	 */
+	private void wakeIsland(int i) {
+		int root = islandOf[i];
+		for(int s = islandStart[root]; s < islandStart[root + 1]; s++) {
+			int member = islandMembers[s];
+			if(asleep[member]) {
+				asleep[member] = false;
+				restTicks[member] = 0;
+				woken[wokenCount++] = member;
+			}
+		}
+	}
+
+	/**
+	 * <b>near</b>
+	 * <p>
+	 * @return whether the boxes around two balls overlap (with MARGIN to spare)
+	 */
+	private boolean near(ParticleStore store, int a, int b) {
+		double reach = store.radius[a] + store.radius[b] + MARGIN;
+		return Math.abs(store.x[a] - store.x[b]) < reach && Math.abs(store.y[a] - store.y[b]) < reach;
+	}
+
+	private int find(int i) {
+		while(parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private void union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		if(rootA != rootB) {
+			parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+		}
+	}
+
+	/**
+	 * <b>Grid class</b>
+	 * <p>
+	 * A spatial hash of a list of balls, built with a counting sort like the one in
+	 * SpatialHashBroadPhase. Entries refer to positions in the list.
+	 */
+	private static class Grid {
+		int[] cellX = new int[0];
+		int[] cellY = new int[0];
+		int[] bucketOf = new int[0];
+		int[] start = new int[2];
+		int[] end = new int[2];
+		int[] sorted = new int[0];
+		int mask;
+
+		/**
+		 * Hashes the first count balls of a list by their cells.
+		 */
+		void build(int[] balls, int count, ParticleStore store, double cellSize) {
+			int buckets = Integer.highestOneBit(Math.max(count, 1)*2 - 1) << 1;
+			if(cellX.length < count) {
+				int capacity = Math.max(count, cellX.length*2);
+				cellX = new int[capacity];
+				cellY = new int[capacity];
+				bucketOf = new int[capacity];
+				sorted = new int[capacity];
+			}
+			if(start.length != buckets + 1) {
+				start = new int[buckets + 1];
+				end = new int[buckets + 1];
+			}
+			else {
+				Arrays.fill(start, 0);
+			}
+			mask = buckets - 1;
+			double[] x = store.x;
+			double[] y = store.y;
+			for(int k = 0; k < count; k++) {
+				int i = balls[k];
+				cellX[k] = (int) Math.floor(x[i]/cellSize);
+				cellY[k] = (int) Math.floor(y[i]/cellSize);
+				bucketOf[k] = bucket(cellX[k], cellY[k]);
+				start[bucketOf[k] + 1]++;
+			}
+			for(int b = 0; b < buckets; b++) {
+				start[b + 1] += start[b];
+			}
+			System.arraycopy(start, 0, end, 0, buckets + 1);
+			for(int k = count - 1; k >= 0; k--) {
+				sorted[--end[bucketOf[k] + 1]] = k;
+			}
+		}
+
+		/**
+		 * @return the bucket a cell hashes to
+		 */
+		int bucket(int x, int y) {
+			int h = x*0x8da6b343 ^ y*0xd8163841;
+			return (h ^ (h >>> 16)) & mask;
+		}
+	}//End of Grid class
+}//End of SleepSystem class
\ No newline at end of file
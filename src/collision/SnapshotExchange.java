@@ -0,0 +1,69 @@
+package collision;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <b>SnapshotExchange class</b>
+ * <p>
+ * Hands frames from the simulation thread to the renderer without either of them
+ * ever waiting for the other (a lock-free triple buffer).
+ * <p>
+ * There are three snapshots. The writer owns one (the back buffer) and the reader
+ * owns another (the front buffer). The third sits in the middle and always holds
+ * the most recently completed frame. When the writer finishes a frame it swaps 
+ * its back buffer with the middle one in a single atomic operation and marks the
+ * middle as new. When the reader wants a frame it swaps its front buffer with the
+ * middle one, but only if the middle is marked new; otherwise it keeps drawing the
+ * frame it already has. Neither side ever touches the buffer the other one owns,
+ * so a frame is never read while it is being written.
+ * <p>
+ * If the writer publishes several frames between two reads, only the newest one
+ * is drawn, which is exactly what a renderer running slower than the simulation
+ * wants. There must be only one writer thread and one reader thread.
+ */
+public class SnapshotExchange {
+	//Set in the middle index when it holds a frame the reader has not taken yet
+	private static final int FRESH = 4;
+	private static final int INDEX = 3;
+	
+	private final FrameSnapshot[] snapshots = {new FrameSnapshot(), new FrameSnapshot(), new FrameSnapshot()};
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int back = 0;
+	private int front = 2;
+	
+	/**
+	 * <b>getBack</b>
+	 * <p>
+	 * @return the snapshot the writer should fill in next
+	 */
+	public FrameSnapshot getBack() {
+		return snapshots[back];
+	}
+	
+	/**
+	 * <b>publish</b>
+	 * <p>
+	 * Makes the writer's finished snapshot the latest frame. Called by the writer.
+	 */
+	public void publish() {
+		int previous = middle.getAndSet(back | FRESH);
+		if(TickMetrics.ENABLED && (previous & FRESH) != 0) {
+			TickMetrics.FRAMES_DROPPED.increment();//replaced before the reader took it
+		}
+		back = previous & INDEX;
+	}
+	
+	/**
+	 * <b>getLatest</b>
+	 * <p>
+	 * Takes the newest published frame if there is one. Called by the reader. The
+	 * snapshot returned stays valid until the next call.
+	 * @return the newest frame
+	 */
+	public FrameSnapshot getLatest() {
+		if((middle.get() & FRESH) != 0) {
+			front = middle.getAndSet(front) & INDEX;
+		}
+		return snapshots[front];
+	}
+}//End of SnapshotExchange class
\ No newline at end of file
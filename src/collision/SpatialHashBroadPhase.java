@@ -0,0 +1,131 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * <b>SpatialHashBroadPhase class</b>
+ * <p>
+ * Finds candidate pairs by hashing every ball's center into a uniform grid.
+ * <p>
+ * The cell size is chosen from the largest ball radius so that two balls can only
+ * be touching if their cells are the same or adjacent. Each ball is then only 
+ * compared against the balls in its own cell and in four of its eight neighbouring
+ * cells (east, north east, south east and south). Visiting only that half of the
+ * neighbourhood means each unordered pair is reported exactly once.
+ * <p>
+ * Cells are stored in a hash table rather than a dense grid, so balls that leave
+ * the window do not need any special handling. The table is rebuilt every tick 
+ * with a counting sort into arrays that are reused between ticks, so no objects
+ * are allocated per ball or per pair. Because several cells can share a bucket,
+ * each ball also remembers its real cell coordinates and a candidate is only 
+ * reported if it actually lies in the cell being visited.
+ */
+public class SpatialHashBroadPhase implements BroadPhase {
+	//Extra room added to the cell size so that balls just touching are still neighbours
+	private final double MARGIN = 1;
+	
+	//Offsets of the cells visited around a ball's own cell
+	private final int[] NEIGHBOUR_X = {1, 1, 1, 0};
+	private final int[] NEIGHBOUR_Y = {-1, 0, 1, 1};
+
+	private int[] cellX = new int[0];
+	private int[] cellY = new int[0];
+	private int[] bucketOf = new int[0];
+	private int[] bucketStart = new int[0];
+	private int[] bucketEnd = new int[0];
+	private int[] sorted = new int[0];
+	private double cellSize;
+	
+	public void findPairs(ParticleStore store, PairList pairs) {
+		pairs.clear();
+		int count = store.size();
+		if(count < 2) {
+			return;
+		}
+		double maxRadius = 0;
+		double[] radius = store.radius;
+		for(int i = 0; i < count; i++) {
+			maxRadius = Math.max(maxRadius, radius[i]);
+		}
+		cellSize = 2*maxRadius + MARGIN;
+		buildTable(store, count);
+		int mask = bucketStart.length - 2;
+		for(int a = 0; a < count; a++) {
+			int x = cellX[a];
+			int y = cellY[a];
+			//Same cell: only balls after this one so each pair is seen once
+			int bucket = bucketOf[a];
+			for(int s = bucketStart[bucket]; s < bucketStart[bucket + 1]; s++) {
+				int b = sorted[s];
+				if(b > a && cellX[b] == x && cellY[b] == y) {
+					pairs.add(a, b);
+				}
+			}
+			for(int k = 0; k < NEIGHBOUR_X.length; k++) {
+				int nx = x + NEIGHBOUR_X[k];
+				int ny = y + NEIGHBOUR_Y[k];
+				bucket = hash(nx, ny) & mask;
+				for(int s = bucketStart[bucket]; s < bucketStart[bucket + 1]; s++) {
+					int b = sorted[s];
+					if(cellX[b] == nx && cellY[b] == ny) {
+						pairs.add(a, b);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <b>buildTable</b>
+	 * <p>
+	 * Works out every ball's cell and sorts the ball indices by bucket.
+	 * @param store - the balls to hash
+	 * @param count - the number of balls in use
+	 */
+	private void buildTable(ParticleStore store, int count) {
+		int buckets = Integer.highestOneBit(Math.max(count, 1)*2 - 1) << 1;
+		if(cellX.length < count) {
+			cellX = new int[count];
+			cellY = new int[count];
+			bucketOf = new int[count];
+			sorted = new int[count];
+		}
+		if(bucketStart.length != buckets + 1) {
+			bucketStart = new int[buckets + 1];
+			bucketEnd = new int[buckets + 1];
+		}
+		else {
+			Arrays.fill(bucketStart, 0);
+		}
+		int mask = buckets - 1;
+		double[] x = store.x;
+		double[] y = store.y;
+		for(int i = 0; i < count; i++) {
+			cellX[i] = (int) Math.floor(x[i]/cellSize);
+			cellY[i] = (int) Math.floor(y[i]/cellSize);
+			bucketOf[i] = hash(cellX[i], cellY[i]) & mask;
+			bucketStart[bucketOf[i] + 1]++;
+		}
+		for(int b = 0; b < buckets; b++) {
+			bucketStart[b + 1] += bucketStart[b];
+		}
+		//Place balls from the back so each bucket keeps ascending index order
+		System.arraycopy(bucketStart, 0, bucketEnd, 0, buckets + 1);
+		for(int i = count - 1; i >= 0; i--) {
+			sorted[--bucketEnd[bucketOf[i] + 1]] = i;
+		}
+	}
+	
+	/**
+	 * <b>hash</b>
+	 * <p>
+	 * Mixes a pair of cell coordinates into a well spread integer.
+	 * @param x - the horizontal cell coordinate
+	 * @param y - the vertical cell coordinate
+	 * @return the hash of the cell
+	 */
+	private static int hash(int x, int y) {
+		int h = x*0x8da6b343 ^ y*0xd8163841;
+		return h ^ (h >>> 16);
+	}
+}//End of SpatialHashBroadPhase class
\ No newline at end of file
@@ -0,0 +1,489 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * <b>SpatialIndex class</b>
+ * <p>
+ * Answers questions about where balls are without looking at every ball: which
+ * balls have their center in a rectangle (range), which ball is under a point
+ * (hit) and which balls are nearest to a point (nearest).
+ * <p>
+ * The index is a bounding volume hierarchy: a binary tree whose every node holds
+ * the box around all the balls below it, with at most LEAF_SIZE balls in each
+ * leaf. It is built by splitting the balls at the median center along the longer
+ * side of their box, over and over, so the tree is balanced and a query only
+ * visits the few branches whose boxes it touches, about log(n) nodes for a point.
+ * <p>
+ * Building the tree sorts the balls, so it is not done every tick. Instead refit
+ * keeps the shape of the tree and only recomputes the boxes, from the leaves up,
+ * which is a single pass over the balls and the nodes. As the balls move apart
+ * the boxes of a refitted tree overlap more and queries slow down, so the tree is
+ * rebuilt once the total area of its boxes has grown by REBUILD_GROWTH times
+ * since it was built, and whenever balls have been added or removed.
+ * <p>
+ * The index keeps its own copy of every center and radius, so it always answers
+ * for the moment it was last refitted, and copyFrom makes an identical index
+ * without rebuilding anything. SimulationEngine refits its index after every
+ * step (see setSpatialIndexing) and the simulation thread copies it into each
+ * FrameSnapshot it publishes, which gives other threads an index to query that
+ * matches the frame they are drawing and that nothing else writes to. Queries
+ * keep no state in the index, so a published copy can be queried by any number
+ * of threads at once. Balls are identified by their index in the ParticleStore
+ * (and the snapshot) the index was taken from.
+ */
+public class SpatialIndex {
+	//The most balls kept in one leaf
+	private final int LEAF_SIZE = 4;
+
+	//How much the boxes may grow through refitting before the tree is rebuilt
+	private final double REBUILD_GROWTH = 2;
+
+	//Deep enough for any balanced tree of fewer than 2^31 balls
+	private final int STACK_SIZE = 64;
+
+	private double[] centerX = new double[0];
+	private double[] centerY = new double[0];
+	private double[] radius = new double[0];
+	private int size;
+
+	//Node boxes, and for a leaf the run of items it holds, for an inner node its first child (count 0)
+	private double[] minX = new double[0];
+	private double[] minY = new double[0];
+	private double[] maxX = new double[0];
+	private double[] maxY = new double[0];
+	private int[] start = new int[0];
+	private int[] count = new int[0];
+	private int nodeCount;
+	private int[] items = new int[0];
+	private double builtArea;
+	private int rebuilds;
+
+	/**
+	 * <b>refit</b>
+	 * <p>
+	 * Brings the index up to date with the balls in a store, rebuilding the tree
+	 * if balls were added or removed or the refitted boxes have grown too much.
+	 * @param store - the balls to index
+	 */
+	public void refit(ParticleStore store) {
+		int balls = store.size();
+		if(balls != size) {
+			build(store);
+			return;
+		}
+		System.arraycopy(store.x, 0, centerX, 0, balls);
+		System.arraycopy(store.y, 0, centerY, 0, balls);
+		System.arraycopy(store.radius, 0, radius, 0, balls);
+		//children always come after their parent, so going backwards fits the leaves first
+		for(int node = nodeCount - 1; node >= 0; node--) {
+			if(count[node] > 0) {
+				fitLeaf(node);
+			}
+			else {
+				int left = start[node];
+				minX[node] = Math.min(minX[left], minX[left + 1]);
+				minY[node] = Math.min(minY[left], minY[left + 1]);
+				maxX[node] = Math.max(maxX[left], maxX[left + 1]);
+				maxY[node] = Math.max(maxY[left], maxY[left + 1]);
+			}
+		}
+		if(totalArea() > REBUILD_GROWTH*builtArea) {
+			build(store);
+		}
+	}
+
+	/**
+	 * <b>build</b>
+	 * <p>
+	 * Builds a new tree over the balls in a store.
+	 * @param store - the balls to index
+	 */
+	public void build(ParticleStore store) {
+		int balls = store.size();
+		if(centerX.length < balls) {
+			int capacity = Math.max(balls, centerX.length*2);
+			centerX = new double[capacity];
+			centerY = new double[capacity];
+			radius = new double[capacity];
+			items = new int[capacity];
+		}
+		//every leaf holds at least two balls, so there are fewer than 2 nodes per ball
+		int nodes = Math.max(1, 2*balls);
+		if(minX.length < nodes) {
+			growNodes(nodes);
+		}
+		System.arraycopy(store.x, 0, centerX, 0, balls);
+		System.arraycopy(store.y, 0, centerY, 0, balls);
+		System.arraycopy(store.radius, 0, radius, 0, balls);
+		for(int i = 0; i < balls; i++) {
+			items[i] = i;
+		}
+		size = balls;
+		nodeCount = 0;
+		if(balls > 0) {
+			nodeCount = 1;
+			split(0, 0, balls);
+		}
+		builtArea = totalArea();
+		rebuilds++;
+	}
+
+	/**
+	 * <b>split</b>
+	 * <p>
+	 * Fills in a node for a run of items, splitting it into two children at the
+	 * median center along the longer side if it holds more than a leaf's worth.
+	 * @param node - the node to fill in
+	 * @param first - the first item of the run
+	 * @param length - the number of items in the run
+	 */
+	private void split(int node, int first, int length) {
+		if(length <= LEAF_SIZE) {
+			start[node] = first;
+			count[node] = length;
+			fitLeaf(node);
+			return;
+		}
+		double lowX = Double.POSITIVE_INFINITY;
+		double lowY = Double.POSITIVE_INFINITY;
+		double highX = Double.NEGATIVE_INFINITY;
+		double highY = Double.NEGATIVE_INFINITY;
+		for(int k = first; k < first + length; k++) {
+			int i = items[k];
+			lowX = Math.min(lowX, centerX[i]);
+			lowY = Math.min(lowY, centerY[i]);
+			highX = Math.max(highX, centerX[i]);
+			highY = Math.max(highY, centerY[i]);
+		}
+		double[] key = highX - lowX >= highY - lowY ? centerX : centerY;
+		int half = length/2;
+		select(key, first, first + length - 1, first + half);
+		int left = nodeCount;
+		nodeCount += 2;
+		start[node] = left;
+		count[node] = 0;
+		split(left, first, half);
+		split(left + 1, first + half, length - half);
+		minX[node] = Math.min(minX[left], minX[left + 1]);
+		minY[node] = Math.min(minY[left], minY[left + 1]);
+		maxX[node] = Math.max(maxX[left], maxX[left + 1]);
+		maxY[node] = Math.max(maxY[left], maxY[left + 1]);
+	}
+
+	/**
+	 * <b>select</b>
+	 * <p>
+	 * Reorders a run of items so that the one at position nth is where it would
+	 * be if the run were sorted by key, with smaller keys before it and larger
+	 * ones after (quickselect).
+	 * @param key - the centers to order by
+	 * @param low - the first item of the run
+	 * @param high - the last item of the run
+	 * @param nth - the position to fill
+	 */
+	private void select(double[] key, int low, int high, int nth) {
+		while(high > low) {
+			double pivot = key[items[(low + high) >>> 1]];
+			int i = low;
+			int j = high;
+			while(i <= j) {
+				while(key[items[i]] < pivot) {
+					i++;
+				}
+				while(key[items[j]] > pivot) {
+					j--;
+				}
+				if(i <= j) {
+					int swap = items[i];
+					items[i] = items[j];
+					items[j] = swap;
+					i++;
+					j--;
+				}
+			}
+			if(nth <= j) {
+				high = j;
+			}
+			else if(nth >= i) {
+				low = i;
+			}
+			else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * <b>fitLeaf</b>
+	 * <p>
+	 * Sets a leaf's box to the box around its balls.
+	 * @param node - the leaf
+	 */
+	private void fitLeaf(int node) {
+		double lowX = Double.POSITIVE_INFINITY;
+		double lowY = Double.POSITIVE_INFINITY;
+		double highX = Double.NEGATIVE_INFINITY;
+		double highY = Double.NEGATIVE_INFINITY;
+		for(int k = start[node]; k < start[node] + count[node]; k++) {
+			int i = items[k];
+			lowX = Math.min(lowX, centerX[i] - radius[i]);
+			lowY = Math.min(lowY, centerY[i] - radius[i]);
+			highX = Math.max(highX, centerX[i] + radius[i]);
+			highY = Math.max(highY, centerY[i] + radius[i]);
+		}
+		minX[node] = lowX;
+		minY[node] = lowY;
+		maxX[node] = highX;
+		maxY[node] = highY;
+	}
+
+	/**
+	 * <b>totalArea</b>
+	 * <p>
+	 * @return the sum of the areas of every node's box
+	 */
+	private double totalArea() {
+		double area = 0;
+		for(int node = 0; node < nodeCount; node++) {
+			area += (maxX[node] - minX[node])*(maxY[node] - minY[node]);
+		}
+		return area;
+	}
+
+	/**
+	 * <b>growNodes</b>
+	 * <p>
+	 * Makes room for a number of nodes, keeping the current ones.
+	 * @param nodes - the number of nodes to make room for
+	 */
+	private void growNodes(int nodes) {
+		int capacity = Math.max(nodes, minX.length*2);
+		minX = Arrays.copyOf(minX, capacity);
+		minY = Arrays.copyOf(minY, capacity);
+		maxX = Arrays.copyOf(maxX, capacity);
+		maxY = Arrays.copyOf(maxY, capacity);
+		start = Arrays.copyOf(start, capacity);
+		count = Arrays.copyOf(count, capacity);
+	}
+
+	/**
+	 * <b>copyFrom</b>
+	 * <p>
+	 * Makes this index an exact copy of another, without rebuilding it.
+	 * @param other - the index to copy
+	 */
+	public void copyFrom(SpatialIndex other) {
+		if(centerX.length < other.size) {
+			int capacity = Math.max(other.size, centerX.length*2);
+			centerX = new double[capacity];
+			centerY = new double[capacity];
+			radius = new double[capacity];
+			items = new int[capacity];
+		}
+		if(minX.length < other.nodeCount) {
+			growNodes(other.nodeCount);
+		}
+		size = other.size;
+		nodeCount = other.nodeCount;
+		System.arraycopy(other.centerX, 0, centerX, 0, size);
+		System.arraycopy(other.centerY, 0, centerY, 0, size);
+		System.arraycopy(other.radius, 0, radius, 0, size);
+		System.arraycopy(other.items, 0, items, 0, size);
+		System.arraycopy(other.minX, 0, minX, 0, nodeCount);
+		System.arraycopy(other.minY, 0, minY, 0, nodeCount);
+		System.arraycopy(other.maxX, 0, maxX, 0, nodeCount);
+		System.arraycopy(other.maxY, 0, maxY, 0, nodeCount);
+		System.arraycopy(other.start, 0, start, 0, nodeCount);
+		System.arraycopy(other.count, 0, count, 0, nodeCount);
+		builtArea = other.builtArea;
+	}
+
+	/**
+	 * <b>clear</b>
+	 * <p>
+	 * Empties the index.
+	 */
+	public void clear() {
+		size = 0;
+		nodeCount = 0;
+	}
+
+	/**
+	 * <b>range</b>
+	 * <p>
+	 * Finds the balls whose centers lie in a rectangle, edges included.
+	 * @param left - the smallest x of the rectangle
+	 * @param top - the smallest y of the rectangle
+	 * @param right - the largest x of the rectangle
+	 * @param bottom - the largest y of the rectangle
+	 * @param result - where to put the balls found; any beyond its length are
+	 * counted but left out
+	 * @return the number of balls found
+	 */
+	public int range(double left, double top, double right, double bottom, int[] result) {
+		if(nodeCount == 0) {
+			return 0;
+		}
+		int found = 0;
+		int[] stack = new int[STACK_SIZE];
+		int depth = 0;
+		stack[depth++] = 0;
+		while(depth > 0) {
+			int node = stack[--depth];
+			//boxes include the radius, so they can only be larger than the box of the centers
+			if(maxX[node] < left || minX[node] > right || maxY[node] < top || minY[node] > bottom) {
+				continue;
+			}
+			if(count[node] == 0) {
+				stack[depth++] = start[node];
+				stack[depth++] = start[node] + 1;
+				continue;
+			}
+			for(int k = start[node]; k < start[node] + count[node]; k++) {
+				int i = items[k];
+				if(centerX[i] >= left && centerX[i] <= right && centerY[i] >= top && centerY[i] <= bottom) {
+					if(found < result.length) {
+						result[found] = i;
+					}
+					found++;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * <b>hit</b>
+	 * <p>
+	 * Finds the ball under a point.
+	 * @param pointX - the x position of the point
+	 * @param pointY - the y position of the point
+	 * @return the ball whose circle contains the point (the one with the nearest
+	 * center if several do), or -1 if there is none
+	 */
+	public int hit(double pointX, double pointY) {
+		int best = -1;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		if(nodeCount == 0) {
+			return best;
+		}
+		int[] stack = new int[STACK_SIZE];
+		int depth = 0;
+		stack[depth++] = 0;
+		while(depth > 0) {
+			int node = stack[--depth];
+			if(pointX < minX[node] || pointX > maxX[node] || pointY < minY[node] || pointY > maxY[node]) {
+				continue;
+			}
+			if(count[node] == 0) {
+				stack[depth++] = start[node];
+				stack[depth++] = start[node] + 1;
+				continue;
+			}
+			for(int k = start[node]; k < start[node] + count[node]; k++) {
+				int i = items[k];
+				double dx = pointX - centerX[i];
+				double dy = pointY - centerY[i];
+				double distance = dx*dx + dy*dy;
+				if(distance <= radius[i]*radius[i] && distance < bestDistance) {
+					best = i;
+					bestDistance = distance;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * <b>nearest</b>
+	 * <p>
+	 * Finds the balls whose centers are nearest to a point.
+	 * @param pointX - the x position of the point
+	 * @param pointY - the y position of the point
+	 * @param result - where to put the balls found, nearest first; as many are
+	 * found as it has room for
+	 * @return the number of balls found, the smaller of the length of result and
+	 * the number of balls
+	 */
+	public int nearest(double pointX, double pointY, int[] result) {
+		int k = Math.min(result.length, size);
+		if(k == 0) {
+			return 0;
+		}
+		double[] distances = new double[k];
+		int found = 0;
+		int[] stack = new int[STACK_SIZE];
+		int depth = 0;
+		stack[depth++] = 0;
+		while(depth > 0) {
+			int node = stack[--depth];
+			if(found == k && boxDistance(node, pointX, pointY) >= distances[k - 1]) {
+				continue;
+			}
+			if(count[node] == 0) {
+				int near = start[node];
+				int far = near + 1;
+				if(boxDistance(far, pointX, pointY) < boxDistance(near, pointX, pointY)) {
+					near = far;
+					far = start[node];
+				}
+				stack[depth++] = far;
+				stack[depth++] = near;//visited first, so the k nearest are found sooner
+				continue;
+			}
+			for(int item = start[node]; item < start[node] + count[node]; item++) {
+				int i = items[item];
+				double dx = pointX - centerX[i];
+				double dy = pointY - centerY[i];
+				double distance = dx*dx + dy*dy;
+				if(found == k && distance >= distances[k - 1]) {
+					continue;
+				}
+				//insertion into the sorted list of the best so far
+				int slot = found < k ? found++ : k - 1;
+				while(slot > 0 && distances[slot - 1] > distance) {
+					distances[slot] = distances[slot - 1];
+					result[slot] = result[slot - 1];
+					slot--;
+				}
+				distances[slot] = distance;
+				result[slot] = i;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * <b>boxDistance</b>
+	 * <p>
+	 * @param node - a node
+	 * @param pointX - the x position of a point
+	 * @param pointY - the y position of the point
+	 * @return the squared distance from the point to the node's box, 0 if it is
+	 * inside. No center of a ball in the node is nearer than this.
+	 */
+	private double boxDistance(int node, double pointX, double pointY) {
+		double dx = Math.max(0, Math.max(minX[node] - pointX, pointX - maxX[node]));
+		double dy = Math.max(0, Math.max(minY[node] - pointY, pointY - maxY[node]));
+		return dx*dx + dy*dy;
+	}
+
+	/**
+	 * <b>size</b>
+	 * <p>
+	 * @return size - the number of balls in the index
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * <b>getRebuilds</b>
+	 * <p>
+	 * @return rebuilds - the number of times the tree has been built from scratch
+	 */
+	public int getRebuilds() {
+		return rebuilds;
+	}
+}//End of SpatialIndex class
\ No newline at end of file
@@ -0,0 +1,175 @@
+package collision;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * <b>SpriteCache class</b>
+ * <p>
+ * Decodes each ball image once and shares it between every ball.
+ * <p>
+ * The first time an image is asked for, its PNG file is read and copied into a
+ * BufferedImage in the screen's own pixel format (a compatible image), which
+ * Java2D can draw without converting it each time and can keep in video memory.
+ * Later requests return the same image, so creating a ball never touches the disk.
+ * <p>
+ * Images are identified by small numbers rather than objects, so the state of a
+ * ball only needs to say which image it shows. If an image file cannot be read,
+ * an empty (fully transparent) image of the same size as the balls is used, just 
+ * as an ImageIcon with a missing file draws nothing.
+ * <p>
+ * Balls of other sizes than the images show them scaled. Scaled copies up to 
+ * MAX_CACHED_SIZE pixels wide are made once per size (with bilinear filtering)
+ * and kept; larger balls are rare enough, and their copies big enough, that they
+ * are better scaled while drawing.
+ * <p>
+ * The superman.png and batman.png images must be in the project directory for the
+ * images to appear.
+ */
+public class SpriteCache {
+	
+	/**
+	 * The Superman logo, shown by regular balls and by CollisionMonster balls by
+	 * default
+	 */
+	public static final int SUPERMAN = 0;
+	
+	/**
+	 * The Batman logo, shown by CollisionMonster balls after an odd number of 
+	 * collisions
+	 */
+	public static final int BATMAN = 1;
+	
+	/**
+	 * The largest image size whose scaled copies are kept
+	 */
+	public static final int MAX_CACHED_SIZE = 256;
+	
+	private static final String[] FILES = {"superman.png", "batman.png"};
+	private static final int MISSING_SIZE = 45;
+	private static final BufferedImage[] sprites = new BufferedImage[FILES.length];
+	private static final BufferedImage[][] scaled = new BufferedImage[FILES.length][MAX_CACHED_SIZE + 1];
+	
+	/**
+	 * <b>get</b>
+	 * <p>
+	 * @param sprite - SUPERMAN or BATMAN
+	 * @return the decoded image
+	 */
+	public static synchronized BufferedImage get(int sprite) {
+		if(sprites[sprite] == null) {
+			sprites[sprite] = load(FILES[sprite]);
+		}
+		return sprites[sprite];
+	}
+	
+	/**
+	 * <b>get</b>
+	 * <p>
+	 * @param sprite - SUPERMAN or BATMAN
+	 * @param size - the width and height wanted
+	 * @return the decoded image scaled to the size, which is only kept if it is at
+	 * most MAX_CACHED_SIZE
+	 */
+	public static synchronized BufferedImage get(int sprite, int size) {
+		BufferedImage image = get(sprite);
+		if(size < 1 || (image.getWidth() == size && image.getHeight() == size)) {
+			return image;
+		}
+		if(size > MAX_CACHED_SIZE) {
+			return scale(image, size);
+		}
+		if(scaled[sprite][size] == null) {
+			scaled[sprite][size] = scale(image, size);
+		}
+		return scaled[sprite][size];
+	}
+	
+	/**
+	 * <b>imageSize</b>
+	 * <p>
+	 * @param radius - the radius of a ball
+	 * @return the width and height of the ball's image: its diameter, counting the
+	 * pixel at the center (see FrameSnapshot.imageSize)
+	 */
+	public static int imageSize(double radius) {
+		return FrameSnapshot.imageSize(radius);
+	}
+	
+	/**
+	 * <b>spriteOf</b>
+	 * <p>
+	 * @param store - the store holding the ball
+	 * @param i - the index of the ball
+	 * @return the image the ball is currently showing, SUPERMAN or BATMAN (see
+	 * FrameSnapshot.spriteOf)
+	 */
+	public static int spriteOf(ParticleStore store, int i) {
+		return FrameSnapshot.spriteOf(store, i);
+	}
+	
+	/**
+	 * <b>load</b>
+	 * <p>
+	 * Reads an image file and copies it into a compatible image.
+	 * @param file - the name of the image file
+	 * @return the image, or an empty image if the file could not be read
+	 */
+	private static BufferedImage load(String file) {
+		BufferedImage decoded = null;
+		try {
+			decoded = ImageIO.read(new File(file));
+		}
+		catch(IOException e) {
+			//Falls through to the empty image below
+		}
+		int width = decoded != null ? decoded.getWidth() : MISSING_SIZE;
+		int height = decoded != null ? decoded.getHeight() : MISSING_SIZE;
+		BufferedImage sprite;
+		if(GraphicsEnvironment.isHeadless()) {
+			sprite = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		}
+		else {
+			GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+					.getDefaultScreenDevice().getDefaultConfiguration();
+			sprite = config.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+		}
+		if(decoded != null) {
+			Graphics2D g = sprite.createGraphics();
+			g.drawImage(decoded, 0, 0, null);
+			g.dispose();
+		}
+		return sprite;
+	}
+	
+	/**
+	 * <b>scale</b>
+	 * <p>
+	 * @param image - a decoded image
+	 * @param size - the width and height wanted
+	 * @return a copy of the image scaled to the size
+	 */
+	private static BufferedImage scale(BufferedImage image, int size) {
+		BufferedImage copy;
+		if(GraphicsEnvironment.isHeadless()) {
+			copy = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB_PRE);
+		}
+		else {
+			GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+					.getDefaultScreenDevice().getDefaultConfiguration();
+			copy = config.createCompatibleImage(size, size, Transparency.TRANSLUCENT);
+		}
+		Graphics2D g = copy.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(image, 0, 0, size, size, null);
+		g.dispose();
+		return copy;
+	}
+}//End of SpriteCache class
\ No newline at end of file
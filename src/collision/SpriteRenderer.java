@@ -0,0 +1,118 @@
+package collision;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * <b>SpriteRenderer class</b>
+ * <p>
+ * Draws a FrameSnapshot of the balls through an accelerated back buffer.
+ * <p>
+ * Swing components cannot own a BufferStrategy (only windows and canvases can),
+ * so the renderer keeps its own VolatileImage the size of the component. Each 
+ * frame every ball's cached sprite (see SpriteCache) is drawn into it, and the 
+ * finished frame is copied to the screen with a single drawImage. A VolatileImage
+ * lives in video memory, so both steps can be done by the graphics card.
+ * <p>
+ * The operating system may throw away the contents of a VolatileImage at any time
+ * (for example when the screen mode changes). The renderer checks for this after
+ * every frame and draws the frame again if it happened.
+ * <p>
+ * Balls that are not the size of the images are drawn with a scaled copy from
+ * SpriteCache, which the renderer also keeps in its own table indexed by size so
+ * that finding it costs no more than an array read. Balls larger than
+ * SpriteCache.MAX_CACHED_SIZE are scaled while drawing.
+ * <p>
+ * If the snapshot holds the balls' previous positions, each ball is drawn part of
+ * the way between its previous and current position, depending on how long ago 
+ * the state was reached (see FrameSnapshot.getAlpha). Frames drawn between ticks
+ * then move the balls smoothly instead of in steps of a whole tick.
+ */
+public class SpriteRenderer {
+	private VolatileImage backBuffer;
+	private final BufferedImage[][] scaled = new BufferedImage[2][SpriteCache.MAX_CACHED_SIZE + 1];
+	
+	/**
+	 * <b>paint</b>
+	 * <p>
+	 * Draws a frame showing every ball in the snapshot.
+	 * @param component - the component being painted
+	 * @param page - the component's graphics
+	 * @param snapshot - the balls to draw
+	 */
+	public void paint(Component component, Graphics page, FrameSnapshot snapshot) {
+		int width = component.getWidth();
+		int height = component.getHeight();
+		if(width <= 0 || height <= 0) {
+			return;
+		}
+		GraphicsConfiguration config = component.getGraphicsConfiguration();
+		if(config == null) {
+			drawBalls(page, component.getBackground(), width, height, snapshot);
+			return;
+		}
+		do {
+			if(backBuffer == null || backBuffer.getWidth() != width 
+					|| backBuffer.getHeight() != height
+					|| backBuffer.validate(config) == VolatileImage.IMAGE_INCOMPATIBLE) {
+				if(backBuffer != null) {
+					backBuffer.flush();
+				}
+				backBuffer = config.createCompatibleVolatileImage(width, height);
+			}
+			Graphics2D g = backBuffer.createGraphics();
+			drawBalls(g, component.getBackground(), width, height, snapshot);
+			g.dispose();
+			page.drawImage(backBuffer, 0, 0, null);
+		} while(backBuffer.contentsLost());
+	}
+	
+	/**
+	 * <b>drawBalls</b>
+	 * <p>
+	 * Clears the area and draws every ball's sprite at its position.
+	 * @param g - the graphics to draw with
+	 * @param background - the color to clear to
+	 * @param width - the width of the area
+	 * @param height - the height of the area
+	 * @param snapshot - the balls to draw
+	 */
+	private void drawBalls(Graphics g, Color background, int width, int height, FrameSnapshot snapshot) {
+		g.setColor(background);
+		g.fillRect(0, 0, width, height);
+		float[] x = snapshot.x;
+		float[] y = snapshot.y;
+		float[] previousX = snapshot.previousX;
+		float[] previousY = snapshot.previousY;
+		short[] sizes = snapshot.size;
+		byte[] sprites = snapshot.sprite;
+		int count = snapshot.count;
+		int previousCount = snapshot.previousCount;
+		float alpha = snapshot.getAlpha(System.nanoTime());
+		for(int i = 0; i < count; i++) {
+			int drawX = (int) x[i];
+			int drawY = (int) y[i];
+			if(i < previousCount && alpha < 1) {
+				drawX = (int) (previousX[i] + (x[i] - previousX[i])*alpha);
+				drawY = (int) (previousY[i] + (y[i] - previousY[i])*alpha);
+			}
+			int sprite = sprites[i] == SpriteCache.BATMAN ? SpriteCache.BATMAN : SpriteCache.SUPERMAN;
+			int size = sizes[i];
+			if(size > SpriteCache.MAX_CACHED_SIZE) {
+				g.drawImage(SpriteCache.get(sprite), drawX, drawY, size, size, null);
+				continue;
+			}
+			BufferedImage image = scaled[sprite][size];
+			if(image == null) {
+				image = SpriteCache.get(sprite, size);
+				scaled[sprite][size] = image;
+			}
+			g.drawImage(image, drawX, drawY, null);
+		}
+	}
+}//End of SpriteRenderer class
\ No newline at end of file
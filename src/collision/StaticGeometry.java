@@ -0,0 +1,654 @@
+package collision;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <b>StaticGeometry class</b>
+ * <p>
+ * The fixed obstacles balls bounce off: the walls of the world and any line
+ * segments and polygons placed in it, such as a maze or a container.
+ * <p>
+ * Everything is made of line segments of two kinds. A plain segment is solid
+ * from both sides and has round ends, so a ball can bounce off either face or
+ * off a corner; mazes and obstacles are made of these, and polygons are closed
+ * rings of them. A wall is a side of a container: it keeps balls on the side
+ * to its right when walking from its first point to its second as drawn on
+ * screen (with y growing downwards), all along its line, so a ball that has got
+ * past it anywhere is turned back. The world's rectangle is four walls going
+ * clockwise (see addBox), which is what every SimulationEngine starts with.
+ * <p>
+ * A ball touches a segment when its center is no further than its radius from
+ * it. It only bounces if it is moving towards the segment: the part of its speed
+ * along the segment's normal is reversed and the rest is kept, and it is moved
+ * once more along the normal to free it, just as the walls have always done.
+ * A ball already moving away is left alone, so it can never be turned back into
+ * an obstacle it is leaving.
+ * <p>
+ * The plain segments are indexed once into a bounding volume hierarchy (the
+ * same median split tree as SpatialIndex, over the segments' boxes), built on
+ * the first bounce after the geometry changes. Each ball then only looks at the
+ * segments whose boxes its own box overlaps, about log(n) nodes for n segments,
+ * so thousands of obstacles cost little more than the walls. Walls have no box:
+ * a ball checks every wall, unless it is well inside the rectangle that the
+ * level and upright walls leave clear, as almost every ball is. A ball that
+ * moves further than its diameter in one step can pass through a plain
+ * segment; the SimulationClock splits fast ticks into sub-steps to prevent this.
+ * <p>
+ * Geometry can be built in code or loaded from a file (see load), and must be
+ * complete before it is given to an engine. It is used on the thread running
+ * the engine, and must not be shared by engines running on different threads.
+ * Event driven mode does not use it and keeps to the world's rectangle.
+ */
+public class StaticGeometry {
+	//The most segments kept in one leaf
+	private final int LEAF_SIZE = 4;
+
+	//Deep enough for any balanced tree of fewer than 2^31 segments
+	private final int STACK_SIZE = 64;
+
+	private double[] startX = new double[16];
+	private double[] startY = new double[16];
+	private double[] endX = new double[16];
+	private double[] endY = new double[16];
+	//Unit direction from start to end, and length
+	private double[] unitX = new double[16];
+	private double[] unitY = new double[16];
+	private double[] length = new double[16];
+	private boolean[] oneSided = new boolean[16];
+	private int segments;
+	//The normal of each wall, pointing to where balls belong, and the value of (x, y).normal along its line
+	private double[] wallNormalX = new double[4];
+	private double[] wallNormalY = new double[4];
+	private double[] wallOffset = new double[4];
+	private int wallCount;
+	//The rectangle no level or upright wall reaches into, and whether any wall is neither
+	private double clearLeft = Double.NEGATIVE_INFINITY;
+	private double clearTop = Double.NEGATIVE_INFINITY;
+	private double clearRight = Double.POSITIVE_INFINITY;
+	private double clearBottom = Double.POSITIVE_INFINITY;
+	private boolean slanted;
+
+	//Node boxes, and for a leaf the run of items it holds, for an inner node its first child (count 0)
+	private double[] minX = new double[0];
+	private double[] minY = new double[0];
+	private double[] maxX = new double[0];
+	private double[] maxY = new double[0];
+	private int[] start = new int[0];
+	private int[] count = new int[0];
+	private int nodeCount;
+	private int[] items = new int[0];
+	private boolean indexed;
+	private final int[] stack = new int[STACK_SIZE];
+
+	/**
+	 * <b>box</b>
+	 * <p>
+	 * Creates the geometry of an empty world: four walls around its rectangle.
+	 * @param width - the width of the world
+	 * @param height - the height of the world
+	 * @return the geometry
+	 */
+	public static StaticGeometry box(double width, double height) {
+		return new StaticGeometry().addBox(0, 0, width, height);
+	}
+
+	/**
+	 * <b>load</b>
+	 * <p>
+	 * Reads geometry from a text file with one shape per line. Blank lines and
+	 * lines starting with # are ignored. The shapes are:
+	 * <ul>
+	 * <li>bounds - the walls of the world's rectangle</li>
+	 * <li>box left top right bottom - walls keeping balls inside a rectangle</li>
+	 * <li>segment x1 y1 x2 y2 - a plain segment</li>
+	 * <li>wall x1 y1 x2 y2 - a one-sided wall</li>
+	 * <li>polygon x1 y1 x2 y2 x3 y3 ... - a closed polygon of plain segments</li>
+	 * </ul>
+	 * A file that does not mention bounds leaves the world open at its edges.
+	 * @param file - the file to read
+	 * @param width - the width of the world
+	 * @param height - the height of the world
+	 * @return the geometry
+	 * @throws IOException if the file cannot be read or a line is not understood
+	 */
+	public static StaticGeometry load(Path file, double width, double height) throws IOException {
+		StaticGeometry geometry = new StaticGeometry();
+		List<String> lines = Files.readAllLines(file);
+		for(int n = 0; n < lines.size(); n++) {
+			String line = lines.get(n).trim();
+			if(line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] words = line.split("\\s+");
+			double[] numbers = new double[words.length - 1];
+			try {
+				for(int k = 1; k < words.length; k++) {
+					numbers[k - 1] = Double.parseDouble(words[k]);
+				}
+			}
+			catch(NumberFormatException e) {
+				throw new IOException("Line " + (n + 1) + " has a value that is not a number: " + file);
+			}
+			switch(words[0]) {
+				case "bounds":
+					geometry.addBox(0, 0, width, height);
+					break;
+				case "box":
+					expect(numbers, 4, n, file);
+					geometry.addBox(numbers[0], numbers[1], numbers[2], numbers[3]);
+					break;
+				case "segment":
+					expect(numbers, 4, n, file);
+					geometry.addSegment(numbers[0], numbers[1], numbers[2], numbers[3]);
+					break;
+				case "wall":
+					expect(numbers, 4, n, file);
+					geometry.addWall(numbers[0], numbers[1], numbers[2], numbers[3]);
+					break;
+				case "polygon":
+					if(numbers.length < 6 || numbers.length % 2 != 0) {
+						throw new IOException("Line " + (n + 1) + " needs at least 3 points: " + file);
+					}
+					geometry.addPolygon(numbers);
+					break;
+				default:
+					throw new IOException("Line " + (n + 1) + " has an unknown shape " + words[0] + ": " + file);
+			}
+		}
+		return geometry;
+	}
+
+	/**
+	 * <b>expect</b>
+	 * <p>
+	 * Checks that a line of a geometry file has the right number of values.
+	 * @param numbers - the values on the line
+	 * @param expected - the number of values needed
+	 * @param n - the index of the line
+	 * @param file - the file being read
+	 * @throws IOException if the number is wrong
+	 */
+	private static void expect(double[] numbers, int expected, int n, Path file) throws IOException {
+		if(numbers.length != expected) {
+			throw new IOException("Line " + (n + 1) + " needs " + expected + " numbers: " + file);
+		}
+	}
+
+	/**
+	 * <b>addBox</b>
+	 * <p>
+	 * Adds four walls that keep balls inside a rectangle.
+	 * @param left - the smallest x of the rectangle
+	 * @param top - the smallest y of the rectangle
+	 * @param right - the largest x of the rectangle
+	 * @param bottom - the largest y of the rectangle
+	 * @return this geometry
+	 */
+	public StaticGeometry addBox(double left, double top, double right, double bottom) {
+		addWall(left, top, right, top);
+		addWall(right, top, right, bottom);
+		addWall(right, bottom, left, bottom);
+		addWall(left, bottom, left, top);
+		return this;
+	}
+
+	/**
+	 * <b>addPolygon</b>
+	 * <p>
+	 * Adds a closed polygon of plain segments.
+	 * @param points - the x and y of each corner in turn
+	 * @return this geometry
+	 */
+	public StaticGeometry addPolygon(double... points) {
+		int corners = points.length/2;
+		for(int c = 0; c < corners; c++) {
+			int next = (c + 1) % corners;
+			addSegment(points[2*c], points[2*c + 1], points[2*next], points[2*next + 1]);
+		}
+		return this;
+	}
+
+	/**
+	 * <b>addSegment</b>
+	 * <p>
+	 * Adds a plain segment, solid from both sides.
+	 * @param x1 - the x of the first point
+	 * @param y1 - the y of the first point
+	 * @param x2 - the x of the second point
+	 * @param y2 - the y of the second point
+	 * @return this geometry
+	 */
+	public StaticGeometry addSegment(double x1, double y1, double x2, double y2) {
+		add(x1, y1, x2, y2, false);
+		return this;
+	}
+
+	/**
+	 * <b>addWall</b>
+	 * <p>
+	 * Adds a one-sided wall keeping balls on the side to its right.
+	 * @param x1 - the x of the first point
+	 * @param y1 - the y of the first point
+	 * @param x2 - the x of the second point
+	 * @param y2 - the y of the second point
+	 * @return this geometry
+	 */
+	public StaticGeometry addWall(double x1, double y1, double x2, double y2) {
+		add(x1, y1, x2, y2, true);
+		return this;
+	}
+
+	/**
+	 * <b>add</b>
+	 * <p>
+	 * Adds a segment of either kind.
+	 * @param x1 - the x of the first point
+	 * @param y1 - the y of the first point
+	 * @param x2 - the x of the second point
+	 * @param y2 - the y of the second point
+	 * @param wall - whether the segment is a one-sided wall
+	 */
+	private void add(double x1, double y1, double x2, double y2, boolean wall) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double size = Math.sqrt(dx*dx + dy*dy);
+		if(size == 0) {
+			throw new IllegalArgumentException("A segment needs two different points: " + x1 + ", " + y1);
+		}
+		if(segments == startX.length) {
+			int capacity = segments*2;
+			startX = Arrays.copyOf(startX, capacity);
+			startY = Arrays.copyOf(startY, capacity);
+			endX = Arrays.copyOf(endX, capacity);
+			endY = Arrays.copyOf(endY, capacity);
+			unitX = Arrays.copyOf(unitX, capacity);
+			unitY = Arrays.copyOf(unitY, capacity);
+			length = Arrays.copyOf(length, capacity);
+			oneSided = Arrays.copyOf(oneSided, capacity);
+		}
+		startX[segments] = x1;
+		startY[segments] = y1;
+		endX[segments] = x2;
+		endY[segments] = y2;
+		unitX[segments] = dx/size;
+		unitY[segments] = dy/size;
+		length[segments] = size;
+		oneSided[segments] = wall;
+		if(wall) {
+			if(wallCount == wallOffset.length) {
+				wallNormalX = Arrays.copyOf(wallNormalX, wallCount*2);
+				wallNormalY = Arrays.copyOf(wallNormalY, wallCount*2);
+				wallOffset = Arrays.copyOf(wallOffset, wallCount*2);
+			}
+			wallNormalX[wallCount] = -unitY[segments];
+			wallNormalY[wallCount] = unitX[segments];
+			wallOffset[wallCount] = x1*wallNormalX[wallCount] + y1*wallNormalY[wallCount];
+			wallCount++;
+			if(dy == 0) {
+				if(dx > 0) {
+					clearTop = Math.max(clearTop, y1);
+				}
+				else {
+					clearBottom = Math.min(clearBottom, y1);
+				}
+			}
+			else if(dx == 0) {
+				if(dy < 0) {
+					clearLeft = Math.max(clearLeft, x1);
+				}
+				else {
+					clearRight = Math.min(clearRight, x1);
+				}
+			}
+			else {
+				slanted = true;
+			}
+		}
+		segments++;
+		indexed = false;
+	}
+
+	/**
+	 * <b>bounce</b>
+	 * <p>
+	 * Bounces a ball that has just been moved by its speed off every wall and
+	 * segment it is touching and moving towards.
+	 * @param store - the balls
+	 * @param k - the index of the ball
+	 * @param dt - the length of the step
+	 */
+	public void bounce(ParticleStore store, int k, double dt) {
+		bounce(store, k, k + 1, dt);
+	}
+
+	/**
+	 * <b>bounce</b>
+	 * <p>
+	 * Bounces a run of balls, as bounce does for each of them.
+	 * @param store - the balls
+	 * @param from - the index of the first ball
+	 * @param to - the index after the last ball
+	 * @param dt - the length of the step
+	 */
+	public void bounce(ParticleStore store, int from, int to, double dt) {
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] radius = store.radius;
+		double left = clearLeft;
+		double top = clearTop;
+		double right = clearRight;
+		double bottom = clearBottom;
+		boolean walls = wallCount > 0;
+		boolean plain = segments > wallCount;
+		for(int k = from; k < to; k++) {
+			double r = radius[k];
+			if(walls && (slanted || x[k] - r <= left || y[k] - r <= top || x[k] + r >= right || y[k] + r >= bottom)) {
+				bounceWalls(store, k, dt);
+			}
+			if(plain) {
+				bounceSegments(store, k, dt);
+			}
+		}
+	}
+
+	/**
+	 * <b>bounceWalls</b>
+	 * <p>
+	 * Bounces a ball off the walls it has reached.
+	 * @param store - the balls
+	 * @param k - the index of the ball
+	 * @param dt - the length of the step
+	 */
+	private void bounceWalls(ParticleStore store, int k, double dt) {
+		double r = store.radius[k];
+		for(int w = 0; w < wallCount; w++) {
+			//written so that the world's walls make exactly the comparisons they always have
+			if(store.x[k]*wallNormalX[w] + store.y[k]*wallNormalY[w] - r <= wallOffset[w]) {
+				reflect(store, k, wallNormalX[w], wallNormalY[w], dt);
+			}
+		}
+	}
+
+	/**
+	 * <b>bounceSegments</b>
+	 * <p>
+	 * Bounces a ball off the plain segments near it, found through the tree.
+	 * @param store - the balls
+	 * @param k - the index of the ball
+	 * @param dt - the length of the step
+	 */
+	private void bounceSegments(ParticleStore store, int k, double dt) {
+		if(!indexed) {
+			index();
+		}
+		double r = store.radius[k];
+		double left = store.x[k] - r;
+		double top = store.y[k] - r;
+		double right = store.x[k] + r;
+		double bottom = store.y[k] + r;
+		int depth = 0;
+		stack[depth++] = 0;
+		while(depth > 0) {
+			int node = stack[--depth];
+			if(maxX[node] < left || minX[node] > right || maxY[node] < top || minY[node] > bottom) {
+				continue;
+			}
+			if(count[node] == 0) {
+				stack[depth++] = start[node];
+				stack[depth++] = start[node] + 1;
+				continue;
+			}
+			for(int item = start[node]; item < start[node] + count[node]; item++) {
+				bounceSegment(store, k, items[item], dt);
+			}
+		}
+	}
+
+	/**
+	 * <b>bounceSegment</b>
+	 * <p>
+	 * Bounces a ball off a plain segment if it is touching it. Alongside the
+	 * segment, the ball is kept on the side it was on before its last move, so
+	 * that one pushed or moved over the line is still turned back; beyond the
+	 * segment's ends, it bounces off the nearest end.
+	 * @param store - the balls
+	 * @param k - the index of the ball
+	 * @param s - the index of the segment
+	 * @param dt - the length of the step
+	 */
+	private void bounceSegment(ParticleStore store, int k, int s, double dt) {
+		double r = store.radius[k];
+		double offsetX = store.x[k] - startX[s];
+		double offsetY = store.y[k] - startY[s];
+		double along = offsetX*unitX[s] + offsetY*unitY[s];
+		double normalX;
+		double normalY;
+		if(along > 0 && along < length[s]) {
+			double side = (offsetX - store.vx[k]*dt)*-unitY[s] + (offsetY - store.vy[k]*dt)*unitX[s];
+			normalX = side < 0 ? unitY[s] : -unitY[s];
+			normalY = side < 0 ? -unitX[s] : unitX[s];
+			if(offsetX*normalX + offsetY*normalY > r) {
+				return;
+			}
+		}
+		else {
+			double end = along <= 0 ? 0 : length[s];
+			double awayX = offsetX - unitX[s]*end;
+			double awayY = offsetY - unitY[s]*end;
+			double distanceSquared = awayX*awayX + awayY*awayY;
+			if(distanceSquared > r*r || distanceSquared == 0) {
+				return;
+			}
+			double distance = Math.sqrt(distanceSquared);
+			normalX = awayX/distance;
+			normalY = awayY/distance;
+		}
+		reflect(store, k, normalX, normalY, dt);
+	}
+
+	/**
+	 * <b>reflect</b>
+	 * <p>
+	 * Reverses the part of a ball's speed along a normal, if it is moving against
+	 * the normal, and moves the ball once more along it.
+	 * @param store - the balls
+	 * @param k - the index of the ball
+	 * @param normalX - the x of the unit normal, pointing to where the ball belongs
+	 * @param normalY - the y of the unit normal
+	 * @param dt - the length of the step
+	 */
+	private void reflect(ParticleStore store, int k, double normalX, double normalY, double dt) {
+		double[] vx = store.vx;
+		double[] vy = store.vy;
+		double approach = vx[k]*normalX + vy[k]*normalY;
+		if(approach >= 0) {
+			return;
+		}
+		vx[k] -= 2*approach*normalX;
+		vy[k] -= 2*approach*normalY;
+		double away = vx[k]*normalX + vy[k]*normalY;
+		store.x[k] += away*normalX*dt;
+		store.y[k] += away*normalY*dt;
+	}
+
+	/**
+	 * <b>index</b>
+	 * <p>
+	 * Builds the tree over the plain segments.
+	 */
+	private void index() {
+		if(items.length < segments) {
+			items = new int[segments];
+		}
+		int nodes = Math.max(1, 2*segments);
+		if(minX.length < nodes) {
+			minX = new double[nodes];
+			minY = new double[nodes];
+			maxX = new double[nodes];
+			maxY = new double[nodes];
+			start = new int[nodes];
+			count = new int[nodes];
+		}
+		int plain = 0;
+		for(int s = 0; s < segments; s++) {
+			if(!oneSided[s]) {
+				items[plain++] = s;
+			}
+		}
+		nodeCount = 0;
+		if(plain > 0) {
+			nodeCount = 1;
+			split(0, 0, plain);
+		}
+		indexed = true;
+	}
+
+	/**
+	 * <b>split</b>
+	 * <p>
+	 * Fills in a node for a run of segments, splitting it into two children at
+	 * the median midpoint along the longer side if it holds more than a leaf's
+	 * worth.
+	 * @param node - the node to fill in
+	 * @param first - the first item of the run
+	 * @param runLength - the number of items in the run
+	 */
+	private void split(int node, int first, int runLength) {
+		double lowX = Double.POSITIVE_INFINITY;
+		double lowY = Double.POSITIVE_INFINITY;
+		double highX = Double.NEGATIVE_INFINITY;
+		double highY = Double.NEGATIVE_INFINITY;
+		for(int k = first; k < first + runLength; k++) {
+			int s = items[k];
+			lowX = Math.min(lowX, Math.min(startX[s], endX[s]));
+			lowY = Math.min(lowY, Math.min(startY[s], endY[s]));
+			highX = Math.max(highX, Math.max(startX[s], endX[s]));
+			highY = Math.max(highY, Math.max(startY[s], endY[s]));
+		}
+		minX[node] = lowX;
+		minY[node] = lowY;
+		maxX[node] = highX;
+		maxY[node] = highY;
+		if(runLength <= LEAF_SIZE) {
+			start[node] = first;
+			count[node] = runLength;
+			return;
+		}
+		boolean acrossX = highX - lowX >= highY - lowY;
+		int half = runLength/2;
+		select(acrossX, first, first + runLength - 1, first + half);
+		int left = nodeCount;
+		nodeCount += 2;
+		start[node] = left;
+		count[node] = 0;
+		split(left, first, half);
+		split(left + 1, first + half, runLength - half);
+	}
+
+	/**
+	 * <b>select</b>
+	 * <p>
+	 * Reorders a run of segments so that the one at position nth is where it
+	 * would be if the run were sorted by midpoint, with smaller ones before it and
+	 * larger ones after (quickselect).
+	 * @param acrossX - true to order by x, false by y
+	 * @param low - the first item of the run
+	 * @param high - the last item of the run
+	 * @param nth - the position to fill
+	 */
+	private void select(boolean acrossX, int low, int high, int nth) {
+		while(high > low) {
+			double pivot = middle(acrossX, items[(low + high) >>> 1]);
+			int i = low;
+			int j = high;
+			while(i <= j) {
+				while(middle(acrossX, items[i]) < pivot) {
+					i++;
+				}
+				while(middle(acrossX, items[j]) > pivot) {
+					j--;
+				}
+				if(i <= j) {
+					int swap = items[i];
+					items[i] = items[j];
+					items[j] = swap;
+					i++;
+					j--;
+				}
+			}
+			if(nth <= j) {
+				high = j;
+			}
+			else if(nth >= i) {
+				low = i;
+			}
+			else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * <b>middle</b>
+	 * <p>
+	 * @param acrossX - true for the x of the midpoint, false for its y
+	 * @param s - the index of a segment
+	 * @return the segment's midpoint along that axis
+	 */
+	private double middle(boolean acrossX, int s) {
+		return acrossX ? startX[s] + endX[s] : startY[s] + endY[s];
+	}
+
+	/**
+	 * <b>size</b>
+	 * <p>
+	 * @return segments - the number of segments
+	 */
+	public int size() {
+		return segments;
+	}
+
+	/**
+	 * <b>getStartX</b>
+	 * <p>
+	 * @param s - the index of a segment
+	 * @return the x of the segment's first point
+	 */
+	public double getStartX(int s) {
+		return startX[s];
+	}
+
+	/**
+	 * <b>getStartY</b>
+	 * <p>
+	 * @param s - the index of a segment
+	 * @return the y of the segment's first point
+	 */
+	public double getStartY(int s) {
+		return startY[s];
+	}
+
+	/**
+	 * <b>getEndX</b>
+	 * <p>
+	 * @param s - the index of a segment
+	 * @return the x of the segment's second point
+	 */
+	public double getEndX(int s) {
+		return endX[s];
+	}
+
+	/**
+	 * <b>getEndY</b>
+	 * <p>
+	 * @param s - the index of a segment
+	 * @return the y of the segment's second point
+	 */
+	public double getEndY(int s) {
+		return endY[s];
+	}
+}//End of StaticGeometry class
\ No newline at end of file
@@ -0,0 +1,186 @@
+package collision;
+
+/**
+ * <b>StripLayout class</b>
+ * <p>
+ * Divides a world into vertical strips, one per worker of a distributed run (see
+ * DistributedRunner).
+ * <p>
+ * The world is covered by the same grid of cells and tiles as TiledCollisionPass
+ * uses for the same world and largest ball: cells one ball diameter (plus a
+ * margin) wide, grouped into square tiles. Each strip is a run of whole tile
+ * columns, as even in width as possible, and a worker owns every ball whose cell
+ * lies in its strip. A ball's cell is found from its center, with balls outside
+ * the world put in the nearest edge cell, exactly as in TiledCollisionPass.
+ * <p>
+ * Every worker and the coordinator build the same layout from the same numbers,
+ * so they always agree on who owns which ball without asking each other.
+ */
+public class StripLayout {
+	//Extra room added to the cell size so that balls just touching are still neighbours
+	private final double MARGIN = 1;
+
+	private final double cellSize;
+	private final int columns;
+	private final int rows;
+	private final int tileCells;
+	private final int tileColumns;
+	private final int tileRows;
+	private final int workers;
+
+	/**
+	 * Constructs the layout of a world.
+	 * @param width - the width of the world
+	 * @param height - the height of the world
+	 * @param maxRadius - the radius of the largest ball
+	 * @param workers - the number of strips
+	 */
+	public StripLayout(double width, double height, double maxRadius, int workers) {
+		cellSize = 2*maxRadius + MARGIN;
+		columns = Math.max(1, (int) Math.ceil(width/cellSize));
+		rows = Math.max(1, (int) Math.ceil(height/cellSize));
+		tileCells = TiledCollisionPass.tileCells(columns, rows);
+		tileColumns = (columns + tileCells - 1)/tileCells;
+		tileRows = (rows + tileCells - 1)/tileCells;
+		if(workers < 1 || workers > tileColumns) {
+			throw new IllegalArgumentException("Cannot split " + tileColumns + " tile columns between "
+											   + workers + " workers");
+		}
+		this.workers = workers;
+	}
+
+	/**
+	 * <b>cellColumn</b>
+	 * <p>
+	 * @param x - the x position of a ball's center
+	 * @return the column of the ball's cell
+	 */
+	public int cellColumn(double x) {
+		return Math.min(columns - 1, Math.max(0, (int) Math.floor(x/cellSize)));
+	}
+
+	/**
+	 * <b>cellRow</b>
+	 * <p>
+	 * @param y - the y position of a ball's center
+	 * @return the row of the ball's cell
+	 */
+	public int cellRow(double y) {
+		return Math.min(rows - 1, Math.max(0, (int) Math.floor(y/cellSize)));
+	}
+
+	/**
+	 * <b>firstTile</b>
+	 * <p>
+	 * @param worker - the number of the worker
+	 * @return the first tile column of the worker's strip
+	 */
+	public int firstTile(int worker) {
+		return (int) ((long) worker*tileColumns/workers);
+	}
+
+	/**
+	 * <b>endTile</b>
+	 * <p>
+	 * @param worker - the number of the worker
+	 * @return the tile column just after the worker's strip
+	 */
+	public int endTile(int worker) {
+		return firstTile(worker + 1);
+	}
+
+	/**
+	 * <b>firstColumn</b>
+	 * <p>
+	 * @param worker - the number of the worker
+	 * @return the first cell column of the worker's strip
+	 */
+	public int firstColumn(int worker) {
+		return firstTile(worker)*tileCells;
+	}
+
+	/**
+	 * <b>endColumn</b>
+	 * <p>
+	 * @param worker - the number of the worker
+	 * @return the cell column just after the worker's strip
+	 */
+	public int endColumn(int worker) {
+		return Math.min(columns, endTile(worker)*tileCells);
+	}
+
+	/**
+	 * <b>workerOf</b>
+	 * <p>
+	 * @param cellColumn - the column of a cell
+	 * @return the worker owning the cell
+	 */
+	public int workerOf(int cellColumn) {
+		int tile = cellColumn/tileCells;
+		int worker = (int) ((long) tile*workers/tileColumns);
+		//the division can land one strip short of the tile's real owner
+		while(worker + 1 < workers && firstTile(worker + 1) <= tile) {
+			worker++;
+		}
+		while(firstTile(worker) > tile) {
+			worker--;
+		}
+		return worker;
+	}
+
+	/**
+	 * <b>colourOf</b>
+	 * <p>
+	 * @param tileColumn - the column of a tile
+	 * @param tileRow - the row of a tile
+	 * @return the tile's colour, as in TiledCollisionPass
+	 */
+	public static int colourOf(int tileColumn, int tileRow) {
+		return (tileRow & 1)*2 + (tileColumn & 1);
+	}
+
+	/**
+	 * <b>getColumns</b>
+	 * <p>
+	 * @return columns - the number of columns of cells across the world
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * <b>getRows</b>
+	 * <p>
+	 * @return rows - the number of rows of cells down the world
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * <b>getTileCells</b>
+	 * <p>
+	 * @return tileCells - the width and height of a tile in cells
+	 */
+	public int getTileCells() {
+		return tileCells;
+	}
+
+	/**
+	 * <b>getTileRows</b>
+	 * <p>
+	 * @return tileRows - the number of rows of tiles
+	 */
+	public int getTileRows() {
+		return tileRows;
+	}
+
+	/**
+	 * <b>getWorkers</b>
+	 * <p>
+	 * @return workers - the number of strips
+	 */
+	public int getWorkers() {
+		return workers;
+	}
+}//End of StripLayout class
\ No newline at end of file
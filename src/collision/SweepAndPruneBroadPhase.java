@@ -0,0 +1,153 @@
+package collision;
+
+/**
+ * <b>SweepAndPruneBroadPhase class</b>
+ * <p>
+ * Finds candidate pairs by sorting the balls along the x axis and sweeping 
+ * through them in order (sort and sweep).
+ * <p>
+ * Each ball covers an interval on the x axis from its left edge to its right edge.
+ * With the balls sorted by left edge, each ball only needs to be compared with the
+ * balls after it whose left edge starts before its own right edge ends; as soon as
+ * one starts further right, so do all the rest. Pairs whose intervals overlap on x 
+ * are then also checked for overlap on y before being reported. Each unordered 
+ * pair is reported once.
+ * <p>
+ * The sorted order is kept from one tick to the next. Balls only move a few pixels
+ * per tick, so the order barely changes, and an insertion sort puts it right again
+ * in close to linear time. The first time (or whenever many balls have been added
+ * at once) the order is built with a merge sort instead.
+ */
+public class SweepAndPruneBroadPhase implements BroadPhase {
+	//Extra room added to the intervals so that balls just touching still overlap
+	private final double MARGIN = 1;
+	
+	private int[] order = new int[0];
+	private int[] scratch = new int[0];
+	private double[] left = new double[0];
+	private int ordered;
+	
+	public void findPairs(ParticleStore store, PairList pairs) {
+		pairs.clear();
+		int count = store.size();
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] radius = store.radius;
+		if(left.length < count) {
+			int capacity = Math.max(count, left.length*2);
+			left = new double[capacity];
+			int[] grown = new int[capacity];
+			System.arraycopy(order, 0, grown, 0, ordered);
+			order = grown;
+			scratch = new int[capacity];
+		}
+		for(int i = 0; i < count; i++) {
+			left[i] = x[i] - radius[i];
+		}
+		boolean rebuild = updateMembers(count);
+		if(rebuild) {
+			mergeSort(0, count);
+		}
+		else {
+			insertionSort(count);
+		}
+		for(int k = 0; k < count; k++) {
+			int a = order[k];
+			double right = x[a] + radius[a] + MARGIN;
+			for(int j = k + 1; j < count; j++) {
+				int b = order[j];
+				if(left[b] > right) {
+					break;
+				}
+				if(Math.abs(y[a] - y[b]) <= radius[a] + radius[b] + MARGIN) {
+					pairs.add(a, b);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <b>updateMembers</b>
+	 * <p>
+	 * Makes the order hold exactly the balls 0 to count - 1, dropping balls that 
+	 * have been removed and adding new balls at the end.
+	 * @param count - the number of balls in the store
+	 * @return whether so many balls were added that a full sort is cheaper
+	 */
+	private boolean updateMembers(int count) {
+		int added = count - ordered;
+		if(ordered > count) {
+			int kept = 0;
+			for(int k = 0; k < ordered; k++) {
+				if(order[k] < count) {
+					order[kept++] = order[k];
+				}
+			}
+			ordered = kept;
+		}
+		for(int i = ordered; i < count; i++) {
+			order[i] = i;
+		}
+		ordered = count;
+		return added > count/16;
+	}
+	
+	/**
+	 * <b>insertionSort</b>
+	 * <p>
+	 * Sorts the order by left edge, moving each ball back past the balls whose left
+	 * edge is now to its right. Linear when the order is nearly sorted already.
+	 * @param count - the number of balls
+	 */
+	private void insertionSort(int count) {
+		for(int k = 1; k < count; k++) {
+			int ball = order[k];
+			double key = left[ball];
+			int j = k - 1;
+			while(j >= 0 && left[order[j]] > key) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = ball;
+		}
+	}
+	
+	/**
+	 * <b>mergeSort</b>
+	 * <p>
+	 * Sorts part of the order by left edge in O(n log n).
+	 * @param from - the first position to sort
+	 * @param to - one past the last position to sort
+	 */
+	private void mergeSort(int from, int to) {
+		if(to - from < 32) {
+			for(int k = from + 1; k < to; k++) {
+				int ball = order[k];
+				int j = k - 1;
+				while(j >= from && left[order[j]] > left[ball]) {
+					order[j + 1] = order[j];
+					j--;
+				}
+				order[j + 1] = ball;
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		mergeSort(from, middle);
+		mergeSort(middle, to);
+		if(left[order[middle - 1]] <= left[order[middle]]) {
+			return;
+		}
+		System.arraycopy(order, from, scratch, from, to - from);
+		int a = from;
+		int b = middle;
+		for(int k = from; k < to; k++) {
+			if(b >= to || (a < middle && left[scratch[a]] <= left[scratch[b]])) {
+				order[k] = scratch[a++];
+			}
+			else {
+				order[k] = scratch[b++];
+			}
+		}
+	}
+}//End of SweepAndPruneBroadPhase class
\ No newline at end of file
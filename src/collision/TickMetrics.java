@@ -0,0 +1,141 @@
+package collision;
+
+import java.lang.management.ManagementFactory;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * <b>TickMetrics class</b>
+ * <p>
+ * Measures where the time of each step goes and counts what happened in it.
+ * <p>
+ * The length of every step and of each of its phases (moving the balls, the broad
+ * phase, the narrow phase and painting) is recorded in a LatencyHistogram, and the
+ * pairs of balls checked, collisions, CollisionMonster reactions and dropped frames
+ * are counted. Instrumentation is off unless -Dcollision.metrics=true is given.
+ * Every measurement is guarded by the ENABLED constant, so when it is off the JIT
+ * compiler removes the measurements altogether and they cost nothing.
+ * <p>
+ * When on, the metrics are published over JMX (see TickMetricsMXBean) and, if
+ * -Dcollision.metrics.log=seconds is also given, logged to the collision.metrics
+ * logger at that interval.
+ * <p>
+ * The metrics are shared by every engine in the program. Each histogram is only
+ * recorded into by one thread: PAINT by the Swing event thread and the others by
+ * the thread running the simulation.
+ */
+public class TickMetrics implements TickMetricsMXBean {
+
+	/**
+	 * Whether instrumentation is on, read once from the collision.metrics property
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("collision.metrics");
+
+	static final LatencyHistogram TICK = new LatencyHistogram();
+	static final LatencyHistogram INTEGRATE = new LatencyHistogram();
+	static final LatencyHistogram BROAD = new LatencyHistogram();
+	static final LatencyHistogram NARROW = new LatencyHistogram();
+	static final LatencyHistogram PAINT = new LatencyHistogram();
+	static final LongAdder PAIR_TESTS = new LongAdder();
+	static final LongAdder CONTACTS = new LongAdder();
+	static final LongAdder COLLIDE_REACTS = new LongAdder();
+	static final LongAdder FRAMES_DROPPED = new LongAdder();
+	static volatile int liveBalls;
+
+	private static final Logger LOG = Logger.getLogger("collision.metrics");
+
+	static {
+		if(ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(
+						new TickMetrics(), new ObjectName("collision:type=TickMetrics"));
+			}
+			catch(JMException e) {
+				LOG.warning("Could not publish tick metrics over JMX: " + e);
+			}
+			int seconds = Integer.getInteger("collision.metrics.log", 0);
+			if(seconds > 0) {
+				new Timer("metrics log", true).scheduleAtFixedRate(new TimerTask() {
+					public void run() {
+						LOG.info(summary());
+					}
+				}, seconds*1000L, seconds*1000L);
+			}
+		}
+	}
+
+	/**
+	 * <b>reacted</b>
+	 * <p>
+	 * Counts the reactions of the balls in a collision: each CollisionMonster ball
+	 * involved reacts by switching its image.
+	 * @param store - the store holding the balls
+	 * @param m - the index of one ball
+	 * @param n - the index of the other ball
+	 */
+	static void reacted(ParticleStore store, int m, int n) {
+		int reacts = (store.kind[m] == ParticleStore.MONSTER ? 1 : 0) + (store.kind[n] == ParticleStore.MONSTER ? 1 : 0);
+		if(reacts > 0) {
+			COLLIDE_REACTS.add(reacts);
+		}
+	}
+
+	/**
+	 * <b>summary</b>
+	 * <p>
+	 * @return a description of every histogram and counter on a few lines
+	 */
+	public static String summary() {
+		return "tick " + new PhaseStats(TICK) +
+			   "\n  integrate " + new PhaseStats(INTEGRATE) +
+			   "\n  broad " + new PhaseStats(BROAD) +
+			   "\n  narrow " + new PhaseStats(NARROW) +
+			   "\n  paint " + new PhaseStats(PAINT) +
+			   String.format("%n  pair tests=%d contacts=%d collideReacts=%d balls=%d framesDropped=%d",
+							 PAIR_TESTS.sum(), CONTACTS.sum(), COLLIDE_REACTS.sum(), liveBalls, FRAMES_DROPPED.sum());
+	}
+
+	public PhaseStats getTick() {
+		return new PhaseStats(TICK);
+	}
+
+	public PhaseStats getIntegrate() {
+		return new PhaseStats(INTEGRATE);
+	}
+
+	public PhaseStats getBroadPhase() {
+		return new PhaseStats(BROAD);
+	}
+
+	public PhaseStats getNarrowPhase() {
+		return new PhaseStats(NARROW);
+	}
+
+	public PhaseStats getPaint() {
+		return new PhaseStats(PAINT);
+	}
+
+	public long getPairTests() {
+		return PAIR_TESTS.sum();
+	}
+
+	public long getContacts() {
+		return CONTACTS.sum();
+	}
+
+	public long getCollideReacts() {
+		return COLLIDE_REACTS.sum();
+	}
+
+	public int getLiveBalls() {
+		return liveBalls;
+	}
+
+	public long getFramesDropped() {
+		return FRAMES_DROPPED.sum();
+	}
+}//End of TickMetrics class
\ No newline at end of file
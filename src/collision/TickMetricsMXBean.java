@@ -0,0 +1,62 @@
+package collision;
+
+/**
+ * <b>TickMetricsMXBean interface</b>
+ * <p>
+ * The management interface TickMetrics is published under, as 
+ * collision:type=TickMetrics, when -Dcollision.metrics=true is given. It can be
+ * browsed with jconsole or any other JMX client.
+ */
+public interface TickMetricsMXBean {
+	
+	/**
+	 * @return how long whole steps took
+	 */
+	PhaseStats getTick();
+	
+	/**
+	 * @return how long moving the balls and bouncing them off the walls took
+	 */
+	PhaseStats getIntegrate();
+	
+	/**
+	 * @return how long the broad phase took
+	 */
+	PhaseStats getBroadPhase();
+	
+	/**
+	 * @return how long checking and resolving the pairs found by the broad phase took
+	 */
+	PhaseStats getNarrowPhase();
+	
+	/**
+	 * @return how long painting the window took
+	 */
+	PhaseStats getPaint();
+	
+	/**
+	 * @return the number of pairs of balls checked for a collision
+	 */
+	long getPairTests();
+	
+	/**
+	 * @return the number of collisions between balls
+	 */
+	long getContacts();
+	
+	/**
+	 * @return the number of times a CollisionMonster ball reacted to a collision
+	 */
+	long getCollideReacts();
+	
+	/**
+	 * @return the number of balls after the latest step
+	 */
+	int getLiveBalls();
+	
+	/**
+	 * @return the number of finished frames that were replaced by a newer one 
+	 * before they could be painted
+	 */
+	long getFramesDropped();
+}//End of TickMetricsMXBean interface
\ No newline at end of file
@@ -0,0 +1,333 @@
+package collision;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <b>TiledCollisionPass class</b>
+ * <p>
+ * Performs the collision pass of a SimulationEngine on several threads at once,
+ * giving results that are bit-for-bit identical to running it on one thread.
+ * <p>
+ * The world is divided into a dense grid of cells at least one ball diameter wide,
+ * and the cells are grouped into square tiles at least two cells wide. A pair of
+ * balls in the same cell is owned by that cell, and a pair in neighbouring cells
+ * is owned by the cell further west, or the northern one if they are in the same
+ * column (the same split as SpatialHashBroadPhase). A tile resolves every pair
+ * owned by its cells, so it only ever reads or changes balls in its own cells and
+ * in the ring of cells just east, south and north of it.
+ * <p>
+ * The tiles are coloured like a checkerboard with four colours, by whether their
+ * column and row are odd or even. Two tiles of the same colour are always at least
+ * one whole tile apart, so they never touch the same ball and can be processed at
+ * the same time by the ForkJoinPool. The four colours are processed one after the
+ * other. Within a tile, cells and balls are always visited in the same order.
+ * <p>
+ * Because of this fixed schedule, running the pass with one thread does exactly the
+ * same arithmetic in exactly the same order as running it with many threads, which
+ * is what makes the results reproducible. Note that this order is not the same as
+ * the order of the engine's ordinary broad phase pass, so results from the two
+ * modes are expected to differ.
+ * <p>
+ * Balls are put in cells by their position at the start of the pass. Balls outside
+ * the world are put in the nearest edge cell. When the engine tracks conservation,
+ * each tile measures its own collisions and the tiles' counters are added to the
+ * engine's in the same fixed order. Each tile also logs its own contacts, and the
+ * logs are added to the engine's in that order too, so the collision events
+ * published after the tick are the same for any number of threads.
+ */
+public class TiledCollisionPass {
+	//Extra room added to the cell size so that balls just touching are still neighbours
+	private final double MARGIN = 1;
+	
+	//Aim for this many tiles per colour so the work balances out over 16 or more threads.
+	//The tile size must not depend on the number of threads or results would differ.
+	private static final int TILES_PER_COLOUR = 64;
+	
+	//Offsets of the neighbouring cells whose pairs a cell owns
+	private final int[] NEIGHBOUR_X = {1, 1, 1, 0};
+	private final int[] NEIGHBOUR_Y = {-1, 0, 1, 1};
+	
+	private final SimulationEngine engine;
+	private final ForkJoinPool pool;
+	
+	private int columns;
+	private int rows;
+	private double cellSize;
+	private int tileCells;
+	private int tileColumns;
+	private int tileRows;
+	private int[] cellOf = new int[0];
+	private int[] cellStart = new int[0];
+	private int[] cellEnd = new int[0];
+	private int[] sorted = new int[0];
+	private int[] tileContacts = new int[0];
+	private int[] tilePairTests = new int[0];
+	private ConservationCounter[] tileCounters = new ConservationCounter[0];
+	private ContactLog[] tileLogs = new ContactLog[0];
+	private int[][] colourTiles = new int[4][];
+	private int[] colourCounts = new int[4];
+	private double dt;
+	
+	/**
+	 * Constructs a collision pass for the given engine.
+	 * @param engine - the engine whose balls are checked and resolved
+	 * @param parallelism - the number of threads to use, 1 to run everything on the
+	 * calling thread
+	 */
+	public TiledCollisionPass(SimulationEngine engine, int parallelism) {
+		if(parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		}
+		this.engine = engine;
+		pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+	
+	/**
+	 * <b>run</b>
+	 * <p>
+	 * Detects and resolves all collisions between the engine's balls.
+	 * @param stepLength - the length of the step being run
+	 * @return the number of collisions resolved
+	 */
+	public int run(double stepLength) {
+		ParticleStore store = engine.getStore();
+		if(store.size() < 2) {
+			return 0;
+		}
+		dt = stepLength;
+		long start = TickMetrics.ENABLED ? System.nanoTime() : 0;
+		buildGrid(store);
+		long broadEnd = TickMetrics.ENABLED ? System.nanoTime() : 0;
+		ConservationCounter conservation = engine.getConservation();
+		ContactLog contactLog = engine.getContactLog();
+		int contacts = 0;
+		long pairTests = 0;
+		for(int colour = 0; colour < 4; colour++) {
+			int[] tiles = colourTiles[colour];
+			int count = colourCounts[colour];
+			if(pool == null || count < 2) {
+				for(int i = 0; i < count; i++) {
+					tileContacts[tiles[i]] = processTile(tiles[i]);
+				}
+			}
+			else {
+				pool.invoke(new TileTask(tiles, 0, count));
+			}
+			for(int i = 0; i < count; i++) {
+				contacts += tileContacts[tiles[i]];
+				pairTests += tilePairTests[tiles[i]];
+				if(conservation != null) {
+					conservation.add(tileCounters[tiles[i]]);
+					tileCounters[tiles[i]].reset();
+				}
+				contactLog.addAll(tileLogs[tiles[i]]);
+				tileLogs[tiles[i]].clear();
+			}
+		}
+		if(TickMetrics.ENABLED) {
+			TickMetrics.BROAD.record(broadEnd - start);
+			TickMetrics.NARROW.record(System.nanoTime() - broadEnd);
+			TickMetrics.PAIR_TESTS.add(pairTests);
+			TickMetrics.CONTACTS.add(contacts);
+		}
+		return contacts;
+	}
+	
+	/**
+	 * <b>shutdown</b>
+	 * <p>
+	 * Stops the pass's worker threads.
+	 */
+	public void shutdown() {
+		if(pool != null) {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * <b>buildGrid</b>
+	 * <p>
+	 * Sizes the grid and tiles for the current balls, sorts the balls into cells
+	 * (keeping ascending index order within each cell) and lists the tiles of each
+	 * colour that have any balls in them.
+	 * @param store - the balls to sort
+	 */
+	private void buildGrid(ParticleStore store) {
+		int count = store.size();
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] radius = store.radius;
+		double maxRadius = 0;
+		for(int i = 0; i < count; i++) {
+			maxRadius = Math.max(maxRadius, radius[i]);
+		}
+		cellSize = 2*maxRadius + MARGIN;
+		columns = Math.max(1, (int) Math.ceil(engine.getWidth()/cellSize));
+		rows = Math.max(1, (int) Math.ceil(engine.getHeight()/cellSize));
+		tileCells = tileCells(columns, rows);
+		tileColumns = (columns + tileCells - 1)/tileCells;
+		tileRows = (rows + tileCells - 1)/tileCells;
+		
+		int cells = columns*rows;
+		if(cellOf.length < count) {
+			cellOf = new int[count];
+			sorted = new int[count];
+		}
+		if(cellStart.length < cells + 1) {
+			cellStart = new int[cells + 1];
+			cellEnd = new int[cells + 1];
+		}
+		else {
+			Arrays.fill(cellStart, 0, cells + 1, 0);
+		}
+		for(int i = 0; i < count; i++) {
+			int cx = Math.min(columns - 1, Math.max(0, (int) Math.floor(x[i]/cellSize)));
+			int cy = Math.min(rows - 1, Math.max(0, (int) Math.floor(y[i]/cellSize)));
+			cellOf[i] = cy*columns + cx;
+			cellStart[cellOf[i] + 1]++;
+		}
+		for(int c = 0; c < cells; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		System.arraycopy(cellStart, 0, cellEnd, 0, cells + 1);
+		for(int i = count - 1; i >= 0; i--) {
+			sorted[--cellEnd[cellOf[i] + 1]] = i;
+		}
+		
+		int tiles = tileColumns*tileRows;
+		if(tileContacts.length < tiles) {
+			tileContacts = new int[tiles];
+			tilePairTests = new int[tiles];
+			tileCounters = new ConservationCounter[tiles];
+			tileLogs = new ContactLog[tiles];
+			for(int t = 0; t < tiles; t++) {
+				tileCounters[t] = new ConservationCounter();
+				tileLogs[t] = new ContactLog();
+			}
+			for(int colour = 0; colour < 4; colour++) {
+				colourTiles[colour] = new int[tiles];
+			}
+		}
+		Arrays.fill(colourCounts, 0);
+		for(int ty = 0; ty < tileRows; ty++) {
+			for(int tx = 0; tx < tileColumns; tx++) {
+				if(tileHasBalls(tx, ty)) {
+					int colour = (ty & 1)*2 + (tx & 1);
+					colourTiles[colour][colourCounts[colour]++] = ty*tileColumns + tx;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <b>tileCells</b>
+	 * <p>
+	 * Sizes the tiles of a grid so that there are about TILES_PER_COLOUR tiles of
+	 * each colour. Also used by StripLayout, so that a distributed run has the same
+	 * tiles as this pass.
+	 * @param columns - the number of columns of cells
+	 * @param rows - the number of rows of cells
+	 * @return the width and height of a tile in cells
+	 */
+	static int tileCells(int columns, int rows) {
+		return Math.max(2, (int) Math.sqrt((double) columns*rows/(4*TILES_PER_COLOUR)));
+	}
+	
+	/**
+	 * <b>tileHasBalls</b>
+	 * <p>
+	 * @param tx - the column of the tile
+	 * @param ty - the row of the tile
+	 * @return whether any cell of the tile contains a ball
+	 */
+	private boolean tileHasBalls(int tx, int ty) {
+		int x1 = Math.min(columns, (tx + 1)*tileCells);
+		int y1 = Math.min(rows, (ty + 1)*tileCells);
+		for(int cy = ty*tileCells; cy < y1; cy++) {
+			int first = cy*columns + tx*tileCells;
+			int last = cy*columns + x1;
+			if(cellStart[last] > cellStart[first]) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * <b>processTile</b>
+	 * <p>
+	 * Checks and resolves every pair owned by the cells of a tile.
+	 * @param tile - the tile's index (row * tile columns + column)
+	 * @return the number of collisions resolved
+	 */
+	private int processTile(int tile) {
+		int tx = tile % tileColumns;
+		int ty = tile / tileColumns;
+		int x1 = Math.min(columns, (tx + 1)*tileCells);
+		int y1 = Math.min(rows, (ty + 1)*tileCells);
+		ConservationCounter counter = engine.getConservation() != null ? tileCounters[tile] : null;
+		ContactLog log = tileLogs[tile];
+		int contacts = 0;
+		int tests = 0;
+		for(int cy = ty*tileCells; cy < y1; cy++) {
+			for(int cx = tx*tileCells; cx < x1; cx++) {
+				int cell = cy*columns + cx;
+				for(int s = cellStart[cell]; s < cellStart[cell + 1]; s++) {
+					int a = sorted[s];
+					tests += cellStart[cell + 1] - s - 1;
+					for(int t = s + 1; t < cellStart[cell + 1]; t++) {
+						if(engine.collidePair(a, sorted[t], dt, counter, log)) {
+							contacts++;
+						}
+					}
+					for(int k = 0; k < NEIGHBOUR_X.length; k++) {
+						int nx = cx + NEIGHBOUR_X[k];
+						int ny = cy + NEIGHBOUR_Y[k];
+						if(nx >= columns || ny < 0 || ny >= rows) {
+							continue;
+						}
+						int neighbour = ny*columns + nx;
+						tests += cellStart[neighbour + 1] - cellStart[neighbour];
+						for(int t = cellStart[neighbour]; t < cellStart[neighbour + 1]; t++) {
+							if(engine.collidePair(a, sorted[t], dt, counter, log)) {
+								contacts++;
+							}
+						}
+					}
+				}
+			}
+		}
+		tilePairTests[tile] = tests;
+		return contacts;
+	}
+	
+	/**
+	 * <b>TileTask Class</b>
+	 * <p>
+	 * Processes a range of same-coloured tiles, splitting it in half until each
+	 * task has a single tile.
+	 */
+	private class TileTask extends RecursiveAction {
+		private final int[] tiles;
+		private final int from;
+		private final int to;
+		
+		TileTask(int[] tiles, int from, int to) {
+			this.tiles = tiles;
+			this.from = from;
+			this.to = to;
+		}
+		
+		protected void compute() {
+			if(to - from == 1) {
+				tileContacts[tiles[from]] = processTile(tiles[from]);
+			}
+			else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new TileTask(tiles, from, middle), new TileTask(tiles, middle, to));
+			}
+		}
+	}
+}//End of TiledCollisionPass class
\ No newline at end of file
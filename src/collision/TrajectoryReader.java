@@ -0,0 +1,351 @@
+package collision;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <b>TrajectoryReader class</b>
+ * <p>
+ * Reads back a recording made by a TrajectoryRecorder, one frame at a time, and
+ * can jump to any tick in it.
+ * <p>
+ * When a recording is opened only the block headers are read, to build an index
+ * of where each keyframe is and which tick it starts at. Seeking finds the last
+ * keyframe at or before the wanted tick in the index, decompresses that block and
+ * decodes forward from it, so it never has to read more than one block. A
+ * recording whose writer did not finish (for example because the program was
+ * killed) can still be read up to its last complete block. Recordings in the
+ * first version of the format are read with every ball at the default size.
+ */
+public class TrajectoryReader implements AutoCloseable {
+	private static final int HEADER_SIZE = 16;
+	private static final int BLOCK_HEADER_SIZE = 20;
+
+	private final FileChannel channel;
+	private final Inflater inflater = new Inflater();
+	private final int version;
+	private long[] blockOffsets = new long[64];
+	private long[] blockTicks = new long[64];
+	private int blocks;
+	private long lastTick;
+
+	private int currentBlock = -1;
+	private int framesLeft;
+	private byte[] block = new byte[1 << 16];
+	private int position;
+	private byte[] compressed = new byte[1 << 16];
+	private int[] previousX = new int[64];
+	private int[] previousY = new int[64];
+	private byte[] previousSprite = new byte[64];
+	private short[] previousSize = new short[64];
+	private int previousCount;
+	private long previousTick;
+
+	/**
+	 * Opens a recording and indexes its keyframes.
+	 * @param file - the recording to read
+	 * @throws IOException if the file cannot be read or is not a recording
+	 */
+	public TrajectoryReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+			header.limit(HEADER_SIZE);
+			if(!readFully(header, 0)) {
+				throw new IOException("Not a trajectory file: " + file);
+			}
+			header.flip();
+			if(header.getInt() != TrajectoryRecorder.MAGIC) {
+				throw new IOException("Not a trajectory file: " + file);
+			}
+			version = header.getInt();
+			if(version < 1 || version > TrajectoryRecorder.VERSION) {
+				throw new IOException("Unsupported trajectory version " + version + ": " + file);
+			}
+			if(header.getInt() != TrajectoryRecorder.SCALE) {
+				throw new IOException("Unsupported trajectory scale: " + file);
+			}
+			long offset = HEADER_SIZE;
+			long size = channel.size();
+			while(offset + BLOCK_HEADER_SIZE <= size) {
+				header.clear();
+				readFully(header, offset);
+				header.flip();
+				header.getInt();
+				int compressedLength = header.getInt();
+				long tick = header.getLong();
+				int frames = header.getInt();
+				long end = offset + BLOCK_HEADER_SIZE + compressedLength;
+				if(compressedLength < 0 || end > size) {
+					break;//the writer was stopped part way through this block
+				}
+				if(blocks == blockOffsets.length) {
+					blockOffsets = Arrays.copyOf(blockOffsets, blocks*2);
+					blockTicks = Arrays.copyOf(blockTicks, blocks*2);
+				}
+				blockOffsets[blocks] = offset;
+				blockTicks[blocks] = tick;
+				blocks++;
+				lastTick = tick + frames - 1;
+				offset = end;
+			}
+			if(blocks > 0) {
+				//the last block's frames may not be one tick apart, so decode it to be sure
+				loadBlock(blocks - 1);
+				FrameSnapshot scratch = new FrameSnapshot();
+				while(next(scratch)) {
+					lastTick = scratch.tick;
+				}
+				currentBlock = -1;
+			}
+		}
+		catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * <b>getFirstTick</b>
+	 * <p>
+	 * @return the tick of the first frame, or 0 if there are no frames
+	 */
+	public long getFirstTick() {
+		return blocks > 0 ? blockTicks[0] : 0;
+	}
+
+	/**
+	 * <b>getLastTick</b>
+	 * <p>
+	 * @return the tick of the last frame, or 0 if there are no frames
+	 */
+	public long getLastTick() {
+		return lastTick;
+	}
+
+	/**
+	 * <b>seek</b>
+	 * <p>
+	 * Moves to the first frame at or after a tick, so that it is the next one read.
+	 * Ticks before the start of the recording move to its first frame.
+	 * @param tick - the tick to move to
+	 * @throws IOException if the recording cannot be read
+	 */
+	public void seek(long tick) throws IOException {
+		if(blocks == 0) {
+			return;
+		}
+		int index = Arrays.binarySearch(blockTicks, 0, blocks, tick);
+		if(index < 0) {
+			index = Math.max(-index - 2, 0);
+		}
+		loadBlock(index);
+		//decode up to the wanted tick, leaving the reader just before it
+		while(framesLeft > 0) {
+			int start = position;
+			long frameTick = previousTick + readVarLong();
+			if(frameTick >= tick) {
+				position = start;
+				return;
+			}
+			decode(null, frameTick);
+		}
+	}
+
+	/**
+	 * <b>next</b>
+	 * <p>
+	 * Reads the next frame into a snapshot.
+	 * @param frame - the snapshot to fill in
+	 * @return false if the end of the recording was reached, leaving frame unchanged
+	 * @throws IOException if the recording cannot be read
+	 */
+	public boolean next(FrameSnapshot frame) throws IOException {
+		if(framesLeft == 0) {
+			if(currentBlock + 1 >= blocks) {
+				return false;
+			}
+			loadBlock(currentBlock + 1);
+		}
+		decode(frame, previousTick + readVarLong());
+		return true;
+	}
+
+	/**
+	 * <b>close</b>
+	 * <p>
+	 * Closes the recording.
+	 * @throws IOException if the file cannot be closed
+	 */
+	public void close() throws IOException {
+		inflater.end();
+		channel.close();
+	}
+
+	/**
+	 * <b>decode</b>
+	 * <p>
+	 * Decodes the rest of a frame whose tick has already been read.
+	 * @param frame - the snapshot to fill in, or null to only keep track of the balls
+	 * @param tick - the frame's tick
+	 */
+	private void decode(FrameSnapshot frame, long tick) throws IOException {
+		int count = (int) readVarLong();
+		if(previousX.length < count) {
+			int capacity = Math.max(count, previousX.length*2);
+			previousX = Arrays.copyOf(previousX, capacity);
+			previousY = Arrays.copyOf(previousY, capacity);
+			previousSprite = Arrays.copyOf(previousSprite, capacity);
+			previousSize = Arrays.copyOf(previousSize, capacity);
+		}
+		for(int i = 0; i < count; i++) {
+			int x = readZigZag();
+			int y = readZigZag();
+			int sprite = readZigZag();
+			int size = version > 1 ? readZigZag() : 0;
+			if(i < previousCount) {
+				x += previousX[i];
+				y += previousY[i];
+				sprite += previousSprite[i];
+				size += previousSize[i];
+			}
+			else if(version == 1) {
+				size = FrameSnapshot.imageSize(CollisionObject.DEFAULT_RADIUS);
+			}
+			previousX[i] = x;
+			previousY[i] = y;
+			previousSprite[i] = (byte) sprite;
+			previousSize[i] = (short) size;
+		}
+		previousCount = count;
+		previousTick = tick;
+		framesLeft--;
+		if(frame != null) {
+			if(frame.x.length < count) {
+				int capacity = Math.max(count, frame.x.length*2);
+				frame.x = Arrays.copyOf(frame.x, capacity);
+				frame.y = Arrays.copyOf(frame.y, capacity);
+				frame.sprite = Arrays.copyOf(frame.sprite, capacity);
+				frame.size = Arrays.copyOf(frame.size, capacity);
+			}
+			float scale = 1f/TrajectoryRecorder.SCALE;
+			for(int i = 0; i < count; i++) {
+				frame.x[i] = previousX[i]*scale;
+				frame.y[i] = previousY[i]*scale;
+			}
+			System.arraycopy(previousSprite, 0, frame.sprite, 0, count);
+			System.arraycopy(previousSize, 0, frame.size, 0, count);
+			frame.count = count;
+			frame.tick = tick;
+			frame.previousCount = 0;
+			frame.period = 0;
+		}
+	}
+
+	/**
+	 * <b>loadBlock</b>
+	 * <p>
+	 * Reads and decompresses a block, leaving the reader before its keyframe.
+	 * @param index - the number of the block
+	 * @throws IOException if the block cannot be read
+	 */
+	private void loadBlock(int index) throws IOException {
+		long offset = blockOffsets[index];
+		ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+		readFully(header, offset);
+		header.flip();
+		int length = header.getInt();
+		int compressedLength = header.getInt();
+		long tick = header.getLong();
+		int frames = header.getInt();
+		if(compressed.length < compressedLength) {
+			compressed = new byte[compressedLength];
+		}
+		if(block.length < length) {
+			block = new byte[length];
+		}
+		if(!readFully(ByteBuffer.wrap(compressed, 0, compressedLength), offset + BLOCK_HEADER_SIZE)) {
+			throw new EOFException("Trajectory block cut short at " + offset);
+		}
+		inflater.reset();
+		inflater.setInput(compressed, 0, compressedLength);
+		try {
+			int inflated = 0;
+			while(inflated < length && !inflater.finished()) {
+				int n = inflater.inflate(block, inflated, length - inflated);
+				if(n == 0 && inflater.needsInput()) {
+					break;
+				}
+				inflated += n;
+			}
+			if(inflated != length) {
+				throw new IOException("Corrupt trajectory block at " + offset);
+			}
+		}
+		catch(DataFormatException e) {
+			throw new IOException("Corrupt trajectory block at " + offset, e);
+		}
+		currentBlock = index;
+		framesLeft = frames;
+		position = 0;
+		previousCount = 0;
+		previousTick = tick;
+	}
+
+	/**
+	 * <b>readFully</b>
+	 * <p>
+	 * Fills a buffer from the file, starting at an offset.
+	 * @param buffer - the buffer to fill
+	 * @param offset - where in the file to start
+	 * @return false if the end of the file was reached first
+	 * @throws IOException if the file cannot be read
+	 */
+	private boolean readFully(ByteBuffer buffer, long offset) throws IOException {
+		while(buffer.hasRemaining()) {
+			int n = channel.read(buffer, offset);
+			if(n < 0) {
+				return false;
+			}
+			offset += n;
+		}
+		return true;
+	}
+
+	/**
+	 * <b>readZigZag</b>
+	 * <p>
+	 * @return the next signed number in the block
+	 */
+	private int readZigZag() throws IOException {
+		int value = (int) readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * <b>readVarLong</b>
+	 * <p>
+	 * @return the next unsigned number in the block
+	 */
+	private long readVarLong() throws IOException {
+		long value = 0;
+		for(int shift = 0; shift < 64; shift += 7) {
+			if(position >= block.length) {
+				throw new EOFException("Trajectory frame cut short");
+			}
+			byte b = block[position++];
+			value |= (long) (b & 0x7F) << shift;
+			if(b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Corrupt trajectory frame");
+	}
+}//End of TrajectoryReader class
\ No newline at end of file
@@ -0,0 +1,354 @@
+package collision;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * <b>TrajectoryRecorder class</b>
+ * <p>
+ * Streams the position, size and image of every ball, every tick, to a file that can be
+ * analysed later or played back by a TrajectoryReader.
+ * <p>
+ * Recording is split between two threads so that the simulation never waits for
+ * the disk. The simulation thread copies each frame into a FrameSnapshot taken
+ * from a small pool and puts it on a bounded queue; a background writer thread
+ * encodes the frames, compresses them and writes them out, then returns the
+ * snapshots to the pool. If the writer falls behind by more than the queue holds,
+ * record waits for it rather than dropping frames.
+ * <p>
+ * Positions are stored as whole numbers of 1/SCALE pixels. Since the balls move by
+ * a pixel or two per tick, each frame is stored as the difference from the frame
+ * before it, written as zig-zag variable length integers (usually one byte per
+ * coordinate). Every KEYFRAME_INTERVAL ticks a keyframe holding the positions
+ * themselves is written and starts a new block; each block is compressed on its
+ * own with a Deflater. A block can therefore be decoded without reading anything
+ * before it, which is what makes recordings seekable. A block is also finished
+ * early once it holds more than BLOCK_BYTES of encoded frames, so that the blocks
+ * of very large worlds stay well short of the largest array Java allows.
+ * <p>
+ * File format (big endian): the magic number, the version, SCALE and the keyframe
+ * interval as ints, then the blocks. Each block has a header of its uncompressed
+ * length and compressed length (ints), the tick of its keyframe (a long) and its
+ * number of frames (an int), followed by the compressed frames. Each frame is the
+ * change in tick and the number of balls as unsigned variable length integers, then
+ * for each ball the change in x, y, image and image size as zig-zag variable
+ * length integers. (Version 1 files have no image sizes, as every ball was the 
+ * same size.)
+ * Balls that are new since the previous frame are stored relative to zero, and a
+ * frame with fewer balls than the one before it is always written as a keyframe.
+ */
+public class TrajectoryRecorder {
+
+	/**
+	 * Identifies trajectory files ("TRAJ" in ASCII)
+	 */
+	public static final int MAGIC = 0x5452414A;
+
+	/**
+	 * The version of the format written by this class
+	 */
+	public static final int VERSION = 2;
+
+	/**
+	 * The number of steps per pixel that positions are stored in
+	 */
+	public static final int SCALE = 16;
+
+	/**
+	 * The default number of ticks between keyframes
+	 */
+	public static final int KEYFRAME_INTERVAL = 256;
+
+	/**
+	 * The number of encoded bytes after which a block is finished before its
+	 * keyframe interval is up
+	 */
+	public static final int BLOCK_BYTES = 1 << 26;
+
+	private static final int QUEUE_SIZE = 64;
+	//Put on the queue by close to tell the writer to finish
+	private static final FrameSnapshot END = new FrameSnapshot();
+
+	private final ArrayBlockingQueue<FrameSnapshot> free = new ArrayBlockingQueue<FrameSnapshot>(QUEUE_SIZE);
+	private final ArrayBlockingQueue<FrameSnapshot> queued = new ArrayBlockingQueue<FrameSnapshot>(QUEUE_SIZE + 1);
+	private final DataOutputStream out;
+	private final int keyframeInterval;
+	private final Thread writer;
+	private volatile IOException failure;
+	private boolean closed;
+
+	//Used only by the writer thread
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private byte[] block = new byte[1 << 16];
+	private int blockLength;
+	private byte[] compressed = new byte[1 << 16];
+	private long blockTick;
+	private int blockFrames;
+	private int[] previousX = new int[64];
+	private int[] previousY = new int[64];
+	private byte[] previousSprite = new byte[64];
+	private short[] previousSize = new short[64];
+	private int previousCount;
+	private long previousTick;
+
+	/**
+	 * Constructs a recorder writing to a file with the default keyframe interval.
+	 * @param file - the file to write, replaced if it exists
+	 * @throws IOException if the file cannot be created
+	 */
+	public TrajectoryRecorder(Path file) throws IOException {
+		this(file, KEYFRAME_INTERVAL);
+	}
+
+	/**
+	 * Constructs a recorder writing to a file.
+	 * @param file - the file to write, replaced if it exists
+	 * @param keyframeInterval - the number of frames between keyframes
+	 * @throws IOException if the file cannot be created
+	 */
+	public TrajectoryRecorder(Path file, int keyframeInterval) throws IOException {
+		if(keyframeInterval < 1) {
+			throw new IllegalArgumentException("Keyframe interval must be at least 1: " + keyframeInterval);
+		}
+		this.keyframeInterval = keyframeInterval;
+		out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(SCALE);
+		out.writeInt(keyframeInterval);
+		for(int i = 0; i < QUEUE_SIZE; i++) {
+			free.add(new FrameSnapshot());
+		}
+		writer = new Thread(this::write, "trajectory writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * <b>record</b>
+	 * <p>
+	 * Queues the current state of a store to be written. Called by the thread running
+	 * the simulation, once per tick. Does nothing once writing has failed.
+	 * @param store - the balls to record
+	 * @param tick - the tick the state belongs to
+	 */
+	public void record(ParticleStore store, long tick) {
+		if(failure != null) {
+			return;//nothing more will be written
+		}
+		try {
+			FrameSnapshot frame = free.take();
+			frame.copyFrom(store, tick);
+			queued.put(frame);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * <b>close</b>
+	 * <p>
+	 * Waits for every queued frame to be written and closes the file. Must not be
+	 * called while another thread may still call record.
+	 * @throws IOException if any frame could not be written
+	 */
+	public synchronized void close() throws IOException {
+		if(closed) {
+			return;
+		}
+		closed = true;
+		queued.add(END);
+		boolean interrupted = false;
+		while(writer.isAlive()) {
+			try {
+				writer.join();
+			}
+			catch(InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if(failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * <b>write</b>
+	 * <p>
+	 * The writer thread: encodes queued frames until close is called. After a write
+	 * fails, for any reason, the remaining frames are thrown away, and every frame
+	 * is returned to the pool whatever happens to it, so that record never blocks.
+	 */
+	private void write() {
+		try {
+			while(true) {
+				FrameSnapshot frame = queued.take();
+				if(frame == END) {
+					break;
+				}
+				try {
+					if(failure == null) {
+						encode(frame);
+					}
+				}
+				catch(IOException e) {
+					failure = e;
+				}
+				catch(Throwable e) {
+					failure = new IOException("Trajectory writer failed", e);
+				}
+				finally {
+					free.add(frame);
+				}
+			}
+			if(failure == null) {
+				flushBlock();
+			}
+		}
+		catch(IOException e) {
+			failure = e;
+		}
+		catch(InterruptedException e) {
+			failure = new IOException("Trajectory writer interrupted", e);
+		}
+		catch(Throwable e) {
+			failure = new IOException("Trajectory writer failed", e);
+		}
+		finally {
+			deflater.end();
+			try {
+				out.close();
+			}
+			catch(IOException e) {
+				if(failure == null) {
+					failure = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * <b>encode</b>
+	 * <p>
+	 * Adds one frame to the current block, starting a new block first if a keyframe
+	 * is due or the block has grown past BLOCK_BYTES.
+	 * @param frame - the frame to add
+	 * @throws IOException if a finished block could not be written
+	 */
+	private void encode(FrameSnapshot frame) throws IOException {
+		int count = frame.count;
+		boolean keyframe = blockFrames == 0 || blockFrames >= keyframeInterval
+				|| blockLength >= BLOCK_BYTES || count < previousCount;
+		if(keyframe) {
+			flushBlock();
+			blockTick = frame.tick;
+			previousTick = frame.tick;
+			previousCount = 0;
+		}
+		if(previousX.length < count) {
+			int capacity = Math.max(count, previousX.length*2);
+			previousX = Arrays.copyOf(previousX, capacity);
+			previousY = Arrays.copyOf(previousY, capacity);
+			previousSprite = Arrays.copyOf(previousSprite, capacity);
+			previousSize = Arrays.copyOf(previousSize, capacity);
+		}
+		writeVarLong(frame.tick - previousTick);
+		writeVarLong(count);
+		for(int i = 0; i < count; i++) {
+			int x = Math.round(frame.x[i]*SCALE);
+			int y = Math.round(frame.y[i]*SCALE);
+			byte sprite = frame.sprite[i];
+			short size = frame.size[i];
+			if(i < previousCount) {
+				writeZigZag(x - previousX[i]);
+				writeZigZag(y - previousY[i]);
+				writeZigZag(sprite - previousSprite[i]);
+				writeZigZag(size - previousSize[i]);
+			}
+			else {
+				writeZigZag(x);
+				writeZigZag(y);
+				writeZigZag(sprite);
+				writeZigZag(size);
+			}
+			previousX[i] = x;
+			previousY[i] = y;
+			previousSprite[i] = sprite;
+			previousSize[i] = size;
+		}
+		previousCount = count;
+		previousTick = frame.tick;
+		blockFrames++;
+	}
+
+	/**
+	 * <b>flushBlock</b>
+	 * <p>
+	 * Compresses the current block and writes it out, if it holds any frames.
+	 * @throws IOException if the block could not be written
+	 */
+	private void flushBlock() throws IOException {
+		if(blockFrames == 0) {
+			return;
+		}
+		deflater.reset();
+		deflater.setInput(block, 0, blockLength);
+		deflater.finish();
+		int compressedLength = 0;
+		while(!deflater.finished()) {
+			if(compressedLength == compressed.length) {
+				compressed = Arrays.copyOf(compressed, compressed.length*2);
+			}
+			compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+		}
+		out.writeInt(blockLength);
+		out.writeInt(compressedLength);
+		out.writeLong(blockTick);
+		out.writeInt(blockFrames);
+		out.write(compressed, 0, compressedLength);
+		blockLength = 0;
+		blockFrames = 0;
+	}
+
+	/**
+	 * <b>writeZigZag</b>
+	 * <p>
+	 * Appends a signed number to the block, mapping small negative and positive
+	 * numbers alike to small unsigned ones.
+	 * @param value - the number to append
+	 */
+	private void writeZigZag(int value) {
+		writeVarLong(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * <b>writeVarLong</b>
+	 * <p>
+	 * Appends an unsigned number to the block, seven bits per byte, with the high
+	 * bit of each byte set if more bytes follow.
+	 * @param value - the number to append
+	 */
+	private void writeVarLong(long value) {
+		if(blockLength + 10 > block.length) {
+			if(block.length > Integer.MAX_VALUE/2) {
+				throw new IllegalStateException("Frame too large to record");
+			}
+			block = Arrays.copyOf(block, block.length*2);
+		}
+		while((value & ~0x7FL) != 0) {
+			block[blockLength++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		block[blockLength++] = (byte) value;
+	}
+}//End of TrajectoryRecorder class
\ No newline at end of file
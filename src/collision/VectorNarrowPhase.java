@@ -0,0 +1,111 @@
+package collision;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <b>VectorNarrowPhase class</b>
+ * <p>
+ * Checks candidate pairs several at a time with the JDK Vector API, using the
+ * processor's SIMD instructions.
+ * <p>
+ * The pairs are taken in batches of as many as fit in a vector (4 with AVX2, 8
+ * with AVX-512). The positions and radii of each batch's balls are copied into
+ * small buffers one lane at a time, and each lane then compares the squared
+ * distance between their centers with the squared touching distance, so there
+ * is no square root. Most pairs from a broad phase are not touching, and a batch
+ * where no lane is touching is skipped with a single test.
+ * <p>
+ * The lanes that are touching are then handled in order by 
+ * SimulationEngine.collidePair, which does the same arithmetic on single values
+ * and so reaches the same decision. Once a pair in the batch has been resolved,
+ * its balls may have moved, so the rest of the batch is checked by collidePair
+ * one pair at a time, exactly as ScalarNarrowPhase would. The results are 
+ * therefore identical to ScalarNarrowPhase.
+ * <p>
+ * The buffers stand in for the Vector API's gather loads (fromArray with an index
+ * map), which the JDK 17 C2 compiler can miscompile into reads of arbitrary memory
+ * once the store holds tens of thousands of balls.
+ * <p>
+ * Needs the jdk.incubator.vector module: compile and run with 
+ * --add-modules jdk.incubator.vector. Use NarrowPhase.fastest to fall back to
+ * ScalarNarrowPhase when it is missing.
+ */
+public class VectorNarrowPhase implements NarrowPhase {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	
+	//One lane's worth of each ball's values per batch
+	private final double[] firstX = new double[SPECIES.length()];
+	private final double[] firstY = new double[SPECIES.length()];
+	private final double[] firstRadius = new double[SPECIES.length()];
+	private final double[] secondX = new double[SPECIES.length()];
+	private final double[] secondY = new double[SPECIES.length()];
+	private final double[] secondRadius = new double[SPECIES.length()];
+	
+	/**
+	 * Constructs a vector narrow phase.
+	 * @throws UnsupportedOperationException if vectors only hold one double here
+	 */
+	public VectorNarrowPhase() {
+		if(SPECIES.length() < 2) {
+			throw new UnsupportedOperationException("No SIMD support for doubles");
+		}
+	}
+	
+	public int collide(SimulationEngine engine, PairList pairs, double dt, ConservationCounter counter) {
+		ParticleStore store = engine.getStore();
+		double[] x = store.x;
+		double[] y = store.y;
+		double[] radius = store.radius;
+		int[] first = pairs.first;
+		int[] second = pairs.second;
+		int size = pairs.size();
+		int lanes = SPECIES.length();
+		int bound = SPECIES.loopBound(size);
+		int contacts = 0;
+		int p = 0;
+		for(; p < bound; p += lanes) {
+			for(int k = 0; k < lanes; k++) {
+				int m = first[p + k];
+				int n = second[p + k];
+				firstX[k] = x[m];
+				firstY[k] = y[m];
+				firstRadius[k] = radius[m];
+				secondX[k] = x[n];
+				secondY[k] = y[n];
+				secondRadius[k] = radius[n];
+			}
+			DoubleVector xDistance = DoubleVector.fromArray(SPECIES, firstX, 0)
+								.sub(DoubleVector.fromArray(SPECIES, secondX, 0));
+			DoubleVector yDistance = DoubleVector.fromArray(SPECIES, firstY, 0)
+								.sub(DoubleVector.fromArray(SPECIES, secondY, 0));
+			DoubleVector limit = DoubleVector.fromArray(SPECIES, firstRadius, 0)
+								.add(DoubleVector.fromArray(SPECIES, secondRadius, 0))
+								.add(SimulationEngine.TOUCHING);
+			VectorMask<Double> touching = xDistance.mul(xDistance).add(yDistance.mul(yDistance))
+								.compare(VectorOperators.LT, limit.mul(limit))
+								.and(xDistance.compare(VectorOperators.NE, 0));
+			if(!touching.anyTrue()) {
+				continue;
+			}
+			long lanesTouching = touching.toLong();
+			boolean moved = false;
+			for(int k = 0; k < lanes; k++) {
+				if(moved || (lanesTouching & (1L << k)) != 0) {
+					if(engine.collidePair(first[p + k], second[p + k], dt, counter)) {
+						contacts++;
+						moved = true;
+					}
+				}
+			}
+		}
+		for(; p < size; p++) {
+			if(engine.collidePair(first[p], second[p], dt, counter)) {
+				contacts++;
+			}
+		}
+		return contacts;
+	}
+}//End of VectorNarrowPhase class
\ No newline at end of file